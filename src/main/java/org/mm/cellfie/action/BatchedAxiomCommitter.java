@@ -0,0 +1,188 @@
+package org.mm.cellfie.action;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+import javax.annotation.Nonnull;
+import javax.swing.SwingUtilities;
+
+import org.protege.editor.owl.model.OWLModelManager;
+import org.protege.editor.owl.model.inference.ReasonerPreferences;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+
+/**
+ * Adds a large set of axioms to an ontology in chunks. Each chunk goes
+ * through the regular change path of the Protege model manager on the event
+ * dispatch thread, such that the editor views, the change history and the
+ * dirty-state tracking see every change while no other edit can interleave
+ * with a chunk. Between the chunks the event dispatch thread is free, hence
+ * Protege stays responsive and the commit can report its progress and be
+ * cancelled. The chunks undo and redo together, see {@link UndoGroup}.
+ */
+public class BatchedAxiomCommitter
+{
+   public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+   private final OWLModelManager modelManager;
+   private final int chunkSize;
+
+   private boolean hideInferences;
+   private boolean restoreShowInferences;
+
+   public BatchedAxiomCommitter(@Nonnull OWLModelManager modelManager)
+   {
+      this(modelManager, DEFAULT_CHUNK_SIZE);
+   }
+
+   public BatchedAxiomCommitter(@Nonnull OWLModelManager modelManager, int chunkSize)
+   {
+      this.modelManager = checkNotNull(modelManager);
+      this.chunkSize = Math.max(1, chunkSize);
+   }
+
+   public int getChunkSize()
+   {
+      return chunkSize;
+   }
+
+   /**
+    * Stops the active reasoner such that it does not need to process the bulk
+    * load. The user can start the reasoner again once the import finished.
+    */
+   public void stopReasoner()
+   {
+      modelManager.getOWLReasonerManager().killCurrentReasoner();
+   }
+
+   /**
+    * Sets whether the inferences are hidden in the Protege views while the
+    * chunks are applied, such that the views do not query the reasoner after
+    * each chunk. The changes still go through the model manager, and the
+    * views show the inferences again once the commit finished.
+    *
+    * @param hideInferences
+    *          Whether to hide the inferences during the commit
+    */
+   public void setHideInferences(boolean hideInferences)
+   {
+      this.hideInferences = hideInferences;
+   }
+
+   /**
+    * Removes and adds axioms to the ontology chunk by chunk. The removals are
+    * applied first. The method is meant to be called from a background
+    * thread; the chunks themselves are applied on the event dispatch thread.
+    *
+    * @param ontology
+    *          The target ontology
+    * @param additions
+    *          The axioms to add
+    * @param removals
+    *          The axioms to remove
+    * @param progress
+    *          Receives the number of changes committed so far after each chunk
+    * @param cancelled
+    *          Tells whether the user has requested to stop the commit. The
+    *          chunks applied before the request are kept.
+    * @return The list of applied changes.
+    * @throws InterruptedException If the thread is interrupted while waiting
+    *          for a chunk to be applied.
+    */
+   public List<OWLOntologyChange> applyAxiomChanges(OWLOntology ontology, Collection<OWLAxiom> additions,
+         Collection<OWLAxiom> removals, LongConsumer progress, BooleanSupplier cancelled) throws InterruptedException
+   {
+      List<OWLOntologyChange> appliedChanges = new ArrayList<>(additions.size() + removals.size());
+      List<OWLOntologyChange> chunk = new ArrayList<>(chunkSize);
+      UndoGroup undoGroup = new UndoGroup(modelManager.getHistoryManager());
+      runOnEventDispatchThread(this::beginCommit);
+      try {
+         for (OWLAxiom ax : removals) {
+            if (cancelled.getAsBoolean()) {
+               break;
+            }
+            chunk.add(new RemoveAxiom(ontology, ax));
+            if (chunk.size() == chunkSize) {
+               applyChunk(chunk, appliedChanges, undoGroup);
+               progress.accept(appliedChanges.size());
+            }
+         }
+         for (OWLAxiom ax : additions) {
+            if (cancelled.getAsBoolean()) {
+               break;
+            }
+            chunk.add(new AddAxiom(ontology, ax));
+            if (chunk.size() == chunkSize) {
+               applyChunk(chunk, appliedChanges, undoGroup);
+               progress.accept(appliedChanges.size());
+            }
+         }
+         applyChunk(chunk, appliedChanges, undoGroup);
+         progress.accept(appliedChanges.size());
+      } finally {
+         runOnEventDispatchThread(() -> endCommit(undoGroup));
+      }
+      return appliedChanges;
+   }
+
+   private void applyChunk(List<OWLOntologyChange> chunk, List<OWLOntologyChange> appliedChanges,
+         UndoGroup undoGroup) throws InterruptedException
+   {
+      if (!chunk.isEmpty()) {
+         List<OWLOntologyChange> changes = new ArrayList<>(chunk);
+         runOnEventDispatchThread(() -> {
+            undoGroup.beforeChunk();
+            modelManager.applyChanges(changes);
+            undoGroup.afterChunk();
+         });
+         appliedChanges.addAll(changes);
+         chunk.clear();
+      }
+   }
+
+   private void beginCommit()
+   {
+      ReasonerPreferences preferences = modelManager.getOWLReasonerManager().getReasonerPreferences();
+      restoreShowInferences = hideInferences && preferences.isShowInferences();
+      if (restoreShowInferences) {
+         preferences.setShowInferences(false);
+      }
+   }
+
+   private void endCommit(UndoGroup undoGroup)
+   {
+      undoGroup.close();
+      if (restoreShowInferences) {
+         modelManager.getOWLReasonerManager().getReasonerPreferences().setShowInferences(true);
+      }
+   }
+
+   private static void runOnEventDispatchThread(Runnable runnable) throws InterruptedException
+   {
+      if (SwingUtilities.isEventDispatchThread()) {
+         runnable.run();
+         return;
+      }
+      try {
+         SwingUtilities.invokeAndWait(runnable);
+      } catch (InvocationTargetException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         }
+         if (cause instanceof Error) {
+            throw (Error) cause;
+         }
+         throw new IllegalStateException(cause);
+      }
+   }
+}
@@ -0,0 +1,142 @@
+package org.mm.cellfie.action;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.mm.cellfie.engine.GenerationHistory;
+import org.protege.editor.core.Disposable;
+import org.protege.editor.owl.model.OWLModelManager;
+import org.protege.editor.owl.model.event.EventType;
+import org.protege.editor.owl.model.event.OWLModelManagerListener;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+
+/**
+ * Keeps the generation histories of a Protege editor kit, one for each pair of
+ * workbook file and ontology the generated axioms are committed to. The store
+ * is registered with the model manager, see {@link #getInstance(OWLModelManager)},
+ * hence the histories outlive the Cellfie dialog: opening the same workbook
+ * again for the same ontology continues from the last commit. A history no
+ * longer describes its ontology once an axiom it owns is removed by something
+ * else than a Cellfie commit, e.g., by an undo or by a user edit, or once the
+ * ontology is reloaded. The history is then cleared, such that the next
+ * incremental run evaluates every row again.
+ * <p>
+ * The histories are accessed from the event dispatch thread.
+ */
+public class GenerationHistoryStore implements OWLOntologyChangeListener, Disposable
+{
+   private OWLModelManager modelManager; // null while not registered
+
+   /*
+    * The workbooks are keyed by their canonical path, such that the same file
+    * opened through another path shares the history.
+    */
+   private final Map<OWLOntologyID, Map<String, GenerationHistory>> generationHistories = new HashMap<>();
+
+   private final OWLModelManagerListener modelManagerListener = event -> {
+      if (event.isType(EventType.ONTOLOGY_RELOADED)) {
+         clear();
+      }
+   };
+
+   /**
+    * Returns the store of the given model manager, and creates it on first
+    * use. The model manager disposes of the store when the editor kit is
+    * closed.
+    *
+    * @param modelManager
+    *          The Protege model manager
+    * @return The generation history store.
+    */
+   public static GenerationHistoryStore getInstance(@Nonnull OWLModelManager modelManager)
+   {
+      GenerationHistoryStore store = modelManager.get(GenerationHistoryStore.class);
+      if (store == null) {
+         store = new GenerationHistoryStore();
+         store.modelManager = modelManager;
+         modelManager.addOntologyChangeListener(store);
+         modelManager.addListener(store.modelManagerListener);
+         modelManager.put(GenerationHistoryStore.class, store);
+      }
+      return store;
+   }
+
+   /**
+    * Returns the history of the axioms committed from the given workbook into
+    * the given ontology.
+    *
+    * @param ontology
+    *          The ontology that receives the generated axioms
+    * @param workbookFile
+    *          The workbook the axioms are generated from
+    * @return The generation history, which is empty until the first commit.
+    */
+   public GenerationHistory get(@Nonnull OWLOntology ontology, @Nonnull File workbookFile)
+   {
+      return generationHistories.computeIfAbsent(ontology.getOntologyID(), key -> new HashMap<>())
+            .computeIfAbsent(getCanonicalPath(workbookFile), key -> new GenerationHistory());
+   }
+
+   /**
+    * Clears the histories of all the ontologies.
+    */
+   public void clear()
+   {
+      for (Map<String, GenerationHistory> histories : generationHistories.values()) {
+         histories.values().forEach(GenerationHistory::clear);
+      }
+   }
+
+   /**
+    * Stops listening to the ontology changes and forgets the histories.
+    */
+   @Override
+   public void dispose()
+   {
+      if (modelManager != null) {
+         modelManager.removeOntologyChangeListener(this);
+         modelManager.removeListener(modelManagerListener);
+      }
+      generationHistories.clear();
+   }
+
+   /*
+    * A Cellfie commit releases the axioms it is about to remove beforehand,
+    * hence a removed axiom that is still owned was removed by someone else.
+    */
+   @Override
+   public void ontologiesChanged(@Nonnull List<? extends OWLOntologyChange> changes)
+   {
+      for (OWLOntologyChange change : changes) {
+         if (change.isRemoveAxiom()) {
+            Map<String, GenerationHistory> histories = generationHistories.get(change.getOntology().getOntologyID());
+            if (histories != null) {
+               for (GenerationHistory history : histories.values()) {
+                  if (history.isOwned(change.getAxiom())) {
+                     history.clear();
+                  }
+               }
+            }
+         }
+      }
+   }
+
+   private static String getCanonicalPath(File file)
+   {
+      try {
+         return file.getCanonicalPath();
+      } catch (IOException e) {
+         return file.getAbsolutePath();
+      }
+   }
+}
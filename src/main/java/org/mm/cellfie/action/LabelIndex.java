@@ -0,0 +1,236 @@
+package org.mm.cellfie.action;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.protege.editor.owl.model.OWLModelManager;
+import org.protege.editor.owl.model.event.EventType;
+import org.protege.editor.owl.model.event.OWLModelManagerListener;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+
+/**
+ * An in-memory index from the rdfs:label values of the active ontologies to
+ * the IRIs they annotate. The index is built on a background thread when it
+ * is created and when the active ontologies change, and is then kept up to
+ * date from the ontology change events, such that looking up an entity by
+ * its label is a hash lookup instead of a search. Until the first build is
+ * done the index finds nothing; call {@link #awaitBuild()} to wait for it.
+ */
+public class LabelIndex implements OWLOntologyChangeListener
+{
+   private final OWLModelManager modelManager;
+
+   private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "Cellfie label index");
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   private volatile Future<?> pendingBuild;
+
+   /*
+    * Counts the label changes, such that a build that missed a change while
+    * it scanned the ontologies starts over instead of swapping in a stale
+    * index. Guarded by this object.
+    */
+   private long changeCount;
+
+   /*
+    * An IRI is counted once for each label assertion, hence removing one of
+    * two identical assertions (e.g., in two imported ontologies) keeps it.
+    * A rebuild fills a new map and swaps it in, such that the lookups from
+    * the rendering threads never see a half-built index.
+    */
+   private volatile ConcurrentMap<String, Multiset<IRI>> irisByLabel = new ConcurrentHashMap<>();
+
+   private final OWLModelManagerListener modelManagerListener = event -> {
+      if (event.isType(EventType.ACTIVE_ONTOLOGY_CHANGED)
+            || event.isType(EventType.ONTOLOGY_LOADED)
+            || event.isType(EventType.ONTOLOGY_RELOADED)) {
+         rebuild();
+      }
+   };
+
+   /**
+    * Creates the label index of the active ontologies and starts building it
+    * in the background.
+    *
+    * @param modelManager
+    *          The Protege model manager
+    */
+   public LabelIndex(@Nonnull OWLModelManager modelManager)
+   {
+      this.modelManager = checkNotNull(modelManager);
+      modelManager.addOntologyChangeListener(this);
+      modelManager.addListener(modelManagerListener);
+      rebuild();
+   }
+
+   /**
+    * Indexes the labels of the active ontologies from scratch. The index is
+    * built in the background and replaces the current one when it is done.
+    */
+   public void rebuild()
+   {
+      pendingBuild = buildExecutor.submit(this::build);
+   }
+
+   /**
+    * Waits until the last requested build is done.
+    *
+    * @throws InterruptedException
+    *          If the current thread was interrupted while waiting
+    */
+   public void awaitBuild() throws InterruptedException
+   {
+      Future<?> build = pendingBuild;
+      try {
+         build.get();
+      } catch (CancellationException e) {
+         // Disposed while building
+      } catch (ExecutionException e) {
+         throw new RuntimeException("Unable to build the label index", e.getCause());
+      }
+   }
+
+   /**
+    * Returns the entity of the given type that has the label. The match must
+    * be unique: if several entities of the type share the label, the method
+    * returns {@code null} and leaves the choice to the caller.
+    *
+    * @param label
+    *          The label to look up
+    * @param entityType
+    *          The expected entity type
+    * @return The entity with the label, or {@code null} if there is none or
+    *         more than one.
+    */
+   @Nullable
+   public <T extends OWLEntity> T find(@Nonnull String label, @Nonnull Class<T> entityType)
+   {
+      Multiset<IRI> iris = irisByLabel.get(label);
+      if (iris == null) {
+         return null;
+      }
+      OWLOntology activeOntology = modelManager.getActiveOntology();
+      T match = null;
+      for (IRI iri : iris.elementSet()) {
+         for (OWLEntity entity : activeOntology.getEntitiesInSignature(iri, Imports.INCLUDED)) {
+            if (entityType.isInstance(entity)) {
+               if (match != null && !match.equals(entity)) {
+                  return null; // ambiguous label
+               }
+               match = entityType.cast(entity);
+            }
+         }
+      }
+      return match;
+   }
+
+   /**
+    * Returns the number of distinct labels in the index.
+    *
+    * @return The label count.
+    */
+   public int size()
+   {
+      return irisByLabel.size();
+   }
+
+   /**
+    * Stops listening to the ontology changes and empties the index.
+    */
+   public void dispose()
+   {
+      pendingBuild.cancel(true);
+      buildExecutor.shutdownNow();
+      modelManager.removeOntologyChangeListener(this);
+      modelManager.removeListener(modelManagerListener);
+      irisByLabel = new ConcurrentHashMap<>();
+   }
+
+   @Override
+   public void ontologiesChanged(@Nonnull List<? extends OWLOntologyChange> changes)
+   {
+      Set<OWLOntology> activeOntologies = modelManager.getActiveOntologies();
+      for (OWLOntologyChange change : changes) {
+         if (change.isAxiomChange() && activeOntologies.contains(change.getOntology())) {
+            OWLAxiom axiom = change.getAxiom();
+            if (axiom.isOfType(AxiomType.ANNOTATION_ASSERTION)) {
+               synchronized (this) {
+                  changeCount++;
+                  updateIndex(irisByLabel, (OWLAnnotationAssertionAxiom) axiom, change.isAddAxiom());
+               }
+            }
+         }
+      }
+   }
+
+   private void build()
+   {
+      while (!Thread.currentThread().isInterrupted()) {
+         long changeCountBefore;
+         synchronized (this) {
+            changeCountBefore = changeCount;
+         }
+         ConcurrentMap<String, Multiset<IRI>> index = new ConcurrentHashMap<>();
+         for (OWLOntology ontology : modelManager.getActiveOntologies()) {
+            for (OWLAnnotationAssertionAxiom ax : ontology.getAxioms(AxiomType.ANNOTATION_ASSERTION)) {
+               updateIndex(index, ax, true);
+            }
+         }
+         synchronized (this) {
+            if (changeCount == changeCountBefore) {
+               irisByLabel = index;
+               return;
+            }
+         }
+      }
+   }
+
+   private void updateIndex(ConcurrentMap<String, Multiset<IRI>> index, OWLAnnotationAssertionAxiom ax, boolean added)
+   {
+      if (!ax.getProperty().isLabel() || !(ax.getSubject() instanceof IRI)) {
+         return;
+      }
+      com.google.common.base.Optional<OWLLiteral> literal = ax.getValue().asLiteral();
+      if (!literal.isPresent()) {
+         return;
+      }
+      String key = literal.get().getLiteral();
+      IRI subject = (IRI) ax.getSubject();
+      if (added) {
+         index.computeIfAbsent(key, k -> ConcurrentHashMultiset.create()).add(subject);
+      } else {
+         index.computeIfPresent(key, (k, iris) -> {
+            iris.remove(subject);
+            return iris.isEmpty() ? null : iris;
+         });
+      }
+   }
+
+}
@@ -2,20 +2,34 @@ package org.mm.cellfie.action;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import org.mm.cellfie.engine.PrefixTable;
 import org.mm.core.OWLEntityResolver;
 import org.mm.exceptions.EntityCreationException;
 import org.mm.exceptions.EntityNotFoundException;
 import org.protege.editor.owl.OWLEditorKit;
 import org.protege.editor.owl.model.OWLModelManager;
 import org.protege.editor.owl.model.entity.OWLEntityCreationException;
+import org.protege.editor.owl.model.entity.OWLEntityCreationSet;
 import org.protege.editor.owl.model.entity.OWLEntityFactory;
+import org.protege.editor.owl.model.event.EventType;
+import org.protege.editor.owl.model.event.OWLModelManagerListener;
 import org.protege.editor.owl.model.find.OWLEntityFinder;
-import org.semanticweb.owlapi.formats.PrefixDocumentFormat;
+import org.semanticweb.owlapi.model.AxiomType;
 import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLDataProperty;
 import org.semanticweb.owlapi.model.OWLDatatype;
@@ -24,21 +38,162 @@ import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLNamedIndividual;
 import org.semanticweb.owlapi.model.OWLObjectProperty;
 import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
-import org.semanticweb.owlapi.vocab.Namespaces;
 import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Resolves the entity names in the transformation rules against the active
+ * ontology using the Protege entity finder. The entities found are kept in a
+ * bounded cache, such that a name referenced by many cells is looked up only
+ * once. The cache is cleared whenever the ontologies or the entity rendering
+ * change, because both can change the entity a name refers to. The prefix
+ * labels of the active ontology are kept in a {@link PrefixTable} that is
+ * rebuilt on the same events and at the start of each generation run, see
+ * {@link #rebuildPrefixTable()}, so that expanding a prefixed name is a
+ * single lookup. Call
+ * {@link #dispose()} when the resolver is no longer used to stop listening
+ * to these changes.
+ * <p>
+ * A single resolver is shared by all the renderers of a Cellfie session,
+ * including the parallel rendering tasks. The caches are concurrent and the
+ * calls to the Protege entity finder and entity factory are serialized.
+ */
 public class OWLProtegeEntityResolver implements OWLEntityResolver {
 
+   public static final int DEFAULT_CACHE_SIZE = 100000;
+
    private final OWLModelManager modelManager;
    private final OWLEntityFinder entityFinder;
    private final OWLEntityFactory entityFactory;
+   private final LabelIndex labelIndex;
+
+   private final Cache<EntityKey, OWLEntity> entityCache;
+   private final Cache<EntityKey, Boolean> unresolvableEntities;
+   private final Set<EntityKey> unreportedEntities = ConcurrentHashMap.newKeySet();
+   private volatile PrefixTable prefixTable; // null until the next prefix lookup
+   private volatile Map<EntityKey, OWLEntityCreationSet<?>> bulkCreatedEntities; // null outside a bulk creation
+
+   private final OWLOntologyChangeListener ontologyChangeListener = changes -> invalidateCache();
+   private final OWLModelManagerListener modelManagerListener = event -> {
+      if (event.isType(EventType.ACTIVE_ONTOLOGY_CHANGED)
+            || event.isType(EventType.ONTOLOGY_LOADED)
+            || event.isType(EventType.ONTOLOGY_RELOADED)
+            || event.isType(EventType.ONTOLOGY_SAVED) // may change the document format
+            || event.isType(EventType.ENTITY_RENDERER_CHANGED)
+            || event.isType(EventType.ENTITY_RENDERING_CHANGED)) {
+         invalidateCache();
+      }
+   };
 
    public OWLProtegeEntityResolver(@Nonnull OWLEditorKit editorKit) {
+      this(editorKit, DEFAULT_CACHE_SIZE);
+   }
+
+   public OWLProtegeEntityResolver(@Nonnull OWLEditorKit editorKit, int cacheSize) {
+      this(editorKit, cacheSize, null);
+   }
+
+   /**
+    * Creates a resolver that looks up the entity names that the Protege entity
+    * finder does not know in the given label index.
+    *
+    * @param editorKit
+    *          The Protege editor kit
+    * @param cacheSize
+    *          The maximum number of resolved entities kept in the cache
+    * @param labelIndex
+    *          The index of the rdfs:label values, or {@code null} to use the
+    *          entity finder only
+    */
+   public OWLProtegeEntityResolver(@Nonnull OWLEditorKit editorKit, int cacheSize, @Nullable LabelIndex labelIndex) {
       checkNotNull(editorKit);
+      this.labelIndex = labelIndex;
       modelManager = editorKit.getModelManager();
       entityFinder = modelManager.getOWLEntityFinder();
       entityFactory = modelManager.getOWLEntityFactory();
+      entityCache = CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .recordStats()
+            .build();
+      unresolvableEntities = CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .build();
+      modelManager.addOntologyChangeListener(ontologyChangeListener);
+      modelManager.addListener(modelManagerListener);
+   }
+
+   /**
+    * Stops listening to the ontology changes and clears the cache.
+    */
+   public void dispose() {
+      modelManager.removeOntologyChangeListener(ontologyChangeListener);
+      modelManager.removeListener(modelManagerListener);
+      invalidateCache();
+   }
+
+   /**
+    * Removes all the resolved entities from the cache and rebuilds the prefix
+    * table on the next lookup.
+    */
+   public void invalidateCache() {
+      entityCache.invalidateAll();
+      unresolvableEntities.invalidateAll();
+      prefixTable = null;
+   }
+
+   /**
+    * Waits until the label index is built, such that the labels resolve from
+    * the first rendered row on. Does nothing if there is no label index.
+    *
+    * @throws InterruptedException
+    *          If the current thread was interrupted while waiting
+    */
+   public void awaitLabelIndex() throws InterruptedException {
+      if (labelIndex != null) {
+         labelIndex.awaitBuild();
+      }
+   }
+
+   /**
+    * Rebuilds the prefix table from the active ontology. A generation run
+    * calls this first, since editing the prefixes of the ontology does not
+    * fire the events that invalidate the cache.
+    */
+   public void rebuildPrefixTable() {
+      prefixTable = createPrefixTable();
+   }
+
+   /**
+    * Returns the entity names that could not be resolved since the last call,
+    * each name listed once together with its expected entity type.
+    *
+    * @return The sorted list of unresolved names, e.g., "Person (OWLClass)".
+    */
+   public List<String> takeUnresolvedNames() {
+      List<String> unresolvedNames = new ArrayList<>();
+      for (Iterator<EntityKey> iter = unreportedEntities.iterator(); iter.hasNext();) {
+         EntityKey key = iter.next();
+         iter.remove();
+         unresolvedNames.add(String.format("%s (%s)", key.entityName, key.entityType.getSimpleName()));
+      }
+      Collections.sort(unresolvedNames);
+      return unresolvedNames;
+   }
+
+   /**
+    * Returns the statistics of the entity cache since the resolver was
+    * created. The generation log reports the difference over a run.
+    *
+    * @return The cache statistics.
+    */
+   public CacheStats getCacheStats() {
+      return entityCache.stats();
    }
 
    /**
@@ -61,13 +216,18 @@ public class OWLProtegeEntityResolver implements OWLEntityResolver {
    public <T extends OWLEntity> T resolve(String entityName, final Class<T> entityType)
          throws EntityNotFoundException {
       T entity = null;
-      OWLEntity foundEntity = entityFinder.getOWLEntity(entityName);
-      if (foundEntity == null) {
-         entity = createNewForBuiltInEntity(entityName, entityType);
-      } else {
-         entity = entityType.cast(foundEntity);
+      EntityKey key = new EntityKey(entityName, entityType);
+      if (!isUnresolvable(key)) {
+         OWLEntity foundEntity = findEntity(key);
+         if (foundEntity == null) {
+            entity = createNewForBuiltInEntity(entityName, entityType);
+         } else {
+            entity = entityType.cast(foundEntity);
+         }
       }
       if (entity == null) {
+         unresolvableEntities.put(key, Boolean.TRUE);
+         unreportedEntities.add(key);
          throw new EntityNotFoundException(
                String.format("The expected entity name '%s' does not exist in the ontology",
                      entityName));
@@ -75,6 +235,38 @@ public class OWLProtegeEntityResolver implements OWLEntityResolver {
       return entity;
    }
 
+   /*
+    * Only the entities found in the ontology are cached. New entities are not
+    * cached since the entity factory may give them a fresh IRI on each call.
+    * The entity finder answers first, such that a short or prefixed name keeps
+    * resolving to the entity it names. The label index is the fallback for the
+    * names the finder does not know, e.g., labels that are not the rendering.
+    */
+   private OWLEntity findEntity(EntityKey key) {
+      OWLEntity entity = entityCache.getIfPresent(key);
+      if (entity == null) {
+         synchronized (entityFinder) { // the finder is not safe for parallel rendering tasks
+            entity = entityFinder.getOWLEntity(key.entityName);
+         }
+         if (entity == null && labelIndex != null) {
+            entity = labelIndex.find(key.entityName, key.entityType);
+         }
+         if (entity != null) {
+            entityCache.put(key, entity);
+         }
+      }
+      return entity;
+   }
+
+   /*
+    * A name that failed to resolve is neither in the ontology nor a built-in
+    * entity, so the next lookups can skip the finder and the built-in check
+    * until the ontology changes.
+    */
+   private boolean isUnresolvable(EntityKey key) {
+      return unresolvableEntities.getIfPresent(key) != null;
+   }
+
    private <T extends OWLEntity> T createNewForBuiltInEntity(String entityName, final Class<T> entityType) {
       if (isPrefixedName(entityName)) {
          IRI entityIri = expand(entityName);
@@ -136,7 +328,16 @@ public class OWLProtegeEntityResolver implements OWLEntityResolver {
    @Override
    public <T extends OWLEntity> T create(String entityName, final Class<T> entityType)
          throws EntityCreationException {
-      OWLEntity entity = entityFinder.getOWLEntity(entityName);
+      EntityKey key = new EntityKey(entityName, entityType);
+      Map<EntityKey, OWLEntityCreationSet<?>> createdEntities = bulkCreatedEntities;
+      if (createdEntities != null) {
+         // A name created earlier in the run is not in the ontology, hence skip the finder
+         OWLEntityCreationSet<?> creationSet = createdEntities.get(key);
+         if (creationSet != null) {
+            return entityType.cast(creationSet.getOWLEntity());
+         }
+      }
+      OWLEntity entity = isUnresolvable(key) ? null : findEntity(key);
       if (entity == null) {
          try {
             return createNew(entityName, entityType);
@@ -149,10 +350,66 @@ public class OWLProtegeEntityResolver implements OWLEntityResolver {
 
    private <T extends OWLEntity> T createNew(String entityName, final Class<T> entityType)
          throws OWLEntityCreationException {
-      String localName = getLocalName(entityName);
-      Optional<IRI> prefix = getPrefix(entityName);
-      IRI baseIri = prefix.orElseGet(() -> null);
-      return entityFactory.createOWLEntity(entityType, localName, baseIri).getOWLEntity();
+      Map<EntityKey, OWLEntityCreationSet<?>> createdEntities = bulkCreatedEntities;
+      if (createdEntities == null) {
+         synchronized (entityFactory) { // the entity factory may run from parallel rendering tasks
+            return createEntity(entityName, entityType).getOWLEntity();
+         }
+      }
+      EntityKey key = new EntityKey(entityName, entityType);
+      OWLEntityCreationSet<?> creationSet = createdEntities.get(key);
+      if (creationSet == null) {
+         synchronized (entityFactory) {
+            creationSet = createdEntities.get(key); // another task may have created it meanwhile
+            if (creationSet == null) {
+               creationSet = createEntity(entityName, entityType);
+               createdEntities.put(key, creationSet);
+            }
+         }
+      }
+      return entityType.cast(creationSet.getOWLEntity());
+   }
+
+   private <T extends OWLEntity> OWLEntityCreationSet<T> createEntity(String entityName, final Class<T> entityType)
+         throws OWLEntityCreationException {
+      String localName = PrefixTable.getLocalName(entityName);
+      IRI baseIri = getPrefixTable().getNamespace(entityName).orElse(null);
+      return entityFactory.createOWLEntity(entityType, localName, baseIri);
+   }
+
+   /**
+    * Starts collecting the new entities of a generation run. Until
+    * {@link #endBulkCreation()} is called, each distinct name and type is
+    * created by the entity factory only once, and the same entity is returned
+    * for all the cells and rules that create it. Once created, a name is
+    * answered from the collected entities without asking the entity finder
+    * or the label index again.
+    */
+   public void beginBulkCreation() {
+      bulkCreatedEntities = new ConcurrentHashMap<>();
+   }
+
+   /**
+    * Stops collecting the new entities and returns their declarations in one
+    * batch.
+    *
+    * @return The declaration axioms of the entities created since
+    *         {@link #beginBulkCreation()}.
+    */
+   public Set<OWLAxiom> endBulkCreation() {
+      Map<EntityKey, OWLEntityCreationSet<?>> createdEntities = bulkCreatedEntities;
+      bulkCreatedEntities = null;
+      Set<OWLAxiom> declarations = new HashSet<>();
+      if (createdEntities != null) {
+         for (OWLEntityCreationSet<?> creationSet : createdEntities.values()) {
+            for (OWLOntologyChange change : creationSet.getOntologyChanges()) {
+               if (change.isAxiomChange() && change.getAxiom().isOfType(AxiomType.DECLARATION)) {
+                  declarations.add(change.getAxiom());
+               }
+            }
+         }
+      }
+      return declarations;
    }
 
    @Override
@@ -165,41 +422,60 @@ public class OWLProtegeEntityResolver implements OWLEntityResolver {
    }
 
    private IRI expand(String entityName) {
-      String localName = getLocalName(entityName);
-      Optional<IRI> prefix = getPrefix(entityName);
+      Optional<IRI> prefix = getPrefixTable().getNamespace(entityName);
       if (prefix.isPresent()) {
-         String prefixString = prefix.get().toString();
-         return IRI.create(prefixString + localName);
+         return IRI.create(prefix.get().toString() + PrefixTable.getLocalName(entityName));
       }
       throw new IllegalArgumentException("Missing required prefix");
    }
 
-   private String getLocalName(String prefixedName) {
-      int colonIndex = prefixedName.indexOf(':');
-      if (colonIndex >= 0) {
-          return prefixedName.substring(colonIndex + 1);
+   private PrefixTable getPrefixTable() {
+      PrefixTable table = prefixTable;
+      if (table == null) {
+         table = createPrefixTable();
+         prefixTable = table;
       }
-      return prefixedName;
+      return table;
    }
 
-   private Optional<IRI> getPrefix(String prefixedName) {
+   private PrefixTable createPrefixTable() {
       OWLOntology activeOntology = modelManager.getActiveOntology();
       OWLOntologyManager manager = modelManager.getOWLOntologyManager();
       OWLDocumentFormat format = manager.getOntologyFormat(activeOntology);
-      for (Namespaces ns : Namespaces.values()) {
-          if (prefixedName.startsWith(ns.name().toLowerCase() + ":")) {
-              return Optional.of(IRI.create(ns.toString()));
-          }
-      }
-      int colonIndex = prefixedName.indexOf(':');
-      if (colonIndex > 0 && format != null && format.isPrefixOWLOntologyFormat()) {
-          PrefixDocumentFormat prefixes = format.asPrefixOWLOntologyFormat();
-          String prefixLabel = prefixedName.substring(0, colonIndex + 1);
-          String prefix = prefixes.getPrefix(prefixLabel);
-          if (prefix != null) {
-              return Optional.of(IRI.create(prefix));
-          }
-      }
-      return Optional.empty();
+      if (format != null && format.isPrefixOWLOntologyFormat()) {
+         return new PrefixTable(format.asPrefixOWLOntologyFormat());
+      }
+      return new PrefixTable(null);
+   }
+
+   /**
+    * The cache key of an entity name resolved for an entity type.
+    */
+   private static class EntityKey {
+
+      private final String entityName;
+      private final Class<? extends OWLEntity> entityType;
+
+      public EntityKey(String entityName, Class<? extends OWLEntity> entityType) {
+         this.entityName = entityName;
+         this.entityType = entityType;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         if (this == obj) {
+            return true;
+         }
+         if (!(obj instanceof EntityKey)) {
+            return false;
+         }
+         EntityKey other = (EntityKey) obj;
+         return entityName.equals(other.entityName) && entityType.equals(other.entityType);
+      }
+
+      @Override
+      public int hashCode() {
+         return 31 * entityName.hashCode() + entityType.hashCode();
+      }
    }
 }
@@ -1,6 +1,7 @@
 package org.mm.cellfie.action;
 
-import org.mm.core.OWLEntityResolver;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import org.mm.core.OWLOntologySourceHook;
 import org.protege.editor.owl.OWLEditorKit;
 import org.protege.editor.owl.model.OWLModelManager;
@@ -8,13 +9,24 @@ import org.semanticweb.owlapi.model.OWLOntology;
 
 public class OWLProtegeOntology implements OWLOntologySourceHook
 {
-   private OWLEditorKit editorKit;
    private OWLModelManager modelManager;
 
-   public OWLProtegeOntology(OWLEditorKit editorKit)
+   private final OWLProtegeEntityResolver entityResolver;
+
+   /**
+    * Creates the ontology source of a Cellfie session. The entity resolver is
+    * owned by the session and is shared by every renderer created from this
+    * source, such that its caches stay warm between generation runs.
+    *
+    * @param editorKit
+    *          The Protege editor kit
+    * @param entityResolver
+    *          The session-scoped entity resolver
+    */
+   public OWLProtegeOntology(OWLEditorKit editorKit, OWLProtegeEntityResolver entityResolver)
    {
-      this.editorKit = editorKit;
       modelManager = editorKit.getOWLModelManager();
+      this.entityResolver = checkNotNull(entityResolver);
    }
 
    @Override
@@ -24,8 +36,8 @@ public class OWLProtegeOntology implements OWLOntologySourceHook
    }
 
    @Override
-   public OWLEntityResolver getEntityResolver()
+   public OWLProtegeEntityResolver getEntityResolver()
    {
-      return new OWLProtegeEntityResolver(editorKit);
+      return entityResolver;
    }
 }
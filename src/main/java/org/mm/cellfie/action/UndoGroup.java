@@ -0,0 +1,103 @@
+package org.mm.cellfie.action;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nonnull;
+import javax.swing.SwingUtilities;
+
+import org.protege.editor.owl.model.history.HistoryManager;
+import org.protege.editor.owl.model.history.UndoManagerListener;
+
+/**
+ * Makes the undo entries of a chunked commit undo and redo as one unit.
+ * Protege records each list of applied changes as one entry and has no
+ * compound entries, hence the group follows the history instead: once the
+ * user undoes one chunk of the commit, the group undoes the remaining chunks,
+ * and likewise for redo. The group lets go of the history once an edit
+ * outside the commit clears the redo stack or moves the history past the
+ * commit. All methods must be called on the event dispatch thread.
+ */
+class UndoGroup implements UndoManagerListener
+{
+   private final HistoryManager historyManager;
+
+   private int bottom = -1; // the undo depth before the first chunk
+   private int top = -1; // the undo depth after the last chunk
+   private int depth; // the undo depth seen last
+
+   public UndoGroup(@Nonnull HistoryManager historyManager)
+   {
+      this.historyManager = checkNotNull(historyManager);
+   }
+
+   /**
+    * Marks the start of a chunk. An edit made between two chunks is not part
+    * of the commit, hence the group then starts over from the current entry.
+    */
+   public void beforeChunk()
+   {
+      int currentDepth = getUndoDepth();
+      if (currentDepth != top) {
+         bottom = currentDepth;
+         top = currentDepth;
+      }
+   }
+
+   public void afterChunk()
+   {
+      top = getUndoDepth();
+   }
+
+   /**
+    * Starts following the history if the commit left more than one entry.
+    */
+   public void close()
+   {
+      if (top - bottom > 1) {
+         depth = top;
+         historyManager.addUndoManagerListener(this);
+      }
+   }
+
+   @Override
+   public void stateChanged(HistoryManager source)
+   {
+      int currentDepth = getUndoDepth();
+      boolean undone = currentDepth < depth;
+      depth = currentDepth;
+      if (currentDepth < bottom || currentDepth > top || (!undone && !historyManager.canRedo() && currentDepth < top)) {
+         // The history has moved past the commit or an edit cleared the redo stack
+         historyManager.removeUndoManagerListener(this);
+      } else if (undone && currentDepth > bottom) {
+         SwingUtilities.invokeLater(() -> step(currentDepth, true));
+      } else if (!undone && currentDepth < top) {
+         SwingUtilities.invokeLater(() -> step(currentDepth, false));
+      }
+   }
+
+   /*
+    * Each chunk is undone in its own event, such that the listeners of the
+    * history are not called back from within their own notification.
+    */
+   private void step(int expectedDepth, boolean undo)
+   {
+      if (depth != expectedDepth) {
+         return; // the history changed in the meantime
+      }
+      if (undo && historyManager.canUndo()) {
+         historyManager.undo();
+      } else if (!undo && historyManager.canRedo()) {
+         historyManager.redo();
+      }
+   }
+
+   /*
+    * The logged changes are copied by the history manager, which costs a
+    * pass over the changes in the history; that is small next to applying
+    * a chunk.
+    */
+   private int getUndoDepth()
+   {
+      return historyManager.getLoggedChanges().size();
+   }
+}
@@ -0,0 +1,225 @@
+package org.mm.cellfie.batch;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.mm.cellfie.engine.RangeEvaluationTask;
+
+/**
+ * The command-line options of {@link CellfieBatchRunner}.
+ */
+public class BatchOptions
+{
+   private File workbookFile;
+   private File ruleFile;
+   private File ontologyFile;
+   private File outputFile;
+   private int threadCount = Runtime.getRuntime().availableProcessors();
+   private int blockSize = RangeEvaluationTask.DEFAULT_BLOCK_SIZE;
+   private String maxMemory;
+   private boolean verbose = false;
+   private boolean help = false;
+
+   /**
+    * Parses the command-line arguments.
+    *
+    * @param args
+    *          The arguments given to the runner
+    * @return The parsed options.
+    * @throws IllegalArgumentException If an argument is unknown, misses its
+    *          value or a required option is absent.
+    */
+   public static BatchOptions parse(String[] args)
+   {
+      BatchOptions options = new BatchOptions();
+      for (int i = 0; i < args.length; i++) {
+         String option = args[i];
+         switch (option) {
+            case "-w" :
+            case "--workbook" :
+               options.workbookFile = new File(getValue(args, ++i, option));
+               break;
+            case "-r" :
+            case "--rules" :
+               options.ruleFile = new File(getValue(args, ++i, option));
+               break;
+            case "-i" :
+            case "--ontology" :
+               options.ontologyFile = new File(getValue(args, ++i, option));
+               break;
+            case "-o" :
+            case "--output" :
+               options.outputFile = new File(getValue(args, ++i, option));
+               break;
+            case "-t" :
+            case "--threads" :
+               options.threadCount = getPositiveInt(getValue(args, ++i, option), option);
+               break;
+            case "-b" :
+            case "--block-size" :
+               options.blockSize = getPositiveInt(getValue(args, ++i, option), option);
+               break;
+            case "-m" :
+            case "--memory" :
+               options.maxMemory = getValue(args, ++i, option);
+               parseMemorySize(options.maxMemory); // validate early
+               break;
+            case "-v" :
+            case "--verbose" :
+               options.verbose = true;
+               break;
+            case "-h" :
+            case "--help" :
+               options.help = true;
+               return options;
+            default :
+               throw new IllegalArgumentException("Unknown option: " + option);
+         }
+      }
+      checkRequired(options.workbookFile, "--workbook");
+      checkRequired(options.ruleFile, "--rules");
+      checkRequired(options.ontologyFile, "--ontology");
+      checkRequired(options.outputFile, "--output");
+      return options;
+   }
+
+   /**
+    * Returns the usage text of the runner.
+    *
+    * @return The usage text.
+    */
+   public static String getUsage()
+   {
+      return String.format("Usage: java -cp <classpath> %s [options]%n", CellfieBatchRunner.class.getName())
+            + String.format("  -w, --workbook <file>     Input workbook (.xlsx or .xls)%n")
+            + String.format("  -r, --rules <file>        Transformation rule file (JSON)%n")
+            + String.format("  -i, --ontology <file>     Input ontology used to resolve the entity names%n")
+            + String.format("  -o, --output <file>       Output ontology file in the OWL functional syntax. It holds only%n")
+            + String.format("                            the generated axioms missing from the input ontology%n")
+            + String.format("  -t, --threads <n>         Number of worker threads (default: number of processors)%n")
+            + String.format("  -b, --block-size <rows>   Rows per parallel evaluation task (default: %d)%n", RangeEvaluationTask.DEFAULT_BLOCK_SIZE)
+            + String.format("  -m, --memory <size>       Maximum heap size, e.g. 512m or 8g. The run is restarted in a%n")
+            + String.format("                            child JVM when the current heap is smaller%n")
+            + String.format("  -v, --verbose             Print the stack trace of an error%n")
+            + String.format("  -h, --help                Print this help%n");
+   }
+
+   /**
+    * Converts a memory size such as {@code 512m} or {@code 8g} into bytes.
+    *
+    * @param size
+    *          The memory size with an optional k, m or g unit
+    * @return The number of bytes.
+    */
+   public static long parseMemorySize(String size)
+   {
+      String value = size.trim().toLowerCase(Locale.ROOT);
+      long multiplier = 1;
+      if (value.endsWith("k")) {
+         multiplier = 1024L;
+      } else if (value.endsWith("m")) {
+         multiplier = 1024L * 1024;
+      } else if (value.endsWith("g")) {
+         multiplier = 1024L * 1024 * 1024;
+      }
+      if (multiplier > 1) {
+         value = value.substring(0, value.length() - 1);
+      }
+      try {
+         long amount = Long.parseLong(value);
+         if (amount <= 0) {
+            throw new NumberFormatException();
+         }
+         return amount * multiplier;
+      } catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Invalid memory size: " + size);
+      }
+   }
+
+   private static String getValue(String[] args, int index, String option)
+   {
+      if (index >= args.length) {
+         throw new IllegalArgumentException("Missing value for option " + option);
+      }
+      return args[index];
+   }
+
+   private static int getPositiveInt(String value, String option)
+   {
+      try {
+         int number = Integer.parseInt(value);
+         if (number > 0) {
+            return number;
+         }
+      } catch (NumberFormatException e) {
+         // Handled below
+      }
+      throw new IllegalArgumentException("Option " + option + " expects a positive number: " + value);
+   }
+
+   private static void checkRequired(File file, String option)
+   {
+      if (file == null) {
+         throw new IllegalArgumentException("Missing required option " + option);
+      }
+   }
+
+   public File getWorkbookFile()
+   {
+      return workbookFile;
+   }
+
+   public File getRuleFile()
+   {
+      return ruleFile;
+   }
+
+   public File getOntologyFile()
+   {
+      return ontologyFile;
+   }
+
+   public File getOutputFile()
+   {
+      return outputFile;
+   }
+
+   public int getThreadCount()
+   {
+      return threadCount;
+   }
+
+   public int getBlockSize()
+   {
+      return blockSize;
+   }
+
+   public String getMaxMemory()
+   {
+      return maxMemory;
+   }
+
+   public boolean isVerbose()
+   {
+      return verbose;
+   }
+
+   /**
+    * Tells whether the arguments ask for the verbose output, without parsing
+    * them, e.g., to report an error of the parsing itself.
+    *
+    * @param args
+    *          The arguments given to the runner
+    * @return {@code true} if the arguments contain the verbose option.
+    */
+   public static boolean isVerbose(String[] args)
+   {
+      return Arrays.asList(args).contains("-v") || Arrays.asList(args).contains("--verbose");
+   }
+
+   public boolean isHelp()
+   {
+      return help;
+   }
+}
@@ -0,0 +1,212 @@
+package org.mm.cellfie.batch;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nonnull;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.mm.app.MMApplicationFactory;
+import org.mm.app.MMApplicationModel;
+import org.mm.cellfie.engine.CellRange;
+import org.mm.cellfie.engine.CellRangeResolver;
+import org.mm.cellfie.engine.CompiledRuleCache;
+import org.mm.cellfie.engine.EvaluationResult;
+import org.mm.cellfie.engine.ExistingAxiomFilter;
+import org.mm.cellfie.engine.FileAxiomSink;
+import org.mm.cellfie.engine.FilteredAxiomSink;
+import org.mm.cellfie.engine.GenerationProgress;
+import org.mm.cellfie.engine.MMRendererFactory;
+import org.mm.cellfie.engine.RangeEvaluationTask;
+import org.mm.cellfie.engine.RendererFactory;
+import org.mm.cellfie.engine.RuleEvaluator;
+import org.mm.cellfie.workbook.CellStoreWorkbook;
+import org.mm.cellfie.workbook.WorkbookLoader;
+import org.mm.core.TransformationRule;
+import org.mm.core.settings.ReferenceSettings;
+import org.mm.ss.SpreadSheetDataSource;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+/**
+ * Generates the axioms of a Cellfie rule file without Protege. The runner
+ * loads the input ontology, the workbook and the transformation rules saved
+ * by the Cellfie dialog, evaluates every active rule and streams the axioms
+ * to the output file as they are rendered.
+ * <p>
+ * The output is a delta, not a copy of the input ontology: it holds only
+ * the generated axioms that the input ontology (with its imports) does not
+ * already assert. Merge it into the input ontology, or import it, to get the
+ * complete result.
+ * <p>
+ * Example:
+ * <pre>
+ * java -cp cellfie.jar:lib/* org.mm.cellfie.batch.CellfieBatchRunner \
+ *    --workbook data.xlsx --rules rules.json --ontology input.owl \
+ *    --output generated.ofn --threads 8 --memory 8g
+ * </pre>
+ */
+public class CellfieBatchRunner
+{
+   private static final int EXIT_SUCCESS = 0;
+   private static final int EXIT_FAILURE = 1;
+   private static final int EXIT_USAGE = 2;
+
+   private static final String CHILD_PROCESS_PROPERTY = "cellfie.batch.child";
+
+   private final BatchOptions options;
+
+   public CellfieBatchRunner(@Nonnull BatchOptions options)
+   {
+      this.options = checkNotNull(options);
+   }
+
+   public static void main(String[] args)
+   {
+      System.setProperty("java.awt.headless", "true");
+      BatchOptions options;
+      try {
+         options = BatchOptions.parse(args);
+      } catch (IllegalArgumentException e) {
+         printError("Invalid arguments", e, BatchOptions.isVerbose(args));
+         System.err.print(BatchOptions.getUsage());
+         System.exit(EXIT_USAGE);
+         return;
+      }
+      if (options.isHelp()) {
+         System.out.print(BatchOptions.getUsage());
+         System.exit(EXIT_SUCCESS);
+         return;
+      }
+      try {
+         if (needsLargerHeap(options)) {
+            System.exit(runInChildProcess(options.getMaxMemory(), args));
+         }
+         new CellfieBatchRunner(options).run();
+         System.exit(EXIT_SUCCESS);
+      } catch (Exception e) {
+         printError("Cellfie batch run failed", e, options.isVerbose());
+         System.exit(EXIT_FAILURE);
+      }
+   }
+
+   /*
+    * Prints the exception with its type, since many exceptions (e.g., a
+    * NullPointerException) have no message, and the stack trace when asked.
+    */
+   private static void printError(String message, Exception e, boolean verbose)
+   {
+      System.err.println(message + ": " + e);
+      if (verbose) {
+         e.printStackTrace();
+      } else {
+         System.err.println("Run with --verbose to print the stack trace");
+      }
+   }
+
+   /**
+    * Evaluates all the active transformation rules and writes the generated
+    * axioms to the output file.
+    *
+    * @throws Exception If an input cannot be loaded, a rule is invalid or
+    *          the output cannot be written.
+    */
+   public void run() throws Exception
+   {
+      OWLOntologyManager ontologyManager = OWLManager.createOWLOntologyManager();
+      OWLOntology ontology = ontologyManager.loadOntologyFromOntologyDocument(options.getOntologyFile());
+      OWLOntologySource ontologySource = new OWLOntologySource(ontology);
+
+      CellStoreWorkbook workbook = WorkbookLoader.load(options.getWorkbookFile());
+
+      MMApplicationFactory applicationFactory = new MMApplicationFactory();
+      applicationFactory.setWorkbookFileLocation(WorkbookLoader.createEmptyCopy(workbook).getAbsolutePath());
+      applicationFactory.setRuleFileLocation(options.getRuleFile().getAbsolutePath());
+      MMApplicationModel applicationModel = applicationFactory.createApplication(ontologySource).getApplicationModel();
+
+      RendererFactory rendererFactory = new MMRendererFactory(ontologySource);
+
+      // Parse the rules and resolve their cell ranges before any axiom is written
+      CompiledRuleCache ruleCache = new CompiledRuleCache();
+      ReferenceSettings referenceSettings = new ReferenceSettings();
+      List<RuleEvaluator> ruleEvaluators = new ArrayList<>();
+      List<CellRange> ranges = new ArrayList<>();
+      long totalCells = 0;
+      for (TransformationRule rule : applicationModel.getTransformationRuleModel().getRules()) {
+         if (rule.isActive()) {
+            ruleEvaluators.add(new RuleEvaluator(ruleCache.compile(rule.getRuleString(), referenceSettings)));
+            CellRange range = CellRangeResolver.resolve(rule, workbook);
+            ranges.add(range);
+            totalCells += range.getCellCount();
+         }
+      }
+
+      GenerationProgress progress = new GenerationProgress(totalCells);
+      ForkJoinPool forkJoinPool = (options.getThreadCount() > 1) ? new ForkJoinPool(options.getThreadCount()) : null;
+      // The parallel blocks read the cell stores, since the POI user model is not safe for parallel reads
+      Workbook renderingWorkbook = (forkJoinPool != null) ? workbook
+            : WorkbookLoader.openForRendering(options.getWorkbookFile(), workbook);
+      SpreadSheetDataSource dataSource = new SpreadSheetDataSource(renderingWorkbook);
+      try (FilteredAxiomSink axiomSink = new FilteredAxiomSink(new FileAxiomSink(options.getOutputFile(), ontology),
+            new ExistingAxiomFilter(ontology))) {
+         for (int i = 0; i < ruleEvaluators.size(); i++) {
+            RuleEvaluator ruleEvaluator = ruleEvaluators.get(i);
+            CellRange range = ranges.get(i);
+            if (forkJoinPool != null) {
+               forkJoinPool.invoke(new RangeEvaluationTask(workbook, rendererFactory, ruleEvaluator, range, axiomSink,
+                     progress, options.getBlockSize()));
+            } else {
+               ruleEvaluator.evaluate(range, dataSource, rendererFactory.createRenderer(dataSource),
+                     rendererFactory.createLogRenderer(dataSource), axiomSink, new EvaluationResult(), progress);
+            }
+            System.out.println(String.format("Rule %d of %d on %s done (%,d axioms so far)", i + 1,
+                  ruleEvaluators.size(), range, axiomSink.getAxiomCount()));
+         }
+         System.out.println(String.format("Wrote %,d axioms from %,d cells to %s in %,d ms (%,.0f cells/s)",
+               axiomSink.getAxiomCount(), progress.getProcessedCells(), options.getOutputFile(),
+               progress.getElapsedMillis(), progress.getCellsPerSecond()));
+         System.out.println(String.format("Skipped %,d axioms that already exist in the input ontology",
+               axiomSink.getSkippedAxiomCount()));
+      } finally {
+         if (forkJoinPool != null) {
+            forkJoinPool.shutdown();
+         }
+         renderingWorkbook.close();
+      }
+   }
+
+   /*
+    * The heap size of a running JVM cannot be changed, hence the --memory
+    * option restarts the runner with -Xmx when the current limit is lower.
+    * The JVM reports a slightly smaller maximum than the -Xmx value, so a
+    * 10% margin avoids restarting a child that already got the right heap.
+    */
+   private static boolean needsLargerHeap(BatchOptions options)
+   {
+      if (options.getMaxMemory() == null || Boolean.getBoolean(CHILD_PROCESS_PROPERTY)) {
+         return false;
+      }
+      long requestedBytes = BatchOptions.parseMemorySize(options.getMaxMemory());
+      return Runtime.getRuntime().maxMemory() < requestedBytes * 0.9;
+   }
+
+   private static int runInChildProcess(String maxMemory, String[] args) throws Exception
+   {
+      List<String> command = new ArrayList<>();
+      command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+      command.add("-Xmx" + maxMemory);
+      command.add("-D" + CHILD_PROCESS_PROPERTY + "=true");
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(CellfieBatchRunner.class.getName());
+      command.addAll(Arrays.asList(args));
+      Process process = new ProcessBuilder(command).inheritIO().start();
+      return process.waitFor();
+   }
+}
@@ -0,0 +1,189 @@
+package org.mm.cellfie.batch;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import org.mm.cellfie.engine.PrefixTable;
+import org.mm.core.OWLEntityResolver;
+import org.mm.exceptions.EntityCreationException;
+import org.mm.exceptions.EntityNotFoundException;
+import org.semanticweb.owlapi.model.EntityType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLDatatype;
+import org.semanticweb.owlapi.model.OWLDocumentFormat;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.PrefixManager;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.util.SimpleShortFormProvider;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import com.google.common.collect.ImmutableListMultimap;
+
+/**
+ * An entity resolver that works on a plain OWLAPI ontology, without the
+ * Protege model manager. Entities are found by their IRI short form or by
+ * their prefixed name in the imports closure of the ontology. New entities
+ * get the IRI of their prefix, or the default namespace of the ontology if
+ * the name has no prefix.
+ * <p>
+ * The name index is built once when the resolver is created and is only
+ * read afterwards, hence the resolver can be shared by parallel rendering
+ * tasks.
+ */
+public class OWLOntologyEntityResolver implements OWLEntityResolver
+{
+   private final OWLOntology ontology;
+   private final OWLDataFactory dataFactory;
+   private final PrefixManager prefixManager;
+   private final PrefixTable prefixTable;
+   private final ImmutableListMultimap<String, OWLEntity> entitiesByName;
+
+   public OWLOntologyEntityResolver(@Nonnull OWLOntology ontology)
+   {
+      this.ontology = checkNotNull(ontology);
+      dataFactory = ontology.getOWLOntologyManager().getOWLDataFactory();
+      prefixManager = getPrefixManager(ontology);
+      prefixTable = new PrefixTable(prefixManager);
+      entitiesByName = createNameIndex(ontology, prefixManager);
+   }
+
+   private static PrefixManager getPrefixManager(OWLOntology ontology)
+   {
+      OWLDocumentFormat format = ontology.getOWLOntologyManager().getOntologyFormat(ontology);
+      if (format != null && format.isPrefixOWLOntologyFormat()) {
+         return format.asPrefixOWLOntologyFormat();
+      }
+      return null;
+   }
+
+   private static ImmutableListMultimap<String, OWLEntity> createNameIndex(OWLOntology ontology,
+         PrefixManager prefixManager)
+   {
+      SimpleShortFormProvider shortFormProvider = new SimpleShortFormProvider();
+      ImmutableListMultimap.Builder<String, OWLEntity> builder = ImmutableListMultimap.builder();
+      for (OWLEntity entity : ontology.getSignature(Imports.INCLUDED)) {
+         builder.put(shortFormProvider.getShortForm(entity), entity);
+         if (prefixManager != null) {
+            String prefixedName = prefixManager.getPrefixIRI(entity.getIRI());
+            if (prefixedName != null) {
+               builder.put(prefixedName, entity);
+            }
+         }
+      }
+      return builder.build();
+   }
+
+   @Override
+   public <T extends OWLEntity> T resolve(String entityName, Class<T> entityType) throws EntityNotFoundException
+   {
+      T entity = find(entityName, entityType);
+      if (entity == null) {
+         entity = createNewForBuiltInEntity(entityName, entityType);
+      }
+      if (entity == null) {
+         throw new EntityNotFoundException(
+               String.format("The expected entity name '%s' does not exist in the ontology", entityName));
+      }
+      return entity;
+   }
+
+   @Override
+   public <T extends OWLEntity> T resolveUnchecked(String entityName, Class<T> entityType)
+   {
+      try {
+         return resolve(entityName, entityType);
+      } catch (EntityNotFoundException e) {
+         throw new RuntimeException(e.getMessage());
+      }
+   }
+
+   @Override
+   public <T extends OWLEntity> T create(String entityName, Class<T> entityType) throws EntityCreationException
+   {
+      T entity = find(entityName, entityType);
+      if (entity == null) {
+         entity = createNew(entityName, entityType);
+      }
+      return entity;
+   }
+
+   @Override
+   public <T extends OWLEntity> T createUnchecked(String entityName, Class<T> entityType)
+   {
+      try {
+         return create(entityName, entityType);
+      } catch (EntityCreationException e) {
+         throw new RuntimeException(e.getMessage());
+      }
+   }
+
+   private <T extends OWLEntity> T find(String entityName, Class<T> entityType)
+   {
+      for (OWLEntity entity : entitiesByName.get(entityName)) {
+         if (entityType.isInstance(entity)) {
+            return entityType.cast(entity);
+         }
+      }
+      return null;
+   }
+
+   private <T extends OWLEntity> T createNewForBuiltInEntity(String entityName, Class<T> entityType)
+   {
+      Optional<IRI> prefix = prefixTable.getNamespace(entityName);
+      if (prefix.isPresent()) {
+         IRI entityIri = IRI.create(prefix.get().toString() + PrefixTable.getLocalName(entityName));
+         if (OWLRDFVocabulary.BUILT_IN_VOCABULARY_IRIS.contains(entityIri)) {
+            return entityType.cast(dataFactory.getOWLEntity(getEntityType(entityType), entityIri));
+         }
+      }
+      return null;
+   }
+
+   private <T extends OWLEntity> T createNew(String entityName, Class<T> entityType) throws EntityCreationException
+   {
+      String namespace = prefixTable.getNamespace(entityName).map(IRI::toString).orElseGet(this::getDefaultNamespace);
+      if (namespace == null) {
+         throw new EntityCreationException(
+               String.format("Unable to create entity '%s' because the ontology has no default namespace", entityName));
+      }
+      IRI entityIri = IRI.create(namespace + PrefixTable.getLocalName(entityName));
+      return entityType.cast(dataFactory.getOWLEntity(getEntityType(entityType), entityIri));
+   }
+
+   private String getDefaultNamespace()
+   {
+      if (prefixManager != null && prefixManager.getDefaultPrefix() != null) {
+         return prefixManager.getDefaultPrefix();
+      }
+      com.google.common.base.Optional<IRI> ontologyIri = ontology.getOntologyID().getOntologyIRI();
+      return ontologyIri.isPresent() ? ontologyIri.get().toString() + "#" : null;
+   }
+
+   private static EntityType<?> getEntityType(Class<? extends OWLEntity> entityType)
+   {
+      if (OWLClass.class.isAssignableFrom(entityType)) {
+         return EntityType.CLASS;
+      } else if (OWLObjectProperty.class.isAssignableFrom(entityType)) {
+         return EntityType.OBJECT_PROPERTY;
+      } else if (OWLDataProperty.class.isAssignableFrom(entityType)) {
+         return EntityType.DATA_PROPERTY;
+      } else if (OWLAnnotationProperty.class.isAssignableFrom(entityType)) {
+         return EntityType.ANNOTATION_PROPERTY;
+      } else if (OWLNamedIndividual.class.isAssignableFrom(entityType)) {
+         return EntityType.NAMED_INDIVIDUAL;
+      } else if (OWLDatatype.class.isAssignableFrom(entityType)) {
+         return EntityType.DATATYPE;
+      }
+      throw new IllegalArgumentException("Unsupported entity type: " + entityType.getName());
+   }
+}
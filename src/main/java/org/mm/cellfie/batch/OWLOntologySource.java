@@ -0,0 +1,38 @@
+package org.mm.cellfie.batch;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nonnull;
+
+import org.mm.core.OWLEntityResolver;
+import org.mm.core.OWLOntologySourceHook;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+/**
+ * The ontology source of a headless run. It serves a single ontology loaded
+ * with the OWLAPI, together with an entity resolver that does not require
+ * the Protege editor kit.
+ */
+public class OWLOntologySource implements OWLOntologySourceHook
+{
+   private final OWLOntology ontology;
+   private final OWLEntityResolver entityResolver;
+
+   public OWLOntologySource(@Nonnull OWLOntology ontology)
+   {
+      this.ontology = checkNotNull(ontology);
+      entityResolver = new OWLOntologyEntityResolver(ontology);
+   }
+
+   @Override
+   public OWLOntology getOWLOntology()
+   {
+      return ontology;
+   }
+
+   @Override
+   public OWLEntityResolver getEntityResolver()
+   {
+      return entityResolver;
+   }
+}
@@ -0,0 +1,37 @@
+package org.mm.cellfie.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+/**
+ * A destination for the axioms produced by the rule evaluation. The axioms
+ * are handed over as soon as a cell is rendered, so that a generation run
+ * does not need to keep all the renderings until the end.
+ * <p>
+ * Implementations must accept calls from several evaluation threads at the
+ * same time.
+ */
+public interface AxiomSink extends Closeable
+{
+   /**
+    * Accepts the axioms rendered from a single cell.
+    *
+    * @param axioms
+    *          The generated axioms
+    */
+   void add(Collection<? extends OWLAxiom> axioms);
+
+   /**
+    * Returns the number of axioms received by this sink.
+    */
+   long getAxiomCount();
+
+   /**
+    * Writes any pending axioms and releases the resources used by the sink.
+    */
+   @Override
+   void close() throws IOException;
+}
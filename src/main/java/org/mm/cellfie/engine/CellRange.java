@@ -0,0 +1,105 @@
+package org.mm.cellfie.engine;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nonnull;
+
+import org.mm.ss.SpreadsheetLocation;
+
+/**
+ * A rectangular cell range in a sheet. The column and row indexes follow the
+ * physical numbering used by {@link SpreadsheetLocation}, i.e., they are
+ * 1-based and inclusive.
+ */
+public class CellRange
+{
+   private final String sheetName;
+   private final int startColumn;
+   private final int startRow;
+   private final int endColumn;
+   private final int endRow;
+
+   public CellRange(@Nonnull String sheetName, int startColumn, int startRow, int endColumn, int endRow)
+   {
+      checkArgument(startColumn <= endColumn, "Start column after finish column");
+      checkArgument(startRow <= endRow, "Start row after finish row");
+      this.sheetName = checkNotNull(sheetName);
+      this.startColumn = startColumn;
+      this.startRow = startRow;
+      this.endColumn = endColumn;
+      this.endRow = endRow;
+   }
+
+   public String getSheetName()
+   {
+      return sheetName;
+   }
+
+   public int getStartColumn()
+   {
+      return startColumn;
+   }
+
+   public int getStartRow()
+   {
+      return startRow;
+   }
+
+   public int getEndColumn()
+   {
+      return endColumn;
+   }
+
+   public int getEndRow()
+   {
+      return endRow;
+   }
+
+   public int getRowCount()
+   {
+      return endRow - startRow + 1;
+   }
+
+   public int getColumnCount()
+   {
+      return endColumn - startColumn + 1;
+   }
+
+   public long getCellCount()
+   {
+      return (long) getRowCount() * getColumnCount();
+   }
+
+   public SpreadsheetLocation getStartLocation()
+   {
+      return new SpreadsheetLocation(sheetName, startColumn, startRow);
+   }
+
+   public SpreadsheetLocation getEndLocation()
+   {
+      return new SpreadsheetLocation(sheetName, endColumn, endRow);
+   }
+
+   /**
+    * Returns the sub-range that covers the given rows and keeps the same
+    * columns as this range.
+    *
+    * @param fromRow
+    *          The first row of the sub-range (inclusive)
+    * @param toRow
+    *          The last row of the sub-range (inclusive)
+    * @return A new cell range.
+    */
+   public CellRange subRange(int fromRow, int toRow)
+   {
+      checkArgument(fromRow >= startRow && toRow <= endRow, "Rows are outside the range");
+      return new CellRange(sheetName, startColumn, fromRow, endColumn, toRow);
+   }
+
+   @Override
+   public String toString()
+   {
+      return String.format("%s!(%d,%d):(%d,%d)", sheetName, startColumn, startRow, endColumn, endRow);
+   }
+}
@@ -0,0 +1,16 @@
+package org.mm.cellfie.engine;
+
+/**
+ * Signals that the cell range of a transformation rule is incomplete or does
+ * not fit the workbook, e.g., the rule refers to a missing sheet or its start
+ * row comes after its end row.
+ */
+public class CellRangeException extends Exception
+{
+   private static final long serialVersionUID = 1L;
+
+   public CellRangeException(String message)
+   {
+      super(message);
+   }
+}
@@ -0,0 +1,103 @@
+package org.mm.cellfie.engine;
+
+import org.mm.cellfie.workbook.CellStoreWorkbook;
+import org.mm.cellfie.workbook.SheetOccupancy;
+import org.mm.core.TransformationRule;
+import org.mm.ss.SpreadSheetUtil;
+
+/**
+ * Resolves the cell range of a transformation rule against a workbook. The
+ * '+' wildcards of the end column and the end row are replaced by the last
+ * non-blank column and the last non-blank row of the worksheet, as given by
+ * its {@link SheetOccupancy}.
+ */
+public final class CellRangeResolver
+{
+   private CellRangeResolver()
+   {
+      // NO-OP
+   }
+
+   /**
+    * Returns the cell range that the given rule covers in the workbook.
+    *
+    * @param rule
+    *          The transformation rule
+    * @param workbook
+    *          The workbook the rule is evaluated on
+    * @return The cell range of the rule.
+    * @throws CellRangeException If the rule range is incomplete or invalid.
+    * @throws Exception If a column or row label cannot be parsed.
+    */
+   public static CellRange resolve(TransformationRule rule, CellStoreWorkbook workbook) throws Exception
+   {
+      String sheetName = rule.getSheetName();
+      int sheetIndex = workbook.getSheetIndex(sheetName);
+      if (sheetIndex == -1) {
+         throw new CellRangeException("The workbook has no sheet named '" + sheetName + "'");
+      }
+      SheetOccupancy occupancy = workbook.getCellStore(sheetIndex).getOccupancy();
+      int startColumnIndex = getStartColumnIndex(rule);
+      int startRowIndex = getStartRowIndex(rule);
+      int endRowIndex = getEndRowIndex(rule, occupancy);
+      int endColumnIndex = getEndColumnIndex(rule, occupancy, startRowIndex, endRowIndex);
+
+      if (startColumnIndex > endColumnIndex) {
+         throw new CellRangeException("Start column after finish column in rule " + rule);
+      }
+      if (startRowIndex > endRowIndex) {
+         throw new CellRangeException("Start row after finish row in rule " + rule);
+      }
+      return new CellRange(sheetName, startColumnIndex, startRowIndex, endColumnIndex, endRowIndex);
+   }
+
+   private static int getStartColumnIndex(TransformationRule rule) throws Exception
+   {
+      String startColumn = rule.getStartColumn();
+      if (startColumn.isEmpty()) {
+         throw new CellRangeException("Start column is not specified");
+      }
+      return SpreadSheetUtil.columnName2Number(startColumn);
+   }
+
+   private static int getStartRowIndex(TransformationRule rule) throws Exception
+   {
+      String startRow = rule.getStartRow();
+      if (startRow.isEmpty()) {
+         throw new CellRangeException("Start row is not specified");
+      }
+      return SpreadSheetUtil.rowLabel2Number(startRow);
+   }
+
+   /*
+    * The column wildcard resolves to the last non-blank column over the rows
+    * of the range, i.e., the physical number of that column.
+    */
+   private static int getEndColumnIndex(TransformationRule rule, SheetOccupancy occupancy, int startRowIndex,
+         int endRowIndex) throws Exception
+   {
+      String endColumn = rule.getEndColumn();
+      if (endColumn.isEmpty()) {
+         throw new CellRangeException("End column is not specified. (Hint: Use a wildcard '+' to indicate the last column)");
+      }
+      if (!rule.hasEndColumnWildcard()) {
+         return SpreadSheetUtil.columnName2Number(endColumn);
+      }
+      int lastCellNum = 0;
+      for (int rowIndex = startRowIndex; rowIndex <= endRowIndex; rowIndex++) {
+         lastCellNum = Math.max(lastCellNum, occupancy.getLastCellNum(rowIndex - 1));
+      }
+      return lastCellNum;
+   }
+
+   private static int getEndRowIndex(TransformationRule rule, SheetOccupancy occupancy) throws Exception
+   {
+      String endRow = rule.getEndRow();
+      if (endRow.isEmpty()) {
+         throw new CellRangeException("End row is not specified. (Hint: Use a wildcard '+' to indicate the last row)");
+      }
+      int endRowIndex = rule.hasEndRowWildcard() ? occupancy.getLastRowNum() + 1
+            : SpreadSheetUtil.rowLabel2Number(endRow);
+      return endRowIndex;
+   }
+}
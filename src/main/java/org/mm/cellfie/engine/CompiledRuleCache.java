@@ -0,0 +1,146 @@
+package org.mm.cellfie.engine;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import org.mm.core.settings.ReferenceSettings;
+import org.mm.parser.ASTExpression;
+import org.mm.parser.MappingMasterParser;
+import org.mm.parser.ParseException;
+import org.mm.parser.SimpleNode;
+import org.mm.parser.node.ExpressionNode;
+import org.mm.parser.node.MMExpressionNode;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A cache of transformation rules that have been parsed into their expression
+ * node. The rule string is parsed only once for each combination of rule text
+ * and reference settings, and the resulting node can be rendered repeatedly
+ * for every cell location in the rule's range. The cache is bounded, such
+ * that the nodes of rules that were edited or deleted since they were parsed
+ * are evicted once newer rules take their place.
+ */
+public class CompiledRuleCache
+{
+   public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+   private final Cache<RuleKey, MMExpressionNode> compiledRules;
+
+   public CompiledRuleCache()
+   {
+      this(DEFAULT_MAXIMUM_SIZE);
+   }
+
+   /**
+    * Creates a cache that keeps at most the given number of parsed rules,
+    * evicting the least recently used ones first.
+    *
+    * @param maximumSize
+    *          The maximum number of parsed rules.
+    */
+   public CompiledRuleCache(int maximumSize)
+   {
+      compiledRules = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+   }
+
+   /**
+    * Returns the expression node of the given rule string. The rule is parsed
+    * on the first request and the same node is returned afterwards.
+    *
+    * @param ruleString
+    *          The transformation rule expression.
+    * @param referenceSettings
+    *          The reference settings used by the parser.
+    * @return The parsed expression node.
+    * @throws ParseException If the rule string has a syntax error.
+    */
+   public MMExpressionNode compile(@Nonnull String ruleString, @Nonnull ReferenceSettings referenceSettings)
+         throws ParseException
+   {
+      RuleKey key = new RuleKey(checkNotNull(ruleString), checkNotNull(referenceSettings));
+      MMExpressionNode ruleNode = compiledRules.getIfPresent(key);
+      if (ruleNode == null) {
+         ruleNode = parse(ruleString, referenceSettings);
+         compiledRules.put(key, ruleNode);
+      }
+      return ruleNode;
+   }
+
+   /**
+    * Removes the parsed nodes of the given rule string, e.g., once the rule
+    * has been edited or deleted.
+    *
+    * @param ruleString
+    *          The transformation rule expression.
+    */
+   public void evict(@Nonnull String ruleString)
+   {
+      compiledRules.asMap().keySet().removeIf(key -> key.ruleString.equals(ruleString));
+   }
+
+   /**
+    * Removes all the parsed rules from the cache.
+    */
+   public void clear()
+   {
+      compiledRules.invalidateAll();
+   }
+
+   /**
+    * Returns the number of parsed rules in the cache.
+    *
+    * @return The cache size.
+    */
+   public long size()
+   {
+      return compiledRules.size();
+   }
+
+   private static MMExpressionNode parse(String ruleString, ReferenceSettings referenceSettings) throws ParseException
+   {
+      MappingMasterParser parser = new MappingMasterParser(new ByteArrayInputStream(ruleString.getBytes()), referenceSettings, -1);
+      SimpleNode simpleNode = parser.expression();
+      return new ExpressionNode((ASTExpression) simpleNode).getMMExpressionNode();
+   }
+
+   /*
+    * The reference settings are compared by their own equality, hence callers
+    * should share the same settings object between runs to get a cache hit.
+    */
+   private static class RuleKey
+   {
+      private final String ruleString;
+      private final ReferenceSettings referenceSettings;
+
+      public RuleKey(String ruleString, ReferenceSettings referenceSettings)
+      {
+         this.ruleString = ruleString;
+         this.referenceSettings = referenceSettings;
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (this == obj) {
+            return true;
+         }
+         if (!(obj instanceof RuleKey)) {
+            return false;
+         }
+         RuleKey other = (RuleKey) obj;
+         return ruleString.equals(other.ruleString) && referenceSettings.equals(other.referenceSettings);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return Objects.hash(ruleString, referenceSettings);
+      }
+   }
+}
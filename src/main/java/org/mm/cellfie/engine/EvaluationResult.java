@@ -0,0 +1,30 @@
+package org.mm.cellfie.engine;
+
+/**
+ * The log messages collected while evaluating a transformation rule over a
+ * cell range. The generated axioms are not part of the result; they are sent
+ * to an {@link AxiomSink} as soon as each cell is rendered.
+ */
+public class EvaluationResult
+{
+   private final StringBuilder logBuilder = new StringBuilder();
+
+   public StringBuilder getLogBuilder()
+   {
+      return logBuilder;
+   }
+
+   /**
+    * Appends the content of the other result into this result. The log of
+    * the other result is placed after the log of this result.
+    *
+    * @param other
+    *          The evaluation result to merge.
+    * @return This evaluation result.
+    */
+   public EvaluationResult merge(EvaluationResult other)
+   {
+      logBuilder.append(other.logBuilder);
+      return this;
+   }
+}
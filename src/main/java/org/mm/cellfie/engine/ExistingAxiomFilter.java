@@ -0,0 +1,37 @@
+package org.mm.cellfie.engine;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.function.Predicate;
+
+import javax.annotation.Nonnull;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.parameters.AxiomAnnotations;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+/**
+ * Tests whether a generated axiom is already asserted in the target ontology
+ * or in one of its imports. The lookup uses the ontology's own axiom index so
+ * the check costs a hash lookup per axiom.
+ * <p>
+ * The imports closure is included because the "Add to a new ontology" option
+ * imports the current ontology, hence an axiom found there would be redundant
+ * in the new ontology as well.
+ */
+public class ExistingAxiomFilter implements Predicate<OWLAxiom>
+{
+   private final OWLOntology ontology;
+
+   public ExistingAxiomFilter(@Nonnull OWLOntology ontology)
+   {
+      this.ontology = checkNotNull(ontology);
+   }
+
+   @Override
+   public boolean test(OWLAxiom axiom)
+   {
+      return ontology.containsAxiom(axiom, Imports.INCLUDED, AxiomAnnotations.CONSIDER_AXIOM_ANNOTATIONS);
+   }
+}
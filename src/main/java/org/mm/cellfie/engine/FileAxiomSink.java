@@ -0,0 +1,90 @@
+package org.mm.cellfie.engine;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.semanticweb.owlapi.functional.renderer.FunctionalSyntaxObjectRenderer;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDocumentFormat;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.PrefixManager;
+
+/**
+ * Writes the generated axioms to a file in the OWL functional syntax as soon
+ * as they are received. The output is an anonymous ontology that uses the
+ * prefixes of the given source ontology. The axioms are not kept in memory,
+ * hence the same axiom produced by different cells may appear more than
+ * once in the file; OWL parsers read them as a single axiom.
+ */
+public class FileAxiomSink implements AxiomSink
+{
+   private final Writer writer;
+   private final FunctionalSyntaxObjectRenderer renderer;
+
+   private long axiomCount = 0;
+
+   public FileAxiomSink(@Nonnull File outputFile, @Nonnull OWLOntology sourceOntology) throws IOException
+   {
+      checkNotNull(outputFile);
+      checkNotNull(sourceOntology);
+      writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(outputFile.toPath()), StandardCharsets.UTF_8));
+      renderer = new FunctionalSyntaxObjectRenderer(sourceOntology, writer);
+      OWLDocumentFormat format = sourceOntology.getOWLOntologyManager().getOntologyFormat(sourceOntology);
+      if (format != null && format.isPrefixOWLOntologyFormat()) {
+         PrefixManager prefixManager = format.asPrefixOWLOntologyFormat();
+         renderer.setPrefixManager(prefixManager);
+         writePrefixes(prefixManager);
+      }
+      writer.write("Ontology(\n");
+   }
+
+   private void writePrefixes(PrefixManager prefixManager) throws IOException
+   {
+      for (Map.Entry<String, String> prefix : prefixManager.getPrefixName2PrefixMap().entrySet()) {
+         writer.write(String.format("Prefix(%s=<%s>)\n", prefix.getKey(), prefix.getValue()));
+      }
+      writer.write("\n");
+   }
+
+   @Override
+   public synchronized void add(Collection<? extends OWLAxiom> axioms)
+   {
+      try {
+         for (OWLAxiom axiom : axioms) {
+            axiom.accept(renderer);
+            writer.write("\n");
+            axiomCount++;
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException("Failed to write the generated axioms", e);
+      }
+   }
+
+   @Override
+   public synchronized long getAxiomCount()
+   {
+      return axiomCount;
+   }
+
+   @Override
+   public synchronized void close() throws IOException
+   {
+      try {
+         writer.write(")\n");
+      } finally {
+         writer.close();
+      }
+   }
+}
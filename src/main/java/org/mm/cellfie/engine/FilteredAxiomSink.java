@@ -0,0 +1,80 @@
+package org.mm.cellfie.engine;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import javax.annotation.Nonnull;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+/**
+ * Passes the generated axioms on to another sink, except the axioms that
+ * satisfy the given filter, e.g., an {@link ExistingAxiomFilter} to skip the
+ * axioms already asserted in the source ontology.
+ */
+public class FilteredAxiomSink implements AxiomSink
+{
+   private final AxiomSink axiomSink;
+   private final Predicate<? super OWLAxiom> skippedAxioms;
+
+   private final AtomicLong skippedAxiomCount = new AtomicLong();
+
+   /**
+    * @param axiomSink
+    *          The sink that receives the axioms that are not skipped
+    * @param skippedAxioms
+    *          The predicate that selects the axioms to skip
+    */
+   public FilteredAxiomSink(@Nonnull AxiomSink axiomSink, @Nonnull Predicate<? super OWLAxiom> skippedAxioms)
+   {
+      this.axiomSink = checkNotNull(axiomSink);
+      this.skippedAxioms = checkNotNull(skippedAxioms);
+   }
+
+   @Override
+   public void add(Collection<? extends OWLAxiom> axioms)
+   {
+      List<OWLAxiom> keptAxioms = new ArrayList<>(axioms.size());
+      for (OWLAxiom axiom : axioms) {
+         if (skippedAxioms.test(axiom)) {
+            skippedAxiomCount.incrementAndGet();
+         } else {
+            keptAxioms.add(axiom);
+         }
+      }
+      if (!keptAxioms.isEmpty()) {
+         axiomSink.add(keptAxioms);
+      }
+   }
+
+   /**
+    * Returns the number of axioms passed on to the other sink.
+    */
+   @Override
+   public long getAxiomCount()
+   {
+      return axiomSink.getAxiomCount();
+   }
+
+   /**
+    * Returns the number of axioms skipped by the filter.
+    *
+    * @return The skipped axiom count.
+    */
+   public long getSkippedAxiomCount()
+   {
+      return skippedAxiomCount.get();
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      axiomSink.close();
+   }
+}
@@ -0,0 +1,50 @@
+package org.mm.cellfie.engine;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+/**
+ * The result of an incremental run: the axioms to remove because the rows
+ * that produced them changed or disappeared, together with the new rule
+ * histories to record once the changes are committed. The axioms to add are
+ * sent to the {@link AxiomSink} of the run.
+ */
+public class GenerationChangeSet
+{
+   private final Set<OWLAxiom> removals;
+   private final Map<String, RuleHistory> ruleHistories;
+   private final long evaluatedRowCount;
+   private final long reusedRowCount;
+
+   public GenerationChangeSet(Set<OWLAxiom> removals, Map<String, RuleHistory> ruleHistories, long evaluatedRowCount,
+         long reusedRowCount)
+   {
+      this.removals = removals;
+      this.ruleHistories = ruleHistories;
+      this.evaluatedRowCount = evaluatedRowCount;
+      this.reusedRowCount = reusedRowCount;
+   }
+
+   public Set<OWLAxiom> getRemovals()
+   {
+      return Collections.unmodifiableSet(removals);
+   }
+
+   public Map<String, RuleHistory> getRuleHistories()
+   {
+      return Collections.unmodifiableMap(ruleHistories);
+   }
+
+   public long getEvaluatedRowCount()
+   {
+      return evaluatedRowCount;
+   }
+
+   public long getReusedRowCount()
+   {
+      return reusedRowCount;
+   }
+}
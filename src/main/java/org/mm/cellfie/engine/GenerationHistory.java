@@ -0,0 +1,140 @@
+package org.mm.cellfie.engine;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDeclarationAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+/**
+ * Remembers the per-row outcome of the transformation rules whose generated
+ * axioms were committed to the ontology. The history is the baseline of an
+ * incremental run, which re-evaluates only the rows that changed since then.
+ * <p>
+ * The history also keeps the axioms that the commits actually added to the
+ * ontology, i.e., without the generated axioms that were already asserted.
+ * An incremental run removes only these owned axioms, such that an axiom
+ * that Cellfie did not add is never taken out of the ontology.
+ */
+public class GenerationHistory
+{
+   private final Map<String, RuleHistory> ruleHistories = new ConcurrentHashMap<>();
+   private final Set<OWLAxiom> ownedAxioms = ConcurrentHashMap.newKeySet();
+
+   /**
+    * Returns the key that identifies a rule in the history. The row bounds are
+    * not part of the key such that a rule with a '+' end row keeps its
+    * history when rows are appended to the worksheet.
+    *
+    * @param ruleString
+    *          The transformation rule expression
+    * @param range
+    *          The cell range of the rule
+    * @return The rule key.
+    */
+   public static String getRuleKey(@Nonnull String ruleString, @Nonnull CellRange range)
+   {
+      return String.format("%s!%d:%d %s", range.getSheetName(), range.getStartColumn(), range.getEndColumn(), ruleString);
+   }
+
+   /**
+    * Returns the history of the given rule.
+    *
+    * @param ruleKey
+    *          The rule key from {@link #getRuleKey(String, CellRange)}
+    * @return The rule history, or an empty history if the rule was never
+    *         committed.
+    */
+   public RuleHistory getRuleHistory(@Nonnull String ruleKey)
+   {
+      RuleHistory ruleHistory = ruleHistories.get(checkNotNull(ruleKey));
+      return (ruleHistory != null) ? ruleHistory : new RuleHistory();
+   }
+
+   /**
+    * Adds the axioms recorded for all the rules except the given ones to the
+    * target set.
+    */
+   /* package */ void collectAxioms(Set<String> excludedRuleKeys, Set<OWLAxiom> target)
+   {
+      for (Map.Entry<String, RuleHistory> entry : ruleHistories.entrySet()) {
+         if (!excludedRuleKeys.contains(entry.getKey())) {
+            entry.getValue().collectAxioms(target);
+         }
+      }
+   }
+
+   /**
+    * Records the rule histories of a change set once its changes have been
+    * committed to the ontology.
+    *
+    * @param changeSet
+    *          The committed change set.
+    */
+   public void accept(@Nonnull GenerationChangeSet changeSet)
+   {
+      ruleHistories.putAll(changeSet.getRuleHistories());
+   }
+
+   /**
+    * Records the axioms that a commit has added to the ontology.
+    *
+    * @param axioms
+    *          The added axioms.
+    */
+   public void addOwnedAxioms(@Nonnull Collection<? extends OWLAxiom> axioms)
+   {
+      ownedAxioms.addAll(axioms);
+   }
+
+   /**
+    * Forgets the given axioms, e.g., before a commit removes them from the
+    * ontology.
+    *
+    * @param axioms
+    *          The axioms that are no longer owned.
+    */
+   public void removeOwnedAxioms(@Nonnull Collection<? extends OWLAxiom> axioms)
+   {
+      ownedAxioms.removeAll(axioms);
+   }
+
+   /**
+    * Tells whether the given axiom was added to the ontology by a commit
+    * recorded in this history.
+    *
+    * @param axiom
+    *          The axiom to check.
+    * @return {@code true} if the axiom is owned by this history.
+    */
+   public boolean isOwned(@Nonnull OWLAxiom axiom)
+   {
+      return ownedAxioms.contains(axiom);
+   }
+
+   /* package */ void collectOwnedDeclarations(Map<OWLEntity, OWLAxiom> target)
+   {
+      for (OWLAxiom ax : ownedAxioms) {
+         if (ax instanceof OWLDeclarationAxiom) {
+            target.put(((OWLDeclarationAxiom) ax).getEntity(), ax);
+         }
+      }
+   }
+
+   /**
+    * Forgets all the rule histories and the owned axioms, so the next run
+    * evaluates every row and removes nothing.
+    */
+   public void clear()
+   {
+      ruleHistories.clear();
+      ownedAxioms.clear();
+   }
+}
@@ -0,0 +1,83 @@
+package org.mm.cellfie.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the number of cells processed by a generation run and
+ * carries the cancellation request from the user. The object is shared by
+ * all the threads that evaluate the rules.
+ */
+public class GenerationProgress
+{
+   private final long totalCells;
+   private final AtomicLong processedCells = new AtomicLong();
+   private final long startTime = System.nanoTime();
+
+   private volatile boolean cancelled = false;
+
+   public GenerationProgress(long totalCells)
+   {
+      this.totalCells = totalCells;
+   }
+
+   public long getTotalCells()
+   {
+      return totalCells;
+   }
+
+   public long getProcessedCells()
+   {
+      return processedCells.get();
+   }
+
+   public void addProcessedCells(long count)
+   {
+      processedCells.addAndGet(count);
+   }
+
+   /**
+    * Requests the generation to stop. The evaluation threads finish the cell
+    * they are working on and keep the renderings produced so far.
+    */
+   public void cancel()
+   {
+      cancelled = true;
+   }
+
+   public boolean isCancelled()
+   {
+      return cancelled;
+   }
+
+   public long getElapsedMillis()
+   {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+   }
+
+   public double getCellsPerSecond()
+   {
+      long elapsedMillis = getElapsedMillis();
+      if (elapsedMillis == 0) {
+         return 0;
+      }
+      return getProcessedCells() * 1000.0 / elapsedMillis;
+   }
+
+   /**
+    * Returns the estimated time to finish the run based on the average speed
+    * so far.
+    *
+    * @return The remaining time in milliseconds, or -1 if no cell has been
+    *         processed yet.
+    */
+   public long getEstimatedRemainingMillis()
+   {
+      double cellsPerSecond = getCellsPerSecond();
+      if (cellsPerSecond == 0) {
+         return -1;
+      }
+      long remainingCells = Math.max(0, totalCells - getProcessedCells());
+      return (long) (remainingCells * 1000.0 / cellsPerSecond);
+   }
+}
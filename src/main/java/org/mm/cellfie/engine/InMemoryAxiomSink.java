@@ -0,0 +1,60 @@
+package org.mm.cellfie.engine;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+/**
+ * Keeps the generated axioms in memory. Duplicate axioms produced by
+ * different cells are stored only once.
+ */
+public class InMemoryAxiomSink implements AxiomSink
+{
+   private final Set<OWLAxiom> axioms = ConcurrentHashMap.newKeySet();
+
+   @Override
+   public void add(Collection<? extends OWLAxiom> axioms)
+   {
+      this.axioms.addAll(axioms);
+   }
+
+   @Override
+   public long getAxiomCount()
+   {
+      return axioms.size();
+   }
+
+   /**
+    * Returns the axioms collected so far.
+    *
+    * @return An unmodifiable view of the axiom set.
+    */
+   public Set<OWLAxiom> getAxioms()
+   {
+      return Collections.unmodifiableSet(axioms);
+   }
+
+   /**
+    * Removes the collected axioms that satisfy the given filter.
+    *
+    * @param filter
+    *          The predicate that selects the axioms to remove.
+    * @return The number of axioms removed.
+    */
+   public long removeIf(Predicate<? super OWLAxiom> filter)
+   {
+      int sizeBefore = axioms.size();
+      axioms.removeIf(filter);
+      return sizeBefore - axioms.size();
+   }
+
+   @Override
+   public void close()
+   {
+      // NO-OP
+   }
+}
@@ -0,0 +1,224 @@
+package org.mm.cellfie.engine;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.mm.renderer.Renderer;
+import org.mm.ss.SpreadSheetDataSource;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDeclarationAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Evaluates transformation rules row by row against the generation history.
+ * A row whose fingerprint matches the one recorded in the history keeps its
+ * previous axioms and is not rendered again. Only the axioms of the new or
+ * changed rows are sent to the axiom sink, and the axioms that are no longer
+ * produced by any row are collected in the change set as removals, provided
+ * that an earlier commit added them to the ontology.
+ * <p>
+ * The fingerprint only covers the row of the current location. Rules that
+ * refer to absolute rows, to other sheets or that shift the location up or
+ * down are therefore re-evaluated completely on every run.
+ * <p>
+ * The declarations of the entities created during a run are attributed to
+ * the evaluated rows that refer to these entities by
+ * {@link #attributeDeclarations(Collection)}, such that a declaration is
+ * removed together with the last row that uses its entity.
+ */
+public class IncrementalEvaluator
+{
+   private static final Pattern NON_LOCAL_REFERENCE = Pattern.compile(
+         "@(?:'[^']*'|[\\w.]+)!" // sheet-qualified reference
+         + "|@\\$?(?:[A-Za-z]+|\\*)\\$?[0-9]+" // absolute row reference
+         + "|(?i:Shift(?:Up|Down))"); // location shifting across rows
+
+   private final GenerationHistory history;
+
+   private final Map<String, RuleHistory> pendingHistories = new HashMap<>();
+   private final Map<String, List<Integer>> evaluatedRows = new HashMap<>();
+   private final Set<OWLAxiom> removalCandidates = new HashSet<>();
+
+   private long evaluatedRowCount = 0;
+   private long reusedRowCount = 0;
+
+   public IncrementalEvaluator(@Nonnull GenerationHistory history)
+   {
+      this.history = checkNotNull(history);
+   }
+
+   /**
+    * Tells whether the rule only refers to cells in the row of the current
+    * location, such that its output can be reused while the row is unchanged.
+    *
+    * @param ruleString
+    *          The transformation rule expression.
+    * @return {@code true} if the rule output depends on the current row only.
+    */
+   public static boolean isRowLocal(String ruleString)
+   {
+      return !NON_LOCAL_REFERENCE.matcher(ruleString).find();
+   }
+
+   /**
+    * Evaluates the rule over the new or changed rows of the range.
+    *
+    * @param ruleString
+    *          The transformation rule expression
+    * @param ruleEvaluator
+    *          The compiled rule
+    * @param range
+    *          The cell range of the rule
+    * @param dataSource
+    *          The data source that keeps the current location
+    * @param renderer
+    *          The renderer for producing the axioms
+    * @param logRenderer
+    *          The renderer for producing the log messages
+    * @param axiomSink
+    *          The sink that receives the axioms of the evaluated rows
+    * @param result
+    *          The result object to collect the log
+    * @param progress
+    *          The progress to report the processed cells to. The rows left
+    *          when the progress is cancelled keep their previous history.
+    */
+   public void evaluate(String ruleString, RuleEvaluator ruleEvaluator, CellRange range,
+         SpreadSheetDataSource dataSource, Renderer renderer, Renderer logRenderer, AxiomSink axiomSink,
+         EvaluationResult result, GenerationProgress progress)
+   {
+      String ruleKey = GenerationHistory.getRuleKey(ruleString, range);
+      RuleHistory previousHistory = history.getRuleHistory(ruleKey);
+      RuleHistory currentHistory = new RuleHistory();
+      boolean rowLocal = isRowLocal(ruleString);
+      List<Integer> evaluatedRowNumbers = new ArrayList<>();
+      Sheet sheet = dataSource.getWorkbook().getSheet(range.getSheetName());
+
+      for (int row = range.getStartRow(); row <= range.getEndRow(); row++) {
+         RuleHistory.RowRecord previousRecord = previousHistory.getRowRecord(row);
+         if (progress.isCancelled()) {
+            keepRowRecord(currentHistory, row, previousRecord);
+            continue;
+         }
+         long fingerprint = RowFingerprint.of(sheet, row);
+         if (rowLocal && previousRecord != null && previousRecord.getFingerprint() == fingerprint) {
+            currentHistory.putRowRecord(row, previousRecord);
+            progress.addProcessedCells(range.getColumnCount());
+            reusedRowCount++;
+            continue;
+         }
+         InMemoryAxiomSink rowSink = new InMemoryAxiomSink();
+         ruleEvaluator.evaluate(range.subRange(row, row), dataSource, renderer, logRenderer, rowSink, result, progress);
+         if (progress.isCancelled()) {
+            keepRowRecord(currentHistory, row, previousRecord); // the row may be incomplete
+            continue;
+         }
+         axiomSink.add(rowSink.getAxioms());
+         currentHistory.putRowRecord(row, new RuleHistory.RowRecord(fingerprint, ImmutableSet.copyOf(rowSink.getAxioms())));
+         if (previousRecord != null) {
+            removalCandidates.addAll(previousRecord.getAxioms());
+         }
+         evaluatedRowNumbers.add(row);
+         evaluatedRowCount++;
+      }
+      // Rows that are no longer part of the range
+      for (Map.Entry<Integer, RuleHistory.RowRecord> entry : previousHistory.getRowRecords().entrySet()) {
+         int row = entry.getKey();
+         if (row < range.getStartRow() || row > range.getEndRow()) {
+            removalCandidates.addAll(entry.getValue().getAxioms());
+         }
+      }
+      pendingHistories.put(ruleKey, currentHistory);
+      evaluatedRows.put(ruleKey, evaluatedRowNumbers);
+   }
+
+   /**
+    * Adds the entity declarations to the records of the rows evaluated so far
+    * whose axioms refer to the declared entities. The declarations committed
+    * by earlier runs are attributed as well, such that a row that reuses an
+    * entity created by another row keeps its declaration when the other row
+    * is deleted. Call this method before {@link #getChangeSet()}.
+    *
+    * @param declarations
+    *          The declarations of the entities created during this run. Axioms
+    *          of other types are ignored.
+    */
+   public void attributeDeclarations(@Nonnull Collection<? extends OWLAxiom> declarations)
+   {
+      Map<OWLEntity, OWLAxiom> declarationsByEntity = new HashMap<>();
+      history.collectOwnedDeclarations(declarationsByEntity);
+      for (OWLAxiom ax : declarations) {
+         if (ax instanceof OWLDeclarationAxiom) {
+            declarationsByEntity.put(((OWLDeclarationAxiom) ax).getEntity(), ax);
+         }
+      }
+      if (declarationsByEntity.isEmpty()) {
+         return;
+      }
+      for (Map.Entry<String, List<Integer>> entry : evaluatedRows.entrySet()) {
+         RuleHistory ruleHistory = pendingHistories.get(entry.getKey());
+         for (int row : entry.getValue()) {
+            RuleHistory.RowRecord rowRecord = ruleHistory.getRowRecord(row);
+            Set<OWLAxiom> rowAxioms = new HashSet<>(rowRecord.getAxioms());
+            for (OWLAxiom ax : rowRecord.getAxioms()) {
+               for (OWLEntity entity : ax.getSignature()) {
+                  OWLAxiom declaration = declarationsByEntity.get(entity);
+                  if (declaration != null) {
+                     rowAxioms.add(declaration);
+                  }
+               }
+            }
+            if (rowAxioms.size() > rowRecord.getAxioms().size()) {
+               ruleHistory.putRowRecord(row, new RuleHistory.RowRecord(rowRecord.getFingerprint(),
+                     ImmutableSet.copyOf(rowAxioms)));
+            }
+         }
+      }
+   }
+
+   /**
+    * Returns the change set of the rules evaluated so far. An axiom of a
+    * changed row is removed only if no other row of any rule still produces
+    * it and if it is owned by the history, i.e., a commit of Cellfie added it
+    * to the ontology.
+    *
+    * @return The change set.
+    */
+   public GenerationChangeSet getChangeSet()
+   {
+      Set<OWLAxiom> removals = new HashSet<>();
+      if (!removalCandidates.isEmpty()) {
+         Set<OWLAxiom> retainedAxioms = new HashSet<>();
+         for (RuleHistory ruleHistory : pendingHistories.values()) {
+            ruleHistory.collectAxioms(retainedAxioms);
+         }
+         history.collectAxioms(pendingHistories.keySet(), retainedAxioms);
+         for (OWLAxiom ax : removalCandidates) {
+            if (!retainedAxioms.contains(ax) && history.isOwned(ax)) {
+               removals.add(ax);
+            }
+         }
+      }
+      return new GenerationChangeSet(removals, pendingHistories, evaluatedRowCount, reusedRowCount);
+   }
+
+   private static void keepRowRecord(RuleHistory ruleHistory, int row, RuleHistory.RowRecord previousRecord)
+   {
+      if (previousRecord != null) {
+         ruleHistory.putRowRecord(row, previousRecord);
+      }
+   }
+}
@@ -0,0 +1,37 @@
+package org.mm.cellfie.engine;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nonnull;
+
+import org.mm.core.OWLOntologySourceHook;
+import org.mm.renderer.Renderer;
+import org.mm.renderer.owlapi.OWLRenderer;
+import org.mm.renderer.text.TextRenderer;
+import org.mm.ss.SpreadSheetDataSource;
+
+/**
+ * Creates the standard MappingMaster renderers, i.e., the OWL renderer for
+ * the axioms and the text renderer for the log.
+ */
+public class MMRendererFactory implements RendererFactory
+{
+   private final OWLOntologySourceHook ontologySourceHook;
+
+   public MMRendererFactory(@Nonnull OWLOntologySourceHook ontologySourceHook)
+   {
+      this.ontologySourceHook = checkNotNull(ontologySourceHook);
+   }
+
+   @Override
+   public Renderer createRenderer(SpreadSheetDataSource dataSource)
+   {
+      return new OWLRenderer(ontologySourceHook, dataSource);
+   }
+
+   @Override
+   public Renderer createLogRenderer(SpreadSheetDataSource dataSource)
+   {
+      return new TextRenderer(dataSource);
+   }
+}
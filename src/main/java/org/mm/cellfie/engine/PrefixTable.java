@@ -0,0 +1,82 @@
+package org.mm.cellfie.engine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.PrefixManager;
+import org.semanticweb.owlapi.vocab.Namespaces;
+
+/**
+ * Maps the prefix labels of prefixed names, e.g., "owl:", to their namespace
+ * IRIs, such that expanding a prefixed name is a single hash lookup. The
+ * table holds the prefixes of an ontology document and the built-in
+ * namespaces of the OWLAPI, where the built-in namespaces take precedence.
+ * The table is immutable, hence it can be shared by parallel rendering tasks
+ * and is rebuilt to pick up prefix changes.
+ */
+public class PrefixTable
+{
+   private final Map<String, IRI> namespaces;
+
+   /**
+    * Builds the table of the given prefixes and the built-in namespaces.
+    *
+    * @param prefixManager
+    *          The prefixes of the ontology document, or {@code null} if the
+    *          document format has no prefixes
+    */
+   public PrefixTable(@Nullable PrefixManager prefixManager)
+   {
+      Map<String, IRI> table = new HashMap<>();
+      if (prefixManager != null) {
+         for (Map.Entry<String, String> prefix : prefixManager.getPrefixName2PrefixMap().entrySet()) {
+            table.put(prefix.getKey(), IRI.create(prefix.getValue()));
+         }
+      }
+      for (Namespaces ns : Namespaces.values()) {
+         table.put(ns.name().toLowerCase() + ":", IRI.create(ns.toString()));
+      }
+      namespaces = Collections.unmodifiableMap(table);
+   }
+
+   /**
+    * Returns the namespace of the prefix of the given name.
+    *
+    * @param prefixedName
+    *          The entity name, e.g., "owl:Thing"
+    * @return The namespace IRI, or empty if the name has no prefix or the
+    *         prefix is unknown.
+    */
+   public Optional<IRI> getNamespace(@Nonnull String prefixedName)
+   {
+      int colonIndex = prefixedName.indexOf(':');
+      if (colonIndex > 0) {
+         return Optional.ofNullable(namespaces.get(prefixedName.substring(0, colonIndex + 1)));
+      }
+      return Optional.empty();
+   }
+
+   /**
+    * Returns the local name of the given name, i.e., the part after the
+    * prefix label.
+    *
+    * @param prefixedName
+    *          The entity name, e.g., "owl:Thing"
+    * @return The local name, e.g., "Thing", or the name itself if it has no
+    *         prefix.
+    */
+   public static String getLocalName(@Nonnull String prefixedName)
+   {
+      int colonIndex = prefixedName.indexOf(':');
+      if (colonIndex >= 0) {
+         return prefixedName.substring(colonIndex + 1);
+      }
+      return prefixedName;
+   }
+}
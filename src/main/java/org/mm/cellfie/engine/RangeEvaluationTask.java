@@ -0,0 +1,248 @@
+package org.mm.cellfie.engine;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+import javax.annotation.Nonnull;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.mm.ss.SpreadSheetDataSource;
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+/**
+ * A fork-join task that evaluates a transformation rule over a cell range.
+ * The range is cut into blocks in the order of the serial evaluation, i.e.,
+ * column by column and, within a column, into runs of rows. The blocks are
+ * evaluated in parallel but their log messages are merged and their axioms
+ * are passed to the axiom sink in block order, hence the output is the same
+ * as that of {@link RuleEvaluator} on the whole range.
+ * <p>
+ * The blocks are evaluated in windows of consecutive blocks, one window after
+ * the other. A block that finishes before the blocks above it waits for them
+ * with its axioms in memory, hence the window size bounds the memory held by
+ * the waiting blocks to the axioms of {@link #DEFAULT_WINDOW_SIZE} blocks.
+ * <p>
+ * The state of a renderer is not safe to share: the data source of a
+ * renderer keeps the current location, therefore every block is evaluated
+ * using its own data source and its own renderers. The blocks do share the
+ * workbook and the compiled rule, which are only read, and the ontology
+ * source of the renderer factory, whose entity resolver must accept calls
+ * from several threads.
+ */
+public class RangeEvaluationTask extends RecursiveTask<EvaluationResult>
+{
+   private static final long serialVersionUID = 1L;
+
+   public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+   public static final int DEFAULT_WINDOW_SIZE = 64; // number of blocks
+
+   private final Workbook workbook;
+   private final RendererFactory rendererFactory;
+   private final RuleEvaluator ruleEvaluator;
+   private final List<CellRange> blocks;
+   private final int firstBlock;
+   private final int endBlock; // exclusive
+   private final int windowSize;
+   private final BlockSequencer sequencer;
+   private final GenerationProgress progress;
+
+   public RangeEvaluationTask(@Nonnull Workbook workbook, @Nonnull RendererFactory rendererFactory,
+         @Nonnull RuleEvaluator ruleEvaluator, @Nonnull CellRange range, @Nonnull AxiomSink axiomSink,
+         @Nonnull GenerationProgress progress)
+   {
+      this(workbook, rendererFactory, ruleEvaluator, range, axiomSink, progress, DEFAULT_BLOCK_SIZE);
+   }
+
+   /**
+    * Creates the task for the given range.
+    *
+    * @param blockSize
+    *          The maximum number of rows of a block. The columns of a range
+    *          whose cells fit in a single block are evaluated together.
+    */
+   public RangeEvaluationTask(@Nonnull Workbook workbook, @Nonnull RendererFactory rendererFactory,
+         @Nonnull RuleEvaluator ruleEvaluator, @Nonnull CellRange range, @Nonnull AxiomSink axiomSink,
+         @Nonnull GenerationProgress progress, int blockSize)
+   {
+      this(workbook, rendererFactory, ruleEvaluator, range, axiomSink, progress, blockSize, DEFAULT_WINDOW_SIZE);
+   }
+
+   /* package */ RangeEvaluationTask(@Nonnull Workbook workbook, @Nonnull RendererFactory rendererFactory,
+         @Nonnull RuleEvaluator ruleEvaluator, @Nonnull CellRange range, @Nonnull AxiomSink axiomSink,
+         @Nonnull GenerationProgress progress, int blockSize, int windowSize)
+   {
+      this(checkNotNull(workbook), checkNotNull(rendererFactory), checkNotNull(ruleEvaluator),
+            splitIntoBlocks(checkNotNull(range), Math.max(1, blockSize)), Math.max(1, windowSize),
+            new BlockSequencer(checkNotNull(axiomSink)), checkNotNull(progress));
+   }
+
+   private RangeEvaluationTask(Workbook workbook, RendererFactory rendererFactory, RuleEvaluator ruleEvaluator,
+         List<CellRange> blocks, int windowSize, BlockSequencer sequencer, GenerationProgress progress)
+   {
+      this(workbook, rendererFactory, ruleEvaluator, blocks, 0, blocks.size(), windowSize, sequencer, progress);
+   }
+
+   private RangeEvaluationTask(Workbook workbook, RendererFactory rendererFactory, RuleEvaluator ruleEvaluator,
+         List<CellRange> blocks, int firstBlock, int endBlock, int windowSize, BlockSequencer sequencer,
+         GenerationProgress progress)
+   {
+      this.workbook = workbook;
+      this.rendererFactory = rendererFactory;
+      this.ruleEvaluator = ruleEvaluator;
+      this.blocks = blocks;
+      this.firstBlock = firstBlock;
+      this.endBlock = endBlock;
+      this.windowSize = windowSize;
+      this.sequencer = sequencer;
+      this.progress = progress;
+   }
+
+   /*
+    * The blocks are listed in the order in which the serial evaluation visits
+    * the cells. A block spans several columns only if it covers all the rows
+    * of the range, such that the cells of a block stay in that order too.
+    */
+   private static List<CellRange> splitIntoBlocks(CellRange range, int blockSize)
+   {
+      List<CellRange> blocks = new ArrayList<>();
+      int rowCount = range.getRowCount();
+      int columnsPerBlock = Math.max(1, blockSize / rowCount);
+      for (int column = range.getStartColumn(); column <= range.getEndColumn(); column += columnsPerBlock) {
+         int endColumn = Math.min(column + columnsPerBlock - 1, range.getEndColumn());
+         for (int row = range.getStartRow(); row <= range.getEndRow(); row += blockSize) {
+            int endRow = Math.min(row + blockSize - 1, range.getEndRow());
+            blocks.add(new CellRange(range.getSheetName(), column, row, endColumn, endRow));
+         }
+      }
+      return Collections.unmodifiableList(blocks);
+   }
+
+   @Override
+   protected EvaluationResult compute()
+   {
+      if (progress.isCancelled()) {
+         for (int block = firstBlock; block < endBlock; block++) {
+            sequencer.complete(block, Collections.emptyList()); // lets the blocks after these ones through
+         }
+         return new EvaluationResult();
+      }
+      if (endBlock - firstBlock > windowSize) {
+         return computeInWindows();
+      }
+      if (endBlock - firstBlock == 1) {
+         return evaluateBlock();
+      }
+      int middleBlock = firstBlock + (endBlock - firstBlock) / 2;
+      RangeEvaluationTask upperTask = createSubtask(firstBlock, middleBlock);
+      RangeEvaluationTask lowerTask = createSubtask(middleBlock, endBlock);
+      lowerTask.fork();
+      EvaluationResult upperResult = upperTask.compute();
+      return upperResult.merge(lowerTask.join());
+   }
+
+   /*
+    * All the blocks of a window are passed to the sequencer before the next
+    * window starts, hence the threads only idle at the end of each window.
+    */
+   private EvaluationResult computeInWindows()
+   {
+      EvaluationResult result = new EvaluationResult();
+      for (int first = firstBlock; first < endBlock; first += windowSize) {
+         result.merge(createSubtask(first, Math.min(first + windowSize, endBlock)).invoke());
+      }
+      return result;
+   }
+
+   private RangeEvaluationTask createSubtask(int first, int end)
+   {
+      return new RangeEvaluationTask(workbook, rendererFactory, ruleEvaluator, blocks, first, end, windowSize,
+            sequencer, progress);
+   }
+
+   private EvaluationResult evaluateBlock()
+   {
+      SpreadSheetDataSource dataSource = new SpreadSheetDataSource(workbook);
+      EvaluationResult result = new EvaluationResult();
+      BlockAxiomBuffer blockAxioms = new BlockAxiomBuffer();
+      try {
+         ruleEvaluator.evaluate(blocks.get(firstBlock), dataSource,
+               rendererFactory.createRenderer(dataSource),
+               rendererFactory.createLogRenderer(dataSource),
+               blockAxioms, result, progress);
+      } finally {
+         sequencer.complete(firstBlock, blockAxioms.getCellAxioms());
+      }
+      return result;
+   }
+
+   /**
+    * Passes the axioms of the finished blocks to the axiom sink in block
+    * order. The axioms of a block that finishes before the blocks above it
+    * are held back until those blocks finish.
+    */
+   private static class BlockSequencer
+   {
+      private final AxiomSink axiomSink;
+      private final Map<Integer, List<Collection<? extends OWLAxiom>>> finishedBlocks = new HashMap<>();
+      private int nextBlock = 0;
+
+      public BlockSequencer(AxiomSink axiomSink)
+      {
+         this.axiomSink = axiomSink;
+      }
+
+      public synchronized void complete(int block, List<Collection<? extends OWLAxiom>> cellAxioms)
+      {
+         finishedBlocks.put(block, cellAxioms);
+         List<Collection<? extends OWLAxiom>> nextAxioms;
+         while ((nextAxioms = finishedBlocks.remove(nextBlock)) != null) {
+            for (Collection<? extends OWLAxiom> axioms : nextAxioms) {
+               axiomSink.add(axioms);
+            }
+            nextBlock++;
+         }
+      }
+   }
+
+   /**
+    * Keeps the axioms of a single block, cell by cell, until the block can be
+    * passed to the axiom sink. A block is evaluated by one thread only.
+    */
+   private static class BlockAxiomBuffer implements AxiomSink
+   {
+      private final List<Collection<? extends OWLAxiom>> cellAxioms = new ArrayList<>();
+      private long axiomCount = 0;
+
+      @Override
+      public void add(Collection<? extends OWLAxiom> axioms)
+      {
+         cellAxioms.add(axioms);
+         axiomCount += axioms.size();
+      }
+
+      @Override
+      public long getAxiomCount()
+      {
+         return axiomCount;
+      }
+
+      public List<Collection<? extends OWLAxiom>> getCellAxioms()
+      {
+         return cellAxioms;
+      }
+
+      @Override
+      public void close()
+      {
+         // NO-OP
+      }
+   }
+}
@@ -0,0 +1,25 @@
+package org.mm.cellfie.engine;
+
+import org.mm.renderer.Renderer;
+import org.mm.ss.SpreadSheetDataSource;
+
+/**
+ * A factory to create renderers bound to a particular data source. The
+ * renderers read the cell values from the current location of the data
+ * source, therefore each evaluation that runs concurrently needs its own
+ * data source and its own renderers. The renderers created by a factory
+ * share its ontology source, whose entity resolver must accept calls from
+ * several threads.
+ */
+public interface RendererFactory
+{
+   /**
+    * Creates the renderer that produces the OWL axioms.
+    */
+   Renderer createRenderer(SpreadSheetDataSource dataSource);
+
+   /**
+    * Creates the renderer that produces the log messages.
+    */
+   Renderer createLogRenderer(SpreadSheetDataSource dataSource);
+}
@@ -0,0 +1,76 @@
+package org.mm.cellfie.engine;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Computes a 64-bit fingerprint of the cell values in a worksheet row. Two
+ * rows with the same fingerprint are considered to produce the same axioms
+ * for a rule that only refers to cells in its current row.
+ * <p>
+ * Formula cells contribute their cached result, hence a row whose formulas
+ * evaluate to a different value after a workbook refresh gets a different
+ * fingerprint.
+ */
+public final class RowFingerprint
+{
+   private static final long EMPTY_ROW = 0L;
+
+   private RowFingerprint()
+   {
+      // NO-OP
+   }
+
+   /**
+    * Returns the fingerprint of a row in the given sheet.
+    *
+    * @param sheet
+    *          The worksheet
+    * @param rowNumber
+    *          The 1-based physical row number
+    * @return The fingerprint of the row values.
+    */
+   public static long of(Sheet sheet, int rowNumber)
+   {
+      Row row = sheet.getRow(rowNumber - 1);
+      if (row == null) {
+         return EMPTY_ROW;
+      }
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      for (Cell cell : row) {
+         CellType cellType = cell.getCellType();
+         if (cellType == CellType.FORMULA) {
+            cellType = cell.getCachedFormulaResultType();
+         }
+         if (cellType == CellType.BLANK) {
+            continue;
+         }
+         hasher.putInt(cell.getColumnIndex());
+         hasher.putInt(cellType.ordinal());
+         switch (cellType) {
+            case STRING :
+               hasher.putString(cell.getStringCellValue(), StandardCharsets.UTF_8);
+               break;
+            case NUMERIC :
+               hasher.putDouble(cell.getNumericCellValue());
+               break;
+            case BOOLEAN :
+               hasher.putBoolean(cell.getBooleanCellValue());
+               break;
+            case ERROR :
+               hasher.putByte(cell.getErrorCellValue());
+               break;
+            default :
+               break;
+         }
+      }
+      return hasher.hash().asLong();
+   }
+}
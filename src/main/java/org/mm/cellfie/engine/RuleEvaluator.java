@@ -0,0 +1,136 @@
+package org.mm.cellfie.engine;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.mm.cellfie.workbook.CellStoreWorkbook;
+import org.mm.cellfie.workbook.SheetOccupancy;
+import org.mm.parser.node.MMExpressionNode;
+import org.mm.renderer.Renderer;
+import org.mm.rendering.Rendering;
+import org.mm.rendering.owlapi.OWLRendering;
+import org.mm.ss.SpreadSheetDataSource;
+import org.mm.ss.SpreadsheetLocation;
+
+/**
+ * Evaluates a compiled transformation rule over every cell in a range. The
+ * cells are visited column by column, going down the rows of each column.
+ * The cells in the rows that have no value at all are counted as processed
+ * but not rendered.
+ */
+public class RuleEvaluator
+{
+   private static final int PROGRESS_INTERVAL = 128; // number of cells between progress updates
+
+   private final MMExpressionNode ruleNode;
+   private final MMExpressionNode logNode;
+
+   public RuleEvaluator(@Nonnull MMExpressionNode ruleNode, @Nonnull MMExpressionNode logNode)
+   {
+      this.ruleNode = checkNotNull(ruleNode);
+      this.logNode = checkNotNull(logNode);
+   }
+
+   /**
+    * Creates an evaluator that produces the axioms only, without rendering
+    * a log message for each cell.
+    *
+    * @param ruleNode
+    *          The compiled transformation rule.
+    */
+   public RuleEvaluator(@Nonnull MMExpressionNode ruleNode)
+   {
+      this.ruleNode = checkNotNull(ruleNode);
+      this.logNode = null;
+   }
+
+   /**
+    * Renders the rule at each location of the given range. The renderers must
+    * be bound to the given data source since the method moves the data source
+    * location from one cell to the next.
+    *
+    * @param range
+    *          The cell range to evaluate
+    * @param dataSource
+    *          The data source that keeps the current location
+    * @param renderer
+    *          The renderer for producing the axioms
+    * @param logRenderer
+    *          The renderer for producing the log messages. It is not used if
+    *          the evaluator has no log node.
+    * @param axiomSink
+    *          The sink that receives the generated axioms
+    * @param result
+    *          The result object to collect the log
+    * @param progress
+    *          The progress to report the processed cells to. The evaluation
+    *          stops early when the progress is cancelled.
+    */
+   public void evaluate(CellRange range, SpreadSheetDataSource dataSource, Renderer renderer, Renderer logRenderer,
+         AxiomSink axiomSink, EvaluationResult result, GenerationProgress progress)
+   {
+      String sheetName = range.getSheetName();
+      SheetOccupancy occupancy = getOccupancy(dataSource, sheetName);
+
+      int pendingCells = 0;
+      try {
+         cells:
+         for (int column = range.getStartColumn(); column <= range.getEndColumn(); column++) {
+            for (int row = range.getStartRow(); row <= range.getEndRow(); row++) {
+               if (progress.isCancelled()) {
+                  break cells;
+               }
+               if (occupancy == null || !occupancy.isBlankRow(row - 1)) {
+                  // The data source keeps an immutable location, hence one is created for each rendered cell
+                  dataSource.setCurrentLocation(new SpreadsheetLocation(sheetName, column, row));
+                  render(renderer, axiomSink);
+                  if (logNode != null) {
+                     log(logRenderer, result.getLogBuilder());
+                  }
+               }
+               if (++pendingCells == PROGRESS_INTERVAL) {
+                  progress.addProcessedCells(pendingCells);
+                  pendingCells = 0;
+               }
+            }
+         }
+      } finally {
+         progress.addProcessedCells(pendingCells);
+      }
+   }
+
+   /*
+    * The blank rows are known only for the workbooks read into cell stores.
+    */
+   private static SheetOccupancy getOccupancy(SpreadSheetDataSource dataSource, String sheetName)
+   {
+      Workbook workbook = dataSource.getWorkbook();
+      if (workbook instanceof CellStoreWorkbook) {
+         int sheetIndex = workbook.getSheetIndex(sheetName);
+         if (sheetIndex != -1) {
+            return ((CellStoreWorkbook) workbook).getCellStore(sheetIndex).getOccupancy();
+         }
+      }
+      return null;
+   }
+
+   private void render(Renderer renderer, AxiomSink axiomSink)
+   {
+      Optional<? extends Rendering> renderingResult = renderer.render(ruleNode);
+      if (renderingResult.isPresent() && renderingResult.get() instanceof OWLRendering) {
+         axiomSink.add(((OWLRendering) renderingResult.get()).getOWLAxioms());
+      }
+   }
+
+   private void log(Renderer logRenderer, StringBuilder logBuilder)
+   {
+      Optional<? extends Rendering> renderingResult = logRenderer.render(logNode);
+      if (renderingResult.isPresent()) {
+         logBuilder.append(renderingResult.get().getRendering());
+      }
+   }
+}
@@ -0,0 +1,65 @@
+package org.mm.cellfie.engine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+/**
+ * The outcome of the last generation run of a single transformation rule,
+ * recorded row by row. Each row keeps the fingerprint of its cell values and
+ * the axioms that the rule produced for it.
+ */
+public class RuleHistory
+{
+   private final Map<Integer, RowRecord> rowRecords = new HashMap<>();
+
+   public RowRecord getRowRecord(int rowNumber)
+   {
+      return rowRecords.get(rowNumber);
+   }
+
+   public void putRowRecord(int rowNumber, RowRecord rowRecord)
+   {
+      rowRecords.put(rowNumber, rowRecord);
+   }
+
+   public Map<Integer, RowRecord> getRowRecords()
+   {
+      return Collections.unmodifiableMap(rowRecords);
+   }
+
+   /* package */ void collectAxioms(Set<OWLAxiom> target)
+   {
+      for (RowRecord rowRecord : rowRecords.values()) {
+         target.addAll(rowRecord.getAxioms());
+      }
+   }
+
+   /**
+    * The fingerprint and the generated axioms of a single row.
+    */
+   public static class RowRecord
+   {
+      private final long fingerprint;
+      private final Set<OWLAxiom> axioms;
+
+      public RowRecord(long fingerprint, Set<OWLAxiom> axioms)
+      {
+         this.fingerprint = fingerprint;
+         this.axioms = axioms;
+      }
+
+      public long getFingerprint()
+      {
+         return fingerprint;
+      }
+
+      public Set<OWLAxiom> getAxioms()
+      {
+         return axioms;
+      }
+   }
+}
@@ -1,10 +1,13 @@
 package org.mm.cellfie.ui.view;
 
 import java.awt.BorderLayout;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.swing.BorderFactory;
 import javax.swing.JPanel;
 
+import org.mm.cellfie.workbook.CellStoreWorkbook;
 import org.mm.ui.ModelView;
 import org.protege.editor.core.ui.tabbedpane.ViewTabbedPane;
 import org.protege.editor.core.ui.util.ComponentFactory;
@@ -13,8 +16,30 @@ public class DataSourceView extends JPanel implements ModelView
 {
    private static final long serialVersionUID = 1L;
 
+   /*
+    * The number of sheet panels kept after their tab is deselected. The
+    * panels of the other sheets are dropped and built again when their tab
+    * is selected.
+    */
+   private static final int MAX_LOADED_SHEETS = 8;
+
    private ViewTabbedPane tabSheetContainer;
 
+   private final Map<Integer, SheetTab> loadedTabs = new LinkedHashMap<Integer, SheetTab>(16, 0.75f, true)
+   {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, SheetTab> eldest)
+      {
+         if (size() > MAX_LOADED_SHEETS) {
+            eldest.getValue().unload();
+            return true;
+         }
+         return false;
+      }
+   };
+
    public DataSourceView(WorkspacePanel container)
    {
       String title = String.format("Workbook (%s)", container.getWorkbookFileLocation());
@@ -35,16 +60,36 @@ public class DataSourceView extends JPanel implements ModelView
       pnlWorkbook.add(tabSheetContainer, BorderLayout.CENTER);
       pnlContainer.add(pnlWorkbook, BorderLayout.CENTER);
 
-      for (org.apache.poi.ss.usermodel.Sheet sheet : container.getActiveWorkbook().getSheets()) {
-         SheetPanel sheetPanel = new SheetPanel(sheet);
-         tabSheetContainer.addTab(sheet.getSheetName(), null, sheetPanel);
+      CellStoreWorkbook workbook = container.getCellStoreWorkbook();
+      if (workbook != null) {
+         for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+            tabSheetContainer.addTab(workbook.getSheetName(i), null, new SheetTab(workbook, i));
+         }
       }
+      tabSheetContainer.addChangeListener(e -> loadSelectedTab());
+      loadSelectedTab();
       validate();
    }
 
+   /*
+    * Builds the sheet panel of the selected tab, if it is not built yet, and
+    * marks the tab as the most recently viewed.
+    */
+   private SheetPanel loadSelectedTab()
+   {
+      int selectedIndex = tabSheetContainer.getSelectedIndex();
+      if (selectedIndex == -1) {
+         return null;
+      }
+      SheetTab sheetTab = (SheetTab) tabSheetContainer.getComponentAt(selectedIndex);
+      SheetPanel sheetPanel = sheetTab.load();
+      loadedTabs.put(selectedIndex, sheetTab);
+      return sheetPanel;
+   }
+
    public Sheet getActiveSheet()
    {
-      SheetPanel selectedSheetPanel = (SheetPanel) tabSheetContainer.getSelectedComponent();
+      SheetPanel selectedSheetPanel = loadSelectedTab();
       Sheet sheet = new Sheet(selectedSheetPanel.getSheetName());
       sheet.setSelectionRange(selectedSheetPanel.getSelectionRange());
       return sheet;
@@ -55,4 +100,44 @@ public class DataSourceView extends JPanel implements ModelView
    {
       // NO-OP
    }
+
+   /*
+    * The placeholder of a sheet in the tabbed pane. The sheet panel, i.e.,
+    * the table model, the table and its column sizing, is built when the tab
+    * is selected for the first time.
+    */
+   private static class SheetTab extends JPanel
+   {
+      private static final long serialVersionUID = 1L;
+
+      private final CellStoreWorkbook workbook;
+      private final int sheetIndex;
+
+      private SheetPanel sheetPanel;
+
+      public SheetTab(CellStoreWorkbook workbook, int sheetIndex)
+      {
+         super(new BorderLayout());
+         this.workbook = workbook;
+         this.sheetIndex = sheetIndex;
+      }
+
+      public SheetPanel load()
+      {
+         if (sheetPanel == null) {
+            sheetPanel = new SheetPanel(workbook, sheetIndex);
+            add(sheetPanel, BorderLayout.CENTER);
+            revalidate();
+         }
+         return sheetPanel;
+      }
+
+      public void unload()
+      {
+         if (sheetPanel != null) {
+            remove(sheetPanel);
+            sheetPanel = null;
+         }
+      }
+   }
 }
@@ -2,38 +2,41 @@ package org.mm.cellfie.ui.view;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.swing.JOptionPane;
-import javax.swing.JPanel;
-
-import org.apache.poi.ss.usermodel.Sheet;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.mm.cellfie.action.BatchedAxiomCommitter;
+import org.mm.cellfie.action.OWLProtegeEntityResolver;
+import org.mm.cellfie.engine.AxiomSink;
+import org.mm.cellfie.engine.CellRange;
+import org.mm.cellfie.engine.CellRangeResolver;
+import org.mm.cellfie.engine.EvaluationResult;
+import org.mm.cellfie.engine.ExistingAxiomFilter;
+import org.mm.cellfie.engine.GenerationChangeSet;
+import org.mm.cellfie.engine.GenerationHistory;
+import org.mm.cellfie.engine.GenerationProgress;
+import org.mm.cellfie.engine.InMemoryAxiomSink;
+import org.mm.cellfie.engine.IncrementalEvaluator;
+import org.mm.cellfie.engine.RangeEvaluationTask;
+import org.mm.cellfie.engine.RuleEvaluator;
 import org.mm.cellfie.ui.exception.CellfieException;
 import org.mm.core.TransformationRule;
-import org.mm.core.settings.ReferenceSettings;
-import org.mm.core.settings.ValueEncodingSetting;
-import org.mm.parser.ASTExpression;
-import org.mm.parser.MappingMasterParser;
-import org.mm.parser.ParseException;
-import org.mm.parser.node.ExpressionNode;
-import org.mm.parser.node.MMExpressionNode;
-import org.mm.renderer.RendererException;
-import org.mm.rendering.Rendering;
-import org.mm.rendering.owlapi.OWLRendering;
 import org.mm.ss.SpreadSheetDataSource;
-import org.mm.ss.SpreadSheetUtil;
-import org.mm.ss.SpreadsheetLocation;
 import org.mm.ui.DialogManager;
 import org.protege.editor.core.ui.util.JOptionPaneEx;
 import org.protege.editor.owl.model.OWLModelManager;
 import org.protege.editor.owl.ui.ontology.OntologyPreferences;
-import org.semanticweb.owlapi.model.AddAxiom;
 import org.semanticweb.owlapi.model.AddImport;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLAxiom;
@@ -43,6 +46,8 @@ import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyID;
 
+import com.google.common.cache.CacheStats;
+
 public class GenerateAxiomsAction implements ActionListener
 {
    private static final int CANCEL_IMPORT = 0;
@@ -64,57 +69,98 @@ public class GenerateAxiomsAction implements ActionListener
       try {
          // Get all user-defined transformation rules
          List<TransformationRule> rules = getUserRules();
-         
-         // Initialize string builder to stack log messages
-         StringBuilder logBuilder = new StringBuilder(getLogHeader());
 
-         // TODO: Move this business logic inside the renderer
-         Set<Rendering> results = new HashSet<Rendering>();
+         // Parse the rules and resolve their cell ranges before leaving the event dispatch thread
+         List<PreparedRule> preparedRules = new ArrayList<PreparedRule>();
+         long totalCells = 0;
          for (TransformationRule rule : rules) {
             if (rule.isActive()) {
-               String sheetName = rule.getSheetName();
-               Sheet sheet = getActiveWorkbook().getWorkbook().getSheet(sheetName);
-               
-               int startColumnIndex = getStartColumnIndex(rule);
-               int startRowIndex = getStartRowIndex(rule);
-               int endColumnIndex = getEndColumnIndex(rule, sheet, startRowIndex);
-               int endRowIndex = getEndRowIndex(rule, sheet);
-
-               if (startColumnIndex > endColumnIndex) {
-                  throw new CellfieException("Start column after finish column in rule " + rule);
-               }
-               if (startRowIndex > endRowIndex) {
-                  throw new CellfieException("Start row after finish row in rule " + rule);
-               }
-
-               SpreadsheetLocation endLocation = new SpreadsheetLocation(sheetName, endColumnIndex, endRowIndex);
-               SpreadsheetLocation startLocation = new SpreadsheetLocation(sheetName, startColumnIndex, startRowIndex);
-               SpreadsheetLocation currentLocation = new SpreadsheetLocation(sheetName, startColumnIndex, startRowIndex);
-
-               getActiveWorkbook().setCurrentLocation(currentLocation);
-               logExpression(rule, logBuilder);
-               do {
-                  evaluate(rule, results);
-                  logEvaluation(rule, logBuilder);
-                  if (currentLocation.equals(endLocation)) {
-                     break;
-                  }
-                  currentLocation = incrementLocation(currentLocation, startLocation, endLocation);
-                  getActiveWorkbook().setCurrentLocation(currentLocation);
-               } while (true);
+               RuleEvaluator ruleEvaluator = new RuleEvaluator(container.compile(rule), container.compileForLogging(rule));
+               CellRange range = getCellRange(rule);
+               preparedRules.add(new PreparedRule(rule, ruleEvaluator, range));
+               totalCells += range.getCellCount();
             }
          }
-         String logMessage = logBuilder.toString();
-         
-         // Store Cellfie logging to a file
-         LogUtils.save(getLoggingFile(), logMessage, true);
-         
-         // Show the preview dialog to users to see all the generated axioms
-         showAxiomPreviewDialog(toAxioms(results), logMessage);
+         GenerationProgress progress = new GenerationProgress(totalCells);
+         container.getEntityResolver().takeUnresolvedNames(); // forget the names reported by the previous run
+         IncrementalEvaluator incrementalEvaluator = isIncrementalGeneration()
+               ? new IncrementalEvaluator(container.getGenerationHistory(container.getActiveOntology())) : null;
+         GenerationWorker worker = new GenerationWorker(preparedRules, progress, isParallelGeneration(),
+               incrementalEvaluator, getLogHeader());
+         container.getTransformationRuleBrowserView().showGenerationProgress(progress);
+         container.setGenerationProgress(progress);
+         worker.execute();
       }
       catch (Exception ex) {
-         getApplicationDialogManager().showErrorMessageDialog(container, ex.getMessage());
+         getApplicationDialogManager().showErrorMessageDialog(container, getErrorMessage(ex));
+      }
+   }
+
+   /*
+    * Some exceptions, e.g., a NullPointerException, carry no message, in which
+    * case the exception class tells the user at least what went wrong.
+    */
+   private static String getErrorMessage(Throwable t)
+   {
+      String message = t.getMessage();
+      if (message == null || message.isEmpty()) {
+         return t.getClass().getName();
+      }
+      return message;
+   }
+
+   private EvaluationResult evaluate(RuleEvaluator ruleEvaluator, CellRange range, AxiomSink axiomSink,
+         GenerationProgress progress) throws CellfieException
+   {
+      EvaluationResult result = new EvaluationResult();
+      ruleEvaluator.evaluate(range, getActiveWorkbook(), container.getDefaultRenderer(), container.getLogRenderer(),
+            axiomSink, result, progress);
+      return result;
+   }
+
+   private EvaluationResult evaluateInParallel(ForkJoinPool forkJoinPool, RuleEvaluator ruleEvaluator, CellRange range,
+         AxiomSink axiomSink, GenerationProgress progress) throws CellfieException
+   {
+      // The blocks read the cell stores, since the POI user model is not safe for parallel reads
+      Workbook workbook = container.getCellStoreWorkbook();
+      if (workbook == null) {
+         throw new CellfieException("No workbook was loaded");
       }
+      return forkJoinPool.invoke(new RangeEvaluationTask(workbook, container.getRendererFactory(), ruleEvaluator, range,
+            axiomSink, progress));
+   }
+
+   private EvaluationResult evaluateIncrementally(IncrementalEvaluator incrementalEvaluator, PreparedRule preparedRule,
+         AxiomSink axiomSink, GenerationProgress progress) throws CellfieException
+   {
+      EvaluationResult result = new EvaluationResult();
+      incrementalEvaluator.evaluate(preparedRule.rule.getRuleString(), preparedRule.ruleEvaluator, preparedRule.range,
+            getActiveWorkbook(), container.getDefaultRenderer(), container.getLogRenderer(), axiomSink, result, progress);
+      return result;
+   }
+
+   private boolean confirmPartialPreview(GenerationProgress progress, Set<OWLAxiom> axioms)
+   {
+      String message = String.format("The generation was cancelled after %,d of %,d cells.\n"
+            + "Do you want to preview the %,d axioms generated so far?",
+            progress.getProcessedCells(), progress.getTotalCells(), axioms.size());
+      int answer = getApplicationDialogManager().showConfirmDialog(container, "Generation Cancelled", message);
+      return answer == JOptionPane.YES_OPTION;
+   }
+
+   private boolean isParallelGeneration()
+   {
+      return container.getTransformationRuleBrowserView().isParallelGenerationSelected();
+   }
+
+   private boolean isIncrementalGeneration()
+   {
+      return container.getTransformationRuleBrowserView().isIncrementalGenerationSelected();
+   }
+
+   private CellRange getCellRange(TransformationRule rule) throws Exception
+   {
+      return CellRangeResolver.resolve(rule, container.getCellStoreWorkbook());
    }
 
    private void logExpression(TransformationRule rule, StringBuilder logBuilder)
@@ -129,6 +175,29 @@ public class GenerateAxiomsAction implements ActionListener
        logBuilder.append("\n\n");
    }
 
+   private void logUnresolvedNames(List<String> unresolvedNames, StringBuilder logBuilder)
+   {
+      if (!unresolvedNames.isEmpty()) {
+         logBuilder.append("\n");
+         logBuilder.append(asComment(String.format("Unresolved entity names (%d):", unresolvedNames.size())));
+         logBuilder.append("\n");
+         for (String name : unresolvedNames) {
+            logBuilder.append(asComment("   " + name));
+            logBuilder.append("\n");
+         }
+      }
+   }
+
+   private void logCacheStats(CacheStats cacheStats, StringBuilder logBuilder)
+   {
+      if (cacheStats.requestCount() > 0) {
+         logBuilder.append("\n");
+         logBuilder.append(asComment(String.format("Entity cache: %d hits, %d misses (%.1f%% hit rate), %d evictions",
+               cacheStats.hitCount(), cacheStats.missCount(), 100 * cacheStats.hitRate(), cacheStats.evictionCount())));
+         logBuilder.append("\n");
+      }
+   }
+
    private static String asComment(String text)
    {
       return text.replaceAll("(?m)^(.*)", "# $1");
@@ -166,75 +235,27 @@ public class GenerateAxiomsAction implements ActionListener
       return System.getProperty("java.io.tmpdir");
    }
 
-   private int getStartColumnIndex(TransformationRule rule) throws Exception
-   {
-      String startColumn = rule.getStartColumn();
-      if (startColumn.isEmpty()) {
-         throw new CellfieException("Start column is not specified");
-      }
-      return SpreadSheetUtil.columnName2Number(startColumn);
-   }
-
-   private int getStartRowIndex(TransformationRule rule) throws Exception
-   {
-      String startRow = rule.getStartRow();
-      if (startRow.isEmpty()) {
-         throw new CellfieException("Start row is not specified");
-      }
-      return SpreadSheetUtil.rowLabel2Number(startRow);
-   }
-
-   private int getEndColumnIndex(TransformationRule rule, Sheet sheet, int startRowIndex) throws Exception
-   {
-      String endColumn = rule.getEndColumn();
-      if (endColumn.isEmpty()) {
-         throw new CellfieException("End column is not specified. (Hint: Use a wildcard '+' to indicate the last column)");
-      }
-      return rule.hasEndColumnWildcard()
-            ? sheet.getRow(startRowIndex).getLastCellNum() + 1
-            : SpreadSheetUtil.columnName2Number(endColumn);
-   }
-
-   private int getEndRowIndex(TransformationRule rule, Sheet sheet) throws Exception
-   {
-      String endRow = rule.getEndRow();
-      if (endRow.isEmpty()) {
-         throw new CellfieException("End row is not specified. (Hint: Use a wildcard '+' to indicate the last row)");
-      }
-      int endRowIndex = rule.hasEndRowWildcard() ? sheet.getLastRowNum() + 1
-            : SpreadSheetUtil.rowLabel2Number(endRow);
-      return endRowIndex;
-   }
-
-   private Set<OWLAxiom> toAxioms(Set<Rendering> results)
-   {
-      Set<OWLAxiom> axiomSet = new HashSet<OWLAxiom>();
-      for (Rendering rendering : results) {
-         if (rendering instanceof OWLRendering) {
-            axiomSet.addAll(((OWLRendering) rendering).getOWLAxioms());
-         }
-      }
-      return axiomSet;
-   }
-
-   private void showAxiomPreviewDialog(Set<OWLAxiom> axioms, String logMessage) throws CellfieException
+   private void showAxiomPreviewDialog(Set<OWLAxiom> axioms, GenerationChangeSet changeSet, long skippedAxiomCount,
+         String logMessage) throws CellfieException
    {
+      Set<OWLAxiom> removals = (changeSet != null) ? changeSet.getRemovals() : Collections.emptySet();
       final ImportOption[] options = { new ImportOption(CANCEL_IMPORT, "Cancel"),
             new ImportOption(ADD_TO_NEW_ONTOLOGY, "Add to a new ontology"),
             new ImportOption(ADD_TO_CURRENT_ONTOLOGY, "Add to current ontology") };
       try {
          OWLOntology currentOntology = container.getActiveOntology();
-         int answer = JOptionPaneEx.showConfirmDialog(container, "Generated Axioms", createPreviewAxiomsPanel(axioms, logMessage),
+         PreviewAxiomsPanel previewPanel = createPreviewAxiomsPanel(axioms, removals.size(), skippedAxiomCount, logMessage);
+         int answer = JOptionPaneEx.showConfirmDialog(container, "Generated Axioms", previewPanel,
                JOptionPane.PLAIN_MESSAGE, JOptionPane.DEFAULT_OPTION, null, options, options[1]);
          switch (answer) {
             case ADD_TO_CURRENT_ONTOLOGY :
-               modelManager.applyChanges(addAxioms(currentOntology, axioms));
+               commitAxioms(currentOntology, axioms, removals, changeSet, previewPanel);
                break;
             case ADD_TO_NEW_ONTOLOGY :
                OWLOntologyID id = createOntologyID();
                OWLOntology newOntology = modelManager.createNewOntology(id, id.getDefaultDocumentIRI().get().toURI());
                modelManager.applyChanges(addImport(newOntology, currentOntology));
-               modelManager.applyChanges(addAxioms(newOntology, axioms));
+               commitAxioms(newOntology, axioms, Collections.emptySet(), null, previewPanel);
                break;
          }
       } catch (ClassCastException e) {
@@ -262,37 +283,22 @@ public class GenerateAxiomsAction implements ActionListener
       return new OWLOntologyID(com.google.common.base.Optional.of(freshIRI), com.google.common.base.Optional.absent());
    }
 
-   private List<OWLOntologyChange> addAxioms(OWLOntology ontology, Set<OWLAxiom> axioms)
+   private void commitAxioms(OWLOntology ontology, Set<OWLAxiom> additions, Set<OWLAxiom> removals,
+         GenerationChangeSet changeSet, PreviewAxiomsPanel previewPanel)
    {
-      List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
-      for (OWLAxiom ax : axioms) {
-         changes.add(new AddAxiom(ontology, ax));
+      BatchedAxiomCommitter committer = new BatchedAxiomCommitter(modelManager, previewPanel.getChunkSize());
+      if (previewPanel.isStopReasonerSelected()) {
+         committer.stopReasoner();
       }
-      return changes;
-   }
-
-   private JPanel createPreviewAxiomsPanel(Set<OWLAxiom> axioms, String logMessage)
-   {
-      return new PreviewAxiomsPanel(container, axioms, logMessage);
+      committer.setHideInferences(previewPanel.isHideInferencesSelected());
+      GenerationHistory history = (changeSet != null) ? container.getGenerationHistory(ontology) : null;
+      new CommitWorker(committer, ontology, additions, removals, changeSet, history).execute();
    }
 
-   private void evaluate(TransformationRule rule, Set<Rendering> results) throws ParseException
+   private PreviewAxiomsPanel createPreviewAxiomsPanel(Set<OWLAxiom> axioms, long removedAxiomCount,
+         long skippedAxiomCount, String logMessage)
    {
-      container.evaluate(rule, container.getDefaultRenderer(), results);
-   }
-
-   private SpreadsheetLocation incrementLocation(SpreadsheetLocation current, SpreadsheetLocation start,
-         SpreadsheetLocation end) throws RendererException
-   {
-      if (current.getPhysicalRowNumber() < end.getPhysicalRowNumber()) {
-         return new SpreadsheetLocation(current.getSheetName(), current.getPhysicalColumnNumber(), current.getPhysicalRowNumber() + 1);
-      }
-      if (current.getPhysicalRowNumber() == end.getPhysicalRowNumber()) {
-         if (current.getPhysicalColumnNumber() < end.getPhysicalColumnNumber()) {
-            return new SpreadsheetLocation(current.getSheetName(), current.getPhysicalColumnNumber() + 1, start.getPhysicalRowNumber());
-         }
-      }
-      throw new RendererException("incrementLocation called redundantly");
+      return new PreviewAxiomsPanel(container, axioms, removedAxiomCount, skippedAxiomCount, logMessage);
    }
 
    private SpreadSheetDataSource getActiveWorkbook() throws CellfieException
@@ -318,22 +324,233 @@ public class GenerateAxiomsAction implements ActionListener
       return container.getApplicationDialogManager();
    }
 
-   private void logEvaluation(TransformationRule rule, StringBuilder logBuilder) throws ParseException
+   /**
+    * A transformation rule that is ready for evaluation.
+    */
+   class PreparedRule
    {
-      String ruleString = rule.getRuleString();
-      MappingMasterParser parser = new MappingMasterParser(new ByteArrayInputStream(ruleString.getBytes()), getReferenceSettings(), -1);
-      MMExpressionNode ruleNode = new ExpressionNode((ASTExpression) parser.expression()).getMMExpressionNode();
-      Optional<? extends Rendering> renderingResult = container.getLogRenderer().render(ruleNode);
-      if (renderingResult.isPresent()) {
-         logBuilder.append(renderingResult.get().getRendering());
+      private final TransformationRule rule;
+      private final RuleEvaluator ruleEvaluator;
+      private final CellRange range;
+
+      public PreparedRule(TransformationRule rule, RuleEvaluator ruleEvaluator, CellRange range)
+      {
+         this.rule = rule;
+         this.ruleEvaluator = ruleEvaluator;
+         this.range = range;
       }
    }
 
-   private ReferenceSettings getReferenceSettings()
+   /**
+    * Evaluates the transformation rules in a background thread, such that
+    * Protege stays responsive during the run. The preview dialog is shown
+    * back in the event dispatch thread once the run finishes or is cancelled.
+    */
+   class GenerationWorker extends SwingWorker<Set<OWLAxiom>, Void>
    {
-      ReferenceSettings referenceSettings = new ReferenceSettings();
-      referenceSettings.setValueEncodingSetting(ValueEncodingSetting.RDFS_LABEL);
-      return referenceSettings;
+      private final List<PreparedRule> preparedRules;
+      private final GenerationProgress progress;
+      private final boolean parallel;
+      private final IncrementalEvaluator incrementalEvaluator;
+      private final String logHeader;
+
+      private String logMessage;
+      private long skippedAxiomCount;
+      private GenerationChangeSet changeSet;
+
+      public GenerationWorker(List<PreparedRule> preparedRules, GenerationProgress progress, boolean parallel,
+            IncrementalEvaluator incrementalEvaluator, String logHeader)
+      {
+         this.preparedRules = preparedRules;
+         this.progress = progress;
+         this.parallel = parallel;
+         this.incrementalEvaluator = incrementalEvaluator;
+         this.logHeader = logHeader;
+      }
+
+      @Override
+      protected Set<OWLAxiom> doInBackground() throws Exception
+      {
+         // Initialize string builder to stack log messages
+         StringBuilder logBuilder = new StringBuilder(logHeader);
+
+         // TODO: Move this business logic inside the renderer
+         InMemoryAxiomSink axiomSink = new InMemoryAxiomSink();
+         OWLProtegeEntityResolver entityResolver = container.getEntityResolver();
+         ForkJoinPool forkJoinPool = (parallel && incrementalEvaluator == null) ? new ForkJoinPool() : null;
+         Set<OWLAxiom> declarations;
+         entityResolver.awaitLabelIndex();
+         entityResolver.rebuildPrefixTable();
+         CacheStats cacheStatsBefore = entityResolver.getCacheStats();
+         entityResolver.beginBulkCreation();
+         try {
+            for (PreparedRule preparedRule : preparedRules) {
+               if (progress.isCancelled()) {
+                  break;
+               }
+               logExpression(preparedRule.rule, logBuilder);
+               EvaluationResult result;
+               if (incrementalEvaluator != null) {
+                  // Changed rows are evaluated one by one, hence the fork-join pool is not used here
+                  result = evaluateIncrementally(incrementalEvaluator, preparedRule, axiomSink, progress);
+               } else if (forkJoinPool != null) {
+                  result = evaluateInParallel(forkJoinPool, preparedRule.ruleEvaluator, preparedRule.range, axiomSink, progress);
+               } else {
+                  result = evaluate(preparedRule.ruleEvaluator, preparedRule.range, axiomSink, progress);
+               }
+               logBuilder.append(result.getLogBuilder());
+            }
+         } finally {
+            if (forkJoinPool != null) {
+               forkJoinPool.shutdown();
+            }
+            declarations = entityResolver.endBulkCreation();
+         }
+         axiomSink.add(declarations); // declare the new entities in one batch
+         if (incrementalEvaluator != null) {
+            // Remove the declarations of the new entities together with the rows that use them
+            incrementalEvaluator.attributeDeclarations(declarations);
+         }
+         if (progress.isCancelled()) {
+            logBuilder.append("\n");
+            logBuilder.append(asComment(String.format("Generation cancelled after %d of %d cells",
+                  progress.getProcessedCells(), progress.getTotalCells())));
+            logBuilder.append("\n");
+         }
+         logUnresolvedNames(entityResolver.takeUnresolvedNames(), logBuilder);
+         logCacheStats(entityResolver.getCacheStats().minus(cacheStatsBefore), logBuilder);
+         if (incrementalEvaluator != null) {
+            changeSet = incrementalEvaluator.getChangeSet();
+            logBuilder.append("\n");
+            logBuilder.append(asComment(String.format("Incremental run: %d rows evaluated, %d unchanged rows reused, %d axioms to remove",
+                  changeSet.getEvaluatedRowCount(), changeSet.getReusedRowCount(), changeSet.getRemovals().size())));
+            logBuilder.append("\n");
+         }
+
+         // Skip the axioms that are already asserted in the target ontology
+         skippedAxiomCount = axiomSink.removeIf(new ExistingAxiomFilter(container.getActiveOntology()));
+         if (skippedAxiomCount > 0) {
+            logBuilder.append("\n");
+            logBuilder.append(asComment(String.format("Skipped %d axioms that already exist in the ontology",
+                  skippedAxiomCount)));
+            logBuilder.append("\n");
+         }
+         logMessage = logBuilder.toString();
+
+         // Store Cellfie logging to a file
+         LogUtils.save(getLoggingFile(), logMessage, true);
+
+         return axiomSink.getAxioms();
+      }
+
+      @Override
+      protected void done()
+      {
+         container.setGenerationProgress(null);
+         if (container.isDisposed()) {
+            return; // the dialog was closed while the generation was running
+         }
+         container.getTransformationRuleBrowserView().hideGenerationProgress();
+         try {
+            Set<OWLAxiom> axioms = get();
+            if (progress.isCancelled() && !confirmPartialPreview(progress, axioms)) {
+               return;
+            }
+            // Show the preview dialog to users to see all the generated axioms
+            showAxiomPreviewDialog(axioms, changeSet, skippedAxiomCount, logMessage);
+         } catch (ExecutionException ex) {
+            getApplicationDialogManager().showErrorMessageDialog(container, getErrorMessage(ex.getCause()));
+         } catch (Exception ex) {
+            getApplicationDialogManager().showErrorMessageDialog(container, getErrorMessage(ex));
+         }
+      }
+   }
+
+   /**
+    * Feeds the generated axioms to the ontology from a background thread and
+    * shows the number of axioms committed so far. The chunks of changes are
+    * applied on the event dispatch thread by the {@link BatchedAxiomCommitter}.
+    * The axioms removed by an incremental run are taken out of the ontology
+    * first. The generation history of an incremental run records the axioms
+    * actually added and, if the commit was not cancelled, the new rule
+    * histories.
+    */
+   class CommitWorker extends SwingWorker<List<OWLOntologyChange>, Long>
+   {
+      private final BatchedAxiomCommitter committer;
+      private final OWLOntology ontology;
+      private final Set<OWLAxiom> additions;
+      private final Set<OWLAxiom> removals;
+      private final GenerationChangeSet changeSet;
+      private final GenerationHistory history;
+      private final int totalChanges;
+      private final ProgressMonitor progressMonitor;
+
+      public CommitWorker(BatchedAxiomCommitter committer, OWLOntology ontology, Set<OWLAxiom> additions,
+            Set<OWLAxiom> removals, GenerationChangeSet changeSet, GenerationHistory history)
+      {
+         this.committer = committer;
+         this.ontology = ontology;
+         this.additions = additions;
+         this.removals = removals;
+         this.changeSet = changeSet;
+         this.history = history;
+         if (history != null) {
+            history.removeOwnedAxioms(removals); // such that their removal does not invalidate the history
+         }
+         totalChanges = additions.size() + removals.size();
+         progressMonitor = new ProgressMonitor(container, "Adding the generated axioms to the ontology", null, 0, totalChanges);
+         progressMonitor.setMillisToDecideToPopup(500);
+      }
+
+      @Override
+      protected List<OWLOntologyChange> doInBackground() throws Exception
+      {
+         return committer.applyAxiomChanges(ontology, additions, removals, count -> publish(count),
+               progressMonitor::isCanceled);
+      }
+
+      @Override
+      protected void process(List<Long> counts)
+      {
+         long committedChanges = counts.get(counts.size() - 1);
+         progressMonitor.setProgress((int) committedChanges);
+         progressMonitor.setNote(String.format("%,d of %,d axioms", committedChanges, totalChanges));
+      }
+
+      @Override
+      protected void done()
+      {
+         boolean completed = !progressMonitor.isCanceled();
+         progressMonitor.close();
+         try {
+            List<OWLOntologyChange> appliedChanges = get();
+            if (history != null) {
+               history.addOwnedAxioms(getAddedAxioms(appliedChanges));
+               if (completed) {
+                  history.accept(changeSet);
+               }
+            }
+         } catch (ExecutionException ex) {
+            if (history != null) {
+               history.clear(); // the changes applied before the failure are unknown
+            }
+            getApplicationDialogManager().showErrorMessageDialog(container, getErrorMessage(ex.getCause()));
+         } catch (Exception ex) {
+            getApplicationDialogManager().showErrorMessageDialog(container, getErrorMessage(ex));
+         }
+      }
+   }
+
+   private static List<OWLAxiom> getAddedAxioms(List<OWLOntologyChange> changes)
+   {
+      List<OWLAxiom> addedAxioms = new ArrayList<OWLAxiom>();
+      for (OWLOntologyChange change : changes) {
+         if (change.isAddAxiom()) {
+            addedAxioms.add(change.getAxiom());
+         }
+      }
+      return addedAxioms;
    }
 
    /**
@@ -0,0 +1,106 @@
+package org.mm.cellfie.ui.view;
+
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+
+import org.mm.cellfie.engine.GenerationProgress;
+
+/**
+ * Shows the progress of a running axiom generation, i.e., the number of cells
+ * processed, the processing speed and the estimated remaining time, and lets
+ * the user cancel the run.
+ */
+public class GenerationProgressPanel extends JPanel
+{
+   private static final long serialVersionUID = 1L;
+
+   private static final int REFRESH_INTERVAL = 250; // in milliseconds
+
+   private final JProgressBar progressBar;
+   private final JLabel lblStatus;
+   private final JButton cmdCancel;
+   private final Timer refreshTimer;
+
+   private GenerationProgress progress;
+
+   public GenerationProgressPanel()
+   {
+      setLayout(new FlowLayout(FlowLayout.CENTER));
+
+      progressBar = new JProgressBar(0, 1000);
+      progressBar.setPreferredSize(new Dimension(240, 18));
+      add(progressBar);
+
+      lblStatus = new JLabel();
+      add(lblStatus);
+
+      cmdCancel = new JButton("Cancel");
+      cmdCancel.setPreferredSize(new Dimension(72, 22));
+      cmdCancel.addActionListener(e -> cancel());
+      add(cmdCancel);
+
+      refreshTimer = new Timer(REFRESH_INTERVAL, e -> refresh());
+      setVisible(false);
+   }
+
+   public void start(GenerationProgress progress)
+   {
+      this.progress = progress;
+      cmdCancel.setEnabled(true);
+      refresh();
+      setVisible(true);
+      refreshTimer.start();
+   }
+
+   public void stop()
+   {
+      refreshTimer.stop();
+      setVisible(false);
+      progress = null;
+   }
+
+   private void cancel()
+   {
+      if (progress != null) {
+         progress.cancel();
+         cmdCancel.setEnabled(false);
+         lblStatus.setText("Cancelling...");
+      }
+   }
+
+   private void refresh()
+   {
+      if (progress == null || progress.isCancelled()) {
+         return;
+      }
+      long totalCells = progress.getTotalCells();
+      long processedCells = progress.getProcessedCells();
+      if (totalCells > 0) {
+         progressBar.setValue((int) (processedCells * 1000 / totalCells));
+      }
+      lblStatus.setText(String.format("%,d of %,d cells (%,.0f cells/s, ETA %s)",
+            processedCells, totalCells, progress.getCellsPerSecond(),
+            formatDuration(progress.getEstimatedRemainingMillis())));
+   }
+
+   private static String formatDuration(long millis)
+   {
+      if (millis < 0) {
+         return "--:--";
+      }
+      long hours = TimeUnit.MILLISECONDS.toHours(millis);
+      long minutes = TimeUnit.MILLISECONDS.toMinutes(millis) % 60;
+      long seconds = TimeUnit.MILLISECONDS.toSeconds(millis) % 60;
+      if (hours > 0) {
+         return String.format("%d:%02d:%02d", hours, minutes, seconds);
+      }
+      return String.format("%02d:%02d", minutes, seconds);
+   }
+}
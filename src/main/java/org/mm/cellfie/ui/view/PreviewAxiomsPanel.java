@@ -11,12 +11,16 @@ import java.awt.font.TextAttribute;
 import java.util.Map;
 import java.util.Set;
 
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.border.EmptyBorder;
 
+import org.mm.cellfie.action.BatchedAxiomCommitter;
 import org.mm.cellfie.ui.list.OWLAxiomList;
 import org.protege.editor.core.ui.util.JOptionPaneEx;
 import org.semanticweb.owlapi.model.OWLAxiom;
@@ -28,7 +32,12 @@ public class PreviewAxiomsPanel extends JPanel
    private final WorkspacePanel container;
    private final String logMessage;
 
-   public PreviewAxiomsPanel(WorkspacePanel container, Set<OWLAxiom> axioms, String logMessage)
+   private final JSpinner spnChunkSize;
+   private final JCheckBox chkStopReasoner;
+   private final JCheckBox chkHideInferences;
+
+   public PreviewAxiomsPanel(WorkspacePanel container, Set<OWLAxiom> axioms, long removedAxiomCount,
+         long skippedAxiomCount, String logMessage)
    {
       this.container = container;
       this.logMessage = logMessage;
@@ -36,16 +45,33 @@ public class PreviewAxiomsPanel extends JPanel
       setLayout(new BorderLayout());
 
       JLabel lblPreview = new JLabel();
-      lblPreview.setText("Cellfie generates " + axioms.size() + " axioms:");
+      lblPreview.setText(getPreviewTitle(axioms.size(), removedAxiomCount, skippedAxiomCount));
       add(lblPreview, BorderLayout.NORTH);
 
       OWLAxiomList previewList = new OWLAxiomList(container.getEditorKit());
       previewList.setAxioms(axioms);
       add(new JScrollPane(previewList), BorderLayout.CENTER);
 
+      JPanel pnlBottom = new JPanel(new BorderLayout());
+      add(pnlBottom, BorderLayout.SOUTH);
+
+      JPanel pnlCommitOptions = new JPanel(new FlowLayout(FlowLayout.LEFT));
+      pnlBottom.add(pnlCommitOptions, BorderLayout.WEST);
+
+      pnlCommitOptions.add(new JLabel("Commit in chunks of"));
+      spnChunkSize = new JSpinner(new SpinnerNumberModel(BatchedAxiomCommitter.DEFAULT_CHUNK_SIZE, 1000, 1000000, 1000));
+      pnlCommitOptions.add(spnChunkSize);
+      pnlCommitOptions.add(new JLabel("axioms"));
+
+      chkStopReasoner = new JCheckBox("Stop the reasoner before import");
+      pnlCommitOptions.add(chkStopReasoner);
+
+      chkHideInferences = new JCheckBox("Hide inferences during import");
+      pnlCommitOptions.add(chkHideInferences);
+
       JPanel pnlViewLog = new JPanel();
       pnlViewLog.setLayout(new FlowLayout(FlowLayout.RIGHT));
-      add(pnlViewLog, BorderLayout.SOUTH);
+      pnlBottom.add(pnlViewLog, BorderLayout.EAST);
 
       JLabel lblViewLog = new JLabel("View Log");
       lblViewLog.setBorder(new EmptyBorder(0, 7, 0, 0));
@@ -59,6 +85,37 @@ public class PreviewAxiomsPanel extends JPanel
       pnlViewLog.add(lblViewLog);
    }
 
+   private static String getPreviewTitle(int axiomCount, long removedAxiomCount, long skippedAxiomCount)
+   {
+      if (removedAxiomCount == 0 && skippedAxiomCount == 0) {
+         return "Cellfie generates " + axiomCount + " axioms:";
+      }
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("Cellfie generates %,d new axioms", axiomCount));
+      if (removedAxiomCount > 0) {
+         sb.append(String.format(" and removes %,d outdated axioms", removedAxiomCount));
+      }
+      if (skippedAxiomCount > 0) {
+         sb.append(String.format(" (%,d axioms already in the ontology were skipped)", skippedAxiomCount));
+      }
+      return sb.append(":").toString();
+   }
+
+   public int getChunkSize()
+   {
+      return (Integer) spnChunkSize.getValue();
+   }
+
+   public boolean isStopReasonerSelected()
+   {
+      return chkStopReasoner.isSelected();
+   }
+
+   public boolean isHideInferencesSelected()
+   {
+      return chkHideInferences.isSelected();
+   }
+
    class ViewLogAction extends MouseAdapter
    {
       @Override
@@ -1,10 +1,9 @@
 package org.mm.cellfie.ui.view;
 
-import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.DateUtil;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
+import org.mm.cellfie.workbook.CellStore;
+import org.mm.cellfie.workbook.CellStoreWorkbook;
 import org.mm.ss.SpreadSheetUtil;
 
 import javax.annotation.Nonnull;
@@ -14,6 +13,8 @@ import javax.swing.table.JTableHeader;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -28,7 +29,6 @@ public class SheetPanel extends JPanel {
    private static final int START_INDEX = 0;
    private static final int END_INDEX = -1;
 
-   private final Sheet sheet;
    private final SheetTableModel sheetModel;
 
    private final SheetTable tblBaseSheet;
@@ -46,14 +46,16 @@ public class SheetPanel extends JPanel {
    private Point endMousePt;
 
    /**
-    * Constructs the UI panel for the given input {@code Sheet} object.
+    * Constructs the UI panel for a sheet in the given workbook.
     *
-    * @param sheet
-    *           The Apache POI sheet instance
+    * @param workbook
+    *           The workbook cell stores
+    * @param sheetIndex
+    *           The 0-based index of the sheet
     */
-   public SheetPanel(@Nonnull Sheet sheet) {
-      this.sheet = checkNotNull(sheet);
-      sheetModel = new SheetTableModel(sheet);
+   public SheetPanel(@Nonnull CellStoreWorkbook workbook, int sheetIndex) {
+      checkNotNull(workbook);
+      sheetModel = new SheetTableModel(workbook, workbook.getCellStore(sheetIndex));
 
       setLayout(new BorderLayout());
 
@@ -73,6 +75,7 @@ public class SheetPanel extends JPanel {
       JScrollPane scrBaseSheet = new JScrollPane(tblBaseSheet);
       scrBaseSheet.setRowHeaderView(tblRowNumberSheet);
       scrBaseSheet.setCorner(JScrollPane.UPPER_LEFT_CORNER, tblRowNumberSheet.getTableHeader());
+      scrBaseSheet.getViewport().addChangeListener(e -> prefetchVisibleRows());
 
       add(BorderLayout.CENTER, scrBaseSheet);
 
@@ -85,7 +88,22 @@ public class SheetPanel extends JPanel {
     * @return The sheet name.
     */
    public String getSheetName() {
-      return sheet.getSheetName();
+      return sheetModel.getSheetName();
+   }
+
+   /**
+    * Shows the cell values of the same sheet, i.e., the sheet with the same
+    * name, in a reloaded workbook. The panel is left unchanged if the reloaded
+    * workbook has no such sheet.
+    *
+    * @param workbook
+    *           The reloaded workbook
+    */
+   public void reload(@Nonnull CellStoreWorkbook workbook) {
+      int sheetIndex = workbook.getSheetIndex(getSheetName());
+      if (sheetIndex != -1) {
+         sheetModel.reload(workbook, workbook.getCellStore(sheetIndex));
+      }
    }
 
    private void setSelectionRange(int startColumnIndex, int startRowIndex, int endColumnIndex, int endRowIndex) {
@@ -95,9 +113,22 @@ public class SheetPanel extends JPanel {
       this.endRowIndex = endRowIndex;
    }
 
-   private boolean isDateFormatted(Cell cell)
+   /*
+    * Formats the values around the viewport before the table paints them. The
+    * viewport notifies the change of its position ahead of the repaint.
+    */
+   private void prefetchVisibleRows() {
+      Rectangle visibleRect = tblBaseSheet.getVisibleRect();
+      int firstRow = tblBaseSheet.rowAtPoint(new Point(0, visibleRect.y));
+      int lastRow = tblBaseSheet.rowAtPoint(new Point(0, visibleRect.y + visibleRect.height - 1));
+      if (firstRow != -1) {
+         sheetModel.prefetchRows(firstRow, (lastRow == -1) ? sheetModel.getRowCount() - 1 : lastRow);
+      }
+   }
+
+   private static boolean isDateFormatted(double value, short format, String formatString)
    {
-      return DateUtil.isCellDateFormatted(cell);
+      return DateUtil.isValidExcelDate(value) && DateUtil.isADateFormat(format, formatString);
    }
 
    /**
@@ -111,37 +142,86 @@ public class SheetPanel extends JPanel {
    }
 
    /**
-    * The table model used to presenting the data from the Apache POI Sheet instance
+    * The table model used to presenting the data from the sheet cell store. The
+    * table dimensions and the width of each row are computed once, since JTable
+    * asks for them on every layout and repaint, and again on {@link #reload}.
+    * <p>
+    * The display values of the rows around the viewport are kept in blocks of
+    * rows, such that scrolling and repainting do not format the same cells
+    * again. The least recently used blocks are dropped.
     */
    class SheetTableModel extends AbstractTableModel {
       private static final long serialVersionUID = 1L;
 
-      private final Sheet sheet;
+      private static final int BLOCK_ROWS = 128;
+      private static final int MAX_CACHED_BLOCKS = 8;
 
-      public SheetTableModel(@Nonnull Sheet sheet) {
-         this.sheet = checkNotNull(sheet);
-      }
+      private final Map<Integer, Object[][]> valueBlocks = new LinkedHashMap<Integer, Object[][]>(16, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
 
-      public int getRowCount() {
-         if (sheet.rowIterator().hasNext()) {
-            return sheet.getLastRowNum() + 1;
-         } else {
-            return 0; // is empty
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
          }
+      };
+
+      private CellStoreWorkbook workbook;
+      private CellStore cellStore;
+
+      private int rowCount;
+      private int columnCount;
+      private short[] rowWidths; // the number of cells of each row, 0 if the row is empty
+
+      public SheetTableModel(@Nonnull CellStoreWorkbook workbook, @Nonnull CellStore cellStore) {
+         this.workbook = checkNotNull(workbook);
+         this.cellStore = checkNotNull(cellStore);
+         computeDimensions();
       }
 
-      public int getColumnCount() {
+      /**
+       * Replaces the cell values of the model, e.g., after the workbook is
+       * reloaded, and notifies the table about the new dimensions.
+       */
+      public void reload(@Nonnull CellStoreWorkbook workbook, @Nonnull CellStore cellStore) {
+         this.workbook = checkNotNull(workbook);
+         this.cellStore = checkNotNull(cellStore);
+         valueBlocks.clear();
+         computeDimensions();
+         fireTableStructureChanged();
+      }
+
+      private void computeDimensions() {
+         rowCount = cellStore.getLastRowNum() + 1; // 0 if the sheet is empty
+         rowWidths = new short[rowCount];
          int maxCount = 0;
-         for (int i = 0; i < getRowCount(); i++) {
-            Row row = sheet.getRow(i);
-            if (row != null) {
-               int currentCount = row.getLastCellNum();
-               if (currentCount > maxCount) {
-                  maxCount = currentCount;
-               }
+         for (int i = 0; i < rowCount; i++) {
+            short currentCount = (short) Math.max(0, cellStore.getLastCellNum(i));
+            rowWidths[i] = currentCount;
+            if (currentCount > maxCount) {
+               maxCount = currentCount;
             }
          }
-         return maxCount;
+         columnCount = maxCount;
+      }
+
+      public String getSheetName() {
+         return cellStore.getSheetName();
+      }
+
+      public int getRowCount() {
+         return rowCount;
+      }
+
+      public int getColumnCount() {
+         return columnCount;
+      }
+
+      /**
+       * Returns the number of cells in the given row, i.e., 1 plus the index of
+       * its last cell, or 0 if the row is empty.
+       */
+      public int getRowWidth(int row) {
+         return rowWidths[row];
       }
 
       public String getColumnName(int column) {
@@ -149,32 +229,67 @@ public class SheetPanel extends JPanel {
       }
 
       public Object getValueAt(int row, int column) {
-         try {
-            Cell cell = sheet.getRow(row).getCell(column);
-            switch (cell.getCellType()) {
-               case BLANK :
-                  return "";
-               case STRING :
-                  return cell.getStringCellValue();
-            case NUMERIC :
+         if (column >= rowWidths[row]) {
+            return ""; // past the last cell of the row, or an empty row
+         }
+         Object[][] valueBlock = valueBlocks.get(row / BLOCK_ROWS);
+         if (valueBlock != null) {
+            return valueBlock[row % BLOCK_ROWS][column];
+         }
+         return formatValue(row, column);
+      }
+
+      /**
+       * Formats the values of the blocks that contain the given rows, plus the
+       * block before and the block after them, unless they are cached already.
+       */
+      public void prefetchRows(int firstRow, int lastRow) {
+         if (rowCount == 0) {
+            return;
+         }
+         int firstBlock = Math.max(0, firstRow / BLOCK_ROWS - 1);
+         int lastBlock = Math.min((rowCount - 1) / BLOCK_ROWS, lastRow / BLOCK_ROWS + 1);
+         for (int block = firstBlock; block <= lastBlock; block++) {
+            if (valueBlocks.get(block) == null) { // get() also marks the block as recently used
+               valueBlocks.put(block, formatBlock(block));
+            }
+         }
+      }
+
+      private Object[][] formatBlock(int block) {
+         int startRow = block * BLOCK_ROWS;
+         int endRow = Math.min(rowCount, startRow + BLOCK_ROWS);
+         Object[][] values = new Object[endRow - startRow][];
+         for (int row = startRow; row < endRow; row++) {
+            Object[] rowValues = new Object[rowWidths[row]];
+            for (int column = 0; column < rowValues.length; column++) {
+               rowValues[column] = formatValue(row, column);
+            }
+            values[row - startRow] = rowValues;
+         }
+         return values;
+      }
+
+      private Object formatValue(int row, int column) {
+         switch (cellStore.getCellType(row, column)) {
+            case CellStore.STRING :
+               return cellStore.getStringValue(row, column);
+            case CellStore.NUMERIC :
                // Check if the numeric is an integer or double or a date
-               if (isDateFormatted(cell)) {
-                  return dataFormatter.formatCellValue(cell);
-               } else if (isInteger(cell.getNumericCellValue())) {
-                  return Integer.toString((int)cell.getNumericCellValue());
+               double value = cellStore.getNumericValue(row, column);
+               short format = cellStore.getFormat(row, column);
+               String formatString = workbook.getFormatString(format);
+               if (isDateFormatted(value, format, formatString)) {
+                  return dataFormatter.formatRawCellContents(value, format, formatString, workbook.isDate1904());
+               } else if (isInteger(value)) {
+                  return Integer.toString((int) value);
                } else {
-                  return Double.toString(cell.getNumericCellValue());
+                  return Double.toString(value);
                }
-               case BOOLEAN :
-                  return cell.getBooleanCellValue();
-               case FORMULA :
-                  return cell.getNumericCellValue();
-               default :
-                  return "";
-            }
-         } catch (NullPointerException e) {
-            // TODO Log this strange error
-            return "";
+            case CellStore.BOOLEAN :
+               return cellStore.getBooleanValue(row, column);
+            default :
+               return "";
          }
       }
 
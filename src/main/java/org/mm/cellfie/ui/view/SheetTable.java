@@ -3,22 +3,51 @@ package org.mm.cellfie.ui.view;
 import javax.swing.*;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
 import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Random;
 
 public class SheetTable extends JTable
 {
    private static final long serialVersionUID = 1L;
 
+   private static final int MIN_COLUMN_WIDTH = 50;
+
+   /*
+    * The initial column widths are measured on the leading rows and a random
+    * sample of the other rows, such that the sheet shows up right away. The
+    * columns scrolled into view are then measured again on a larger sample,
+    * one column per timer tick.
+    */
+   private static final int SAMPLE_LEADING_ROWS = 100;
+   private static final int SAMPLE_RANDOM_ROWS = 100;
+   private static final int REFINE_SAMPLE_ROWS = 2000;
+   private static final int REFINE_INTERVAL = 20; // in milliseconds
+
+   private BitSet queuedColumns;
+   private Deque<Integer> pendingColumns;
+   private Timer refineTimer;
+   private final ChangeListener viewportListener = e -> queueVisibleColumns();
+
    public SheetTable(TableModel model)
    {
       super(model);
 
+      queuedColumns = new BitSet();
+      pendingColumns = new ArrayDeque<>();
+      refineTimer = new Timer(REFINE_INTERVAL, e -> refineNextColumn());
+
       setDefaultRenderer(String.class, new WorksheetCellRenderer());
 
       JTableHeader header = new HighlightTableHeader(getColumnModel());
@@ -37,14 +66,142 @@ public class SheetTable extends JTable
    private void resizeColumnWidth()
    {
       final TableColumnModel columnModel = getColumnModel();
+      int[] sampleRows = sampleRows();
       for (int column = 0; column < getColumnCount(); column++) {
-         int width = 50; // Min width
-         for (int row = 0; row < getRowCount(); row++) {
-            TableCellRenderer renderer = getCellRenderer(row, column);
-            Component comp = prepareRenderer(renderer, row, column);
-            width = Math.max(comp.getPreferredSize().width + 1, width);
+         columnModel.getColumn(column).setPreferredWidth(measureColumnWidth(column, sampleRows, MIN_COLUMN_WIDTH));
+      }
+   }
+
+   private int measureColumnWidth(int column, int[] rows, int minWidth)
+   {
+      int width = minWidth;
+      for (int row : rows) {
+         TableCellRenderer renderer = getCellRenderer(row, column);
+         Component comp = prepareRenderer(renderer, row, column);
+         width = Math.max(comp.getPreferredSize().width + 1, width);
+      }
+      return width;
+   }
+
+   /*
+    * Returns all the rows of a small sheet, or the leading rows plus a random
+    * sample of the other rows. The random generator is seeded by the row
+    * count, such that the same sheet is always sized the same way.
+    */
+   private int[] sampleRows()
+   {
+      int rowCount = getRowCount();
+      int sampleSize = Math.min(rowCount, SAMPLE_LEADING_ROWS + SAMPLE_RANDOM_ROWS);
+      int[] rows = new int[sampleSize];
+      Random random = new Random(rowCount);
+      for (int i = 0; i < sampleSize; i++) {
+         if (sampleSize == rowCount || i < SAMPLE_LEADING_ROWS) {
+            rows[i] = i;
+         } else {
+            rows[i] = SAMPLE_LEADING_ROWS + random.nextInt(rowCount - SAMPLE_LEADING_ROWS);
+         }
+      }
+      return rows;
+   }
+
+   /*
+    * Returns the rows in the viewport plus rows evenly spread over the sheet.
+    */
+   private int[] refineSampleRows()
+   {
+      int rowCount = getRowCount();
+      Rectangle visibleRect = getVisibleRect();
+      int firstVisibleRow = Math.max(0, rowAtPoint(new Point(0, visibleRect.y)));
+      int lastVisibleRow = rowAtPoint(new Point(0, visibleRect.y + visibleRect.height - 1));
+      if (lastVisibleRow == -1) {
+         lastVisibleRow = rowCount - 1;
+      }
+      int visibleRowCount = Math.max(0, lastVisibleRow - firstVisibleRow + 1);
+      int spreadRowCount = Math.min(rowCount, REFINE_SAMPLE_ROWS);
+      int[] rows = new int[visibleRowCount + spreadRowCount];
+      for (int i = 0; i < visibleRowCount; i++) {
+         rows[i] = firstVisibleRow + i;
+      }
+      for (int i = 0; i < spreadRowCount; i++) {
+         rows[visibleRowCount + i] = (int) ((long) i * rowCount / spreadRowCount);
+      }
+      return rows;
+   }
+
+   /*
+    * Queues the columns in the viewport that are not measured again yet.
+    */
+   private void queueVisibleColumns()
+   {
+      if (getColumnCount() == 0) {
+         return;
+      }
+      Rectangle visibleRect = getVisibleRect();
+      int firstColumn = Math.max(0, columnAtPoint(new Point(visibleRect.x, 0)));
+      int lastColumn = columnAtPoint(new Point(visibleRect.x + visibleRect.width - 1, 0));
+      if (lastColumn == -1) {
+         lastColumn = getColumnCount() - 1;
+      }
+      for (int column = firstColumn; column <= lastColumn; column++) {
+         if (!queuedColumns.get(column)) {
+            queuedColumns.set(column);
+            pendingColumns.add(column);
          }
-         columnModel.getColumn(column).setPreferredWidth(width);
+      }
+      if (!pendingColumns.isEmpty() && !refineTimer.isRunning()) {
+         refineTimer.start();
+      }
+   }
+
+   /*
+    * Measures a queued column on the larger sample. The column only grows,
+    * such that it does not jump back and forth while the user scrolls.
+    */
+   private void refineNextColumn()
+   {
+      Integer column = pendingColumns.poll();
+      if (column == null) {
+         refineTimer.stop();
+         return;
+      }
+      if (column < getColumnCount()) {
+         TableColumn tableColumn = getColumnModel().getColumn(column);
+         int width = measureColumnWidth(column, refineSampleRows(), tableColumn.getPreferredWidth());
+         tableColumn.setPreferredWidth(width);
+      }
+   }
+
+   @Override
+   public void addNotify()
+   {
+      super.addNotify();
+      Container parent = getParent();
+      if (parent instanceof JViewport) {
+         ((JViewport) parent).addChangeListener(viewportListener);
+      }
+   }
+
+   @Override
+   public void removeNotify()
+   {
+      refineTimer.stop();
+      Container parent = getParent();
+      if (parent instanceof JViewport) {
+         ((JViewport) parent).removeChangeListener(viewportListener);
+      }
+      super.removeNotify();
+   }
+
+   @Override
+   public void tableChanged(TableModelEvent e)
+   {
+      super.tableChanged(e);
+      if (refineTimer != null && e.getFirstRow() == TableModelEvent.HEADER_ROW) {
+         // The columns are created again, e.g., after the workbook is reloaded
+         refineTimer.stop();
+         queuedColumns.clear();
+         pendingColumns.clear();
+         resizeColumnWidth();
       }
    }
 
@@ -46,6 +46,7 @@ import javax.swing.table.JTableHeader;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumnModel;
 
+import org.mm.cellfie.engine.GenerationProgress;
 import org.mm.cellfie.ui.exception.CellfieException;
 import org.mm.core.TransformationRule;
 import org.mm.core.TransformationRuleSetFactory;
@@ -68,6 +69,9 @@ public class TransformationRuleBrowserView extends JPanel implements ModelView
    private JButton cmdSave;
    private JButton cmdSaveAs;
    private JButton cmdGenerateAxioms;
+   private JCheckBox chkParallelGeneration;
+   private JCheckBox chkIncrementalGeneration;
+   private GenerationProgressPanel pnlGenerationProgress;
 
    private JTable tblTransformationRules;
    private CheckBoxHeaderRenderer tblHeaderRenderer;
@@ -157,8 +161,11 @@ public class TransformationRuleBrowserView extends JPanel implements ModelView
 
       pnlCenter.add(scrMappingExpression, BorderLayout.CENTER);
 
+      JPanel pnlBottom = new JPanel(new BorderLayout());
+      pnlContainer.add(pnlBottom, BorderLayout.SOUTH);
+
       JPanel pnlGenerateAxioms = new JPanel();
-      pnlContainer.add(pnlGenerateAxioms, BorderLayout.SOUTH);
+      pnlBottom.add(pnlGenerateAxioms, BorderLayout.NORTH);
 
       cmdGenerateAxioms = new JButton("Generate Axioms");
       cmdGenerateAxioms.setPreferredSize(new Dimension(152, 22));
@@ -166,6 +173,19 @@ public class TransformationRuleBrowserView extends JPanel implements ModelView
       cmdGenerateAxioms.setEnabled(false);
       pnlGenerateAxioms.add(cmdGenerateAxioms);
 
+      chkParallelGeneration = new JCheckBox("Parallel");
+      chkParallelGeneration.setToolTipText("Evaluate the transformation rules using all available processors "
+            + "(not available for incremental generation)");
+      pnlGenerateAxioms.add(chkParallelGeneration);
+
+      chkIncrementalGeneration = new JCheckBox("Incremental");
+      chkIncrementalGeneration.setToolTipText("Evaluate only the rows that changed since the last committed generation");
+      chkIncrementalGeneration.addItemListener(e -> updateParallelGeneration());
+      pnlGenerateAxioms.add(chkIncrementalGeneration);
+
+      pnlGenerationProgress = new GenerationProgressPanel();
+      pnlBottom.add(pnlGenerationProgress, BorderLayout.SOUTH);
+
       update();
       validate();
    }
@@ -272,6 +292,44 @@ public class TransformationRuleBrowserView extends JPanel implements ModelView
       return tableModel.getSelectedRules();
    }
 
+   /**
+    * Tells whether the rules are evaluated in parallel. The incremental
+    * generation evaluates the changed rows one by one, hence it is never
+    * parallel.
+    */
+   public boolean isParallelGenerationSelected()
+   {
+      return chkParallelGeneration.isSelected() && !chkIncrementalGeneration.isSelected();
+   }
+
+   public boolean isIncrementalGenerationSelected()
+   {
+      return chkIncrementalGeneration.isSelected();
+   }
+
+   /* package */ void showGenerationProgress(GenerationProgress progress)
+   {
+      cmdGenerateAxioms.setEnabled(false);
+      chkParallelGeneration.setEnabled(false);
+      chkIncrementalGeneration.setEnabled(false);
+      pnlGenerationProgress.start(progress);
+      revalidate();
+   }
+
+   private void updateParallelGeneration()
+   {
+      chkParallelGeneration.setEnabled(!chkIncrementalGeneration.isSelected());
+   }
+
+   /* package */ void hideGenerationProgress()
+   {
+      pnlGenerationProgress.stop();
+      chkIncrementalGeneration.setEnabled(true);
+      updateParallelGeneration();
+      cmdGenerateAxioms.setEnabled(tblTransformationRules.getRowCount() > 0);
+      revalidate();
+   }
+
    private DialogManager getApplicationDialogManager()
    {
       return container.getApplicationDialogManager();
@@ -669,6 +727,7 @@ public class TransformationRuleBrowserView extends JPanel implements ModelView
       switch (answer) {
          case JOptionPane.OK_OPTION :
             TransformationRule userInput = editorPanel.getUserInput();
+            container.evictCompiledRule(getValueAt(selectedRow, 6)); // the rule text may have changed
             updateTableModel(selectedRow, userInput.getSheetName(), userInput.getStartColumn(),
                   userInput.getEndColumn(), userInput.getStartRow(), userInput.getEndRow(),
                   userInput.getRuleString(), userInput.getComment());
@@ -708,6 +767,7 @@ public class TransformationRuleBrowserView extends JPanel implements ModelView
                "Do you really want to delete the selected transformation rule?");
          switch (answer) {
             case JOptionPane.YES_OPTION :
+               container.evictCompiledRule(getValueAt(selectedRow, 6));
                tableModel.removeRow(selectedRow);
                tblTransformationRules.setRowSelectionInterval(selectedRow, selectedRow);
          }
@@ -790,7 +850,7 @@ public class TransformationRuleBrowserView extends JPanel implements ModelView
             cmdSave.setEnabled(true);
          }
          cmdSaveAs.setEnabled(true);
-         cmdGenerateAxioms.setEnabled(true);
+         cmdGenerateAxioms.setEnabled(!pnlGenerationProgress.isVisible()); // not while a generation is running
       } else {
          cmdGenerateAxioms.setEnabled(false);
       }
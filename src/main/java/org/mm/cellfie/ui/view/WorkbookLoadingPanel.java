@@ -0,0 +1,96 @@
+package org.mm.cellfie.ui.view;
+
+import java.awt.Dimension;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+
+import org.mm.cellfie.workbook.WorkbookLoadProgress;
+
+/**
+ * Shows the progress of the workbook loading, i.e., the sheet being read and
+ * the number of rows read so far, while the Cellfie dialog is opening and
+ * lets the user cancel the loading.
+ */
+public class WorkbookLoadingPanel extends JPanel
+{
+   private static final long serialVersionUID = 1L;
+
+   private static final int REFRESH_INTERVAL = 250; // in milliseconds
+
+   private final WorkbookLoadProgress progress;
+
+   private final JProgressBar progressBar;
+   private final JLabel lblStatus;
+   private final JButton cmdCancel;
+   private final Timer refreshTimer;
+
+   public WorkbookLoadingPanel(String workbookFilePath, WorkbookLoadProgress progress)
+   {
+      this.progress = progress;
+
+      setLayout(new GridBagLayout());
+      GridBagConstraints constraints = new GridBagConstraints();
+      constraints.gridx = 0;
+      constraints.insets = new Insets(4, 4, 4, 4);
+
+      add(new JLabel(String.format("Loading workbook %s", workbookFilePath)), constraints);
+
+      progressBar = new JProgressBar();
+      progressBar.setPreferredSize(new Dimension(360, 18));
+      progressBar.setIndeterminate(true);
+      add(progressBar, constraints);
+
+      lblStatus = new JLabel(" ");
+      add(lblStatus, constraints);
+
+      cmdCancel = new JButton("Cancel");
+      cmdCancel.setPreferredSize(new Dimension(72, 22));
+      cmdCancel.addActionListener(e -> cancel());
+      add(cmdCancel, constraints);
+
+      refreshTimer = new Timer(REFRESH_INTERVAL, e -> refresh());
+   }
+
+   public void start()
+   {
+      refresh();
+      refreshTimer.start();
+   }
+
+   public void stop()
+   {
+      refreshTimer.stop();
+   }
+
+   private void cancel()
+   {
+      progress.cancel();
+      cmdCancel.setEnabled(false);
+      lblStatus.setText("Cancelling...");
+   }
+
+   private void refresh()
+   {
+      if (progress.isCancelled()) {
+         return;
+      }
+      int sheetCount = progress.getSheetCount();
+      int sheetIndex = progress.getSheetIndex();
+      if (sheetCount == 0 || sheetIndex == -1) {
+         lblStatus.setText("Opening the workbook...");
+         return;
+      }
+      progressBar.setIndeterminate(false);
+      progressBar.setMaximum(sheetCount);
+      progressBar.setValue(sheetIndex);
+      lblStatus.setText(String.format("Reading sheet %d of %d (%s), %,d rows read", sheetIndex + 1, sheetCount,
+            progress.getSheetName(), progress.getRowCount()));
+   }
+}
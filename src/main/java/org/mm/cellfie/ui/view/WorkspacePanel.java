@@ -4,14 +4,17 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dialog;
 import java.awt.FlowLayout;
+import java.awt.Window;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.AbstractAction;
 import javax.swing.JComponent;
@@ -21,25 +24,34 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSplitPane;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.WindowConstants;
 import javax.swing.border.EmptyBorder;
 
+import org.apache.poi.ss.usermodel.Workbook;
 import org.mm.app.MMApplication;
 import org.mm.app.MMApplicationFactory;
 import org.mm.app.MMApplicationModel;
+import org.mm.cellfie.action.GenerationHistoryStore;
+import org.mm.cellfie.action.LabelIndex;
+import org.mm.cellfie.action.OWLProtegeEntityResolver;
 import org.mm.cellfie.action.OWLProtegeOntology;
-import org.mm.core.OWLOntologySourceHook;
+import org.mm.cellfie.engine.CompiledRuleCache;
+import org.mm.cellfie.engine.GenerationHistory;
+import org.mm.cellfie.engine.GenerationProgress;
+import org.mm.cellfie.engine.MMRendererFactory;
+import org.mm.cellfie.engine.RendererFactory;
+import org.mm.cellfie.workbook.CellStoreWorkbook;
+import org.mm.cellfie.workbook.WorkbookLoadProgress;
+import org.mm.cellfie.workbook.WorkbookLoader;
 import org.mm.core.TransformationRule;
 import org.mm.core.TransformationRuleSet;
 import org.mm.core.settings.ReferenceSettings;
-import org.mm.parser.ASTExpression;
-import org.mm.parser.MappingMasterParser;
+import org.mm.core.settings.ValueEncodingSetting;
 import org.mm.parser.ParseException;
-import org.mm.parser.SimpleNode;
-import org.mm.parser.node.ExpressionNode;
 import org.mm.parser.node.MMExpressionNode;
 import org.mm.renderer.Renderer;
-import org.mm.rendering.Rendering;
 import org.mm.ss.SpreadSheetDataSource;
 import org.mm.ui.DialogManager;
 import org.protege.editor.core.ui.split.ViewSplitPane;
@@ -60,17 +72,40 @@ public class WorkspacePanel extends JPanel
    private OWLEditorKit editorKit;
 
    private DialogManager dialogHelper;
+   private ViewSplitPane splitPane;
+   private WorkbookLoadingPanel workbookLoadingPanel;
    private DataSourceView dataSourceView;
    private TransformationRuleBrowserView transformationRuleBrowserView;
 
    private MMApplication application;
+   private String workbookFilePath;
+   private CellStoreWorkbook workbook;
+   private Workbook renderingWorkbook; // the workbook of the data source, see WorkbookLoader.openForRendering
+   private SpreadSheetDataSource dataSource;
+   private Renderer defaultRenderer;
+   private Renderer logRenderer;
+   private LabelIndex labelIndex;
+   private OWLProtegeEntityResolver entityResolver;
+   private GenerationHistoryStore generationHistories;
+   private RendererFactory rendererFactory;
    private MMApplicationFactory applicationFactory = new MMApplicationFactory();
 
+   private final CompiledRuleCache ruleCache = new CompiledRuleCache();
+   private final ReferenceSettings referenceSettings = new ReferenceSettings();
+   private final ReferenceSettings logReferenceSettings = createLogReferenceSettings();
+   private final WorkbookLoadProgress loadProgress = new WorkbookLoadProgress();
+
+   private GenerationProgress generationProgress; // null while no generation is running
+   private boolean disposed = false;
+
    public WorkspacePanel(OWLOntology ontology, String workbookFilePath, OWLEditorKit editorKit, DialogManager dialogHelper)
    {
       this.ontology = ontology;
       this.editorKit = editorKit;
       this.dialogHelper = dialogHelper;
+      this.labelIndex = new LabelIndex(editorKit.getModelManager());
+      this.entityResolver = new OWLProtegeEntityResolver(editorKit, OWLProtegeEntityResolver.DEFAULT_CACHE_SIZE, labelIndex);
+      this.generationHistories = GenerationHistoryStore.getInstance(editorKit.getModelManager());
 
       setLayout(new BorderLayout());
 
@@ -86,11 +121,22 @@ public class WorkspacePanel extends JPanel
       lblOntologyID.setForeground(Color.DARK_GRAY);
       pnlTargetOntology.add(lblOntologyID);
 
-      ViewSplitPane splitPane = new ViewSplitPane(JSplitPane.VERTICAL_SPLIT);
+      splitPane = new ViewSplitPane(JSplitPane.VERTICAL_SPLIT);
       splitPane.setResizeWeight(0.4);
-      add(splitPane, BorderLayout.CENTER);
 
+      /*
+       * The workbook is loaded in the background and the views are built once
+       * the loading finishes
+       */
+      workbookLoadingPanel = new WorkbookLoadingPanel(workbookFilePath, loadProgress);
+      add(workbookLoadingPanel, BorderLayout.CENTER);
       loadWorkbookDocument(workbookFilePath);
+
+      validate();
+   }
+
+   private void showWorkspace()
+   {
 //      loadTransformationRuleDocument(ruleFilePath) // XXX In case the UI will allow users to input rule file in advance
       setupApplication();
 
@@ -106,7 +152,11 @@ public class WorkspacePanel extends JPanel
       transformationRuleBrowserView = new TransformationRuleBrowserView(this);
       splitPane.setBottomComponent(transformationRuleBrowserView);
 
-      validate();
+      remove(workbookLoadingPanel);
+      workbookLoadingPanel = null;
+      add(splitPane, BorderLayout.CENTER);
+      revalidate();
+      repaint();
    }
 
    /**
@@ -148,7 +198,9 @@ public class WorkspacePanel extends JPanel
 
    private void loadWorkbookDocument(String path)
    {
-      applicationFactory.setWorkbookFileLocation(path);
+      workbookFilePath = path;
+      workbookLoadingPanel.start();
+      new WorkbookLoadWorker(new File(path)).execute();
    }
 
    /**
@@ -158,7 +210,7 @@ public class WorkspacePanel extends JPanel
     */
    public String getWorkbookFileLocation()
    {
-      return applicationFactory.getWorkbookFileLocation();
+      return workbookFilePath;
    }
 
    public void loadTransformationRuleDocument(String path)
@@ -186,8 +238,13 @@ public class WorkspacePanel extends JPanel
    private void setupApplication()
    {
       try {
-         OWLOntologySourceHook ontologySourceHook = new OWLProtegeOntology(getEditorKit());
-         application = applicationFactory.createApplication(ontologySourceHook);
+         OWLProtegeOntology ontologySource = new OWLProtegeOntology(getEditorKit(), entityResolver);
+         application = applicationFactory.createApplication(ontologySource);
+         rendererFactory = new MMRendererFactory(ontologySource);
+         if (dataSource != null) {
+            defaultRenderer = rendererFactory.createRenderer(dataSource);
+            logRenderer = rendererFactory.createLogRenderer(dataSource);
+         }
       } catch (Exception e) {
          dialogHelper.showErrorMessageDialog(this, "Initialization error: " + e.getMessage());
       }
@@ -198,16 +255,52 @@ public class WorkspacePanel extends JPanel
       return application.getApplicationModel();
    }
 
-   public void evaluate(TransformationRule rule, Renderer renderer, Set<Rendering> results) throws ParseException
+   /**
+    * Parses the given transformation rule into its expression node. The parsing
+    * result is cached such that the same rule text is parsed only once.
+    *
+    * @param rule
+    *          The transformation rule
+    * @return The expression node ready to be rendered.
+    * @throws ParseException If the rule has a syntax error.
+    */
+   public MMExpressionNode compile(TransformationRule rule) throws ParseException
    {
-      String ruleString = rule.getRuleString();
-      MappingMasterParser parser = new MappingMasterParser(new ByteArrayInputStream(ruleString.getBytes()), new ReferenceSettings(), -1);
-      SimpleNode simpleNode = parser.expression();
-      MMExpressionNode ruleNode = new ExpressionNode((ASTExpression) simpleNode).getMMExpressionNode();
-      Optional<? extends Rendering> renderingResult = renderer.render(ruleNode);
-      if (renderingResult.isPresent()) {
-         results.add(renderingResult.get());
-      }
+      return ruleCache.compile(rule.getRuleString(), referenceSettings);
+   }
+
+   /**
+    * Parses the given transformation rule into the expression node used for
+    * logging. The log node resolves entity references by their labels and,
+    * similar to {@link #compile(TransformationRule)}, is parsed only once.
+    *
+    * @param rule
+    *          The transformation rule
+    * @return The expression node ready to be rendered by the log renderer.
+    * @throws ParseException If the rule has a syntax error.
+    */
+   public MMExpressionNode compileForLogging(TransformationRule rule) throws ParseException
+   {
+      return ruleCache.compile(rule.getRuleString(), logReferenceSettings);
+   }
+
+   /**
+    * Removes the parsed expression nodes of the given rule text, once the rule
+    * has been edited or deleted.
+    *
+    * @param ruleString
+    *          The transformation rule expression
+    */
+   public void evictCompiledRule(String ruleString)
+   {
+      ruleCache.evict(ruleString);
+   }
+
+   private static ReferenceSettings createLogReferenceSettings()
+   {
+      ReferenceSettings referenceSettings = new ReferenceSettings();
+      referenceSettings.setValueEncodingSetting(ValueEncodingSetting.RDFS_LABEL);
+      return referenceSettings;
    }
 
    public OWLOntology getActiveOntology()
@@ -215,9 +308,26 @@ public class WorkspacePanel extends JPanel
       return ontology;
    }
 
+   /**
+    * Returns the data source of the workbook, or null if the workbook could
+    * not be read.
+    *
+    * @return The data source.
+    */
    public SpreadSheetDataSource getActiveWorkbook()
    {
-      return getApplicationModel().getDataSourceModel().getDataSource();
+      return dataSource;
+   }
+
+   /**
+    * Returns the cell values of the workbook, or null if the workbook could
+    * not be read.
+    *
+    * @return The workbook cell stores.
+    */
+   public CellStoreWorkbook getCellStoreWorkbook()
+   {
+      return workbook;
    }
 
    public List<TransformationRule> getActiveTransformationRules()
@@ -239,12 +349,99 @@ public class WorkspacePanel extends JPanel
 
    public Renderer getDefaultRenderer()
    {
-      return getApplicationModel().getDefaultRenderer();
+      return defaultRenderer;
    }
 
    public Renderer getLogRenderer()
    {
-      return getApplicationModel().getLogRenderer();
+      return logRenderer;
+   }
+
+   /**
+    * Returns the factory to create new renderers for a separate data source,
+    * e.g., when the rules are evaluated in parallel.
+    *
+    * @return The renderer factory.
+    */
+   public RendererFactory getRendererFactory()
+   {
+      return rendererFactory;
+   }
+
+   /**
+    * Returns the entity resolver used by the renderers of this workspace. The
+    * resolver lives as long as the workspace, also when a new rule file is
+    * loaded, and is released by {@link #dispose()}.
+    *
+    * @return The entity resolver.
+    */
+   public OWLProtegeEntityResolver getEntityResolver()
+   {
+      return entityResolver;
+   }
+
+   /**
+    * Registers the progress of the generation run that has just started, such
+    * that closing the dialog cancels the run. Pass null once the run
+    * finished.
+    *
+    * @param progress
+    *          The progress of the running generation, or null.
+    */
+   /* package */ void setGenerationProgress(GenerationProgress progress)
+   {
+      generationProgress = progress;
+   }
+
+   /**
+    * Releases the resources of this workspace when the Cellfie dialog is
+    * closed. A running workbook loading or axiom generation is cancelled.
+    */
+   public void dispose()
+   {
+      disposed = true;
+      loadProgress.cancel();
+      if (generationProgress != null) {
+         generationProgress.cancel();
+      }
+      entityResolver.dispose();
+      labelIndex.dispose();
+      closeRenderingWorkbook();
+   }
+
+   private void closeRenderingWorkbook()
+   {
+      if (renderingWorkbook != null) {
+         try {
+            renderingWorkbook.close();
+         } catch (IOException e) {
+            // The workbook was opened read-only, hence there is nothing to lose
+         }
+      }
+   }
+
+   /**
+    * Returns the history of the axioms committed from the workbook into the
+    * given ontology. The history is kept by the editor kit, hence it survives
+    * closing and opening the Cellfie dialog on the same workbook.
+    *
+    * @param targetOntology
+    *          The ontology the generated axioms are committed to
+    * @return The generation history.
+    */
+   public GenerationHistory getGenerationHistory(OWLOntology targetOntology)
+   {
+      return generationHistories.get(targetOntology, new File(workbookFilePath));
+   }
+
+   /**
+    * Tells whether the Cellfie dialog of this workspace was closed.
+    *
+    * @return {@code true} if {@link #dispose()} was called.
+    */
+   public boolean isDisposed()
+   {
+      return disposed;
    }
 
    public OWLEditorKit getEditorKit()
@@ -284,6 +481,7 @@ public class WorkspacePanel extends JPanel
             switch (answer) {
                case JOptionPane.YES_OPTION:
                   if (workspacePanel.shouldClose()) {
+                     workspacePanel.dispose();
                      dialog.setVisible(false);
                   }
             }
@@ -295,6 +493,7 @@ public class WorkspacePanel extends JPanel
          @Override
          public void windowClosing(WindowEvent e) {
             if (workspacePanel.shouldClose()) {
+               workspacePanel.dispose();
                dialog.setVisible(false);
             }
          }
@@ -307,6 +506,64 @@ public class WorkspacePanel extends JPanel
 
    protected boolean shouldClose()
    {
+      if (transformationRuleBrowserView == null) {
+         return true; // the workbook is still loading
+      }
       return transformationRuleBrowserView.safeGuardChanges();
    }
+
+   /**
+    * Reads the workbook in a background thread, such that the Cellfie dialog
+    * shows up immediately. The workspace views are built back in the event
+    * dispatch thread once the loading finishes. If the user cancels the
+    * loading, the dialog is closed.
+    */
+   class WorkbookLoadWorker extends SwingWorker<CellStoreWorkbook, Void>
+   {
+      private final File workbookFile;
+
+      private File emptyCopy;
+
+      public WorkbookLoadWorker(File workbookFile)
+      {
+         this.workbookFile = workbookFile;
+      }
+
+      @Override
+      protected CellStoreWorkbook doInBackground() throws Exception
+      {
+         CellStoreWorkbook workbook = WorkbookLoader.load(workbookFile, loadProgress);
+         emptyCopy = WorkbookLoader.createEmptyCopy(workbook);
+         renderingWorkbook = WorkbookLoader.openForRendering(workbookFile, workbook);
+         return workbook;
+      }
+
+      @Override
+      protected void done()
+      {
+         workbookLoadingPanel.stop();
+         if (disposed) {
+            closeRenderingWorkbook();
+            return;
+         }
+         try {
+            workbook = get();
+            dataSource = new SpreadSheetDataSource(renderingWorkbook);
+            applicationFactory.setWorkbookFileLocation(emptyCopy.getAbsolutePath());
+         } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterruptedIOException) {
+               dispose();
+               Window dialog = SwingUtilities.getWindowAncestor(WorkspacePanel.this);
+               if (dialog != null) {
+                  dialog.setVisible(false);
+               }
+               return;
+            }
+            dialogHelper.showErrorMessageDialog(WorkspacePanel.this, "Error reading workbook: " + e.getCause().getMessage());
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+         showWorkspace();
+      }
+   }
 }
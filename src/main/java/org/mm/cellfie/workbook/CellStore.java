@@ -0,0 +1,487 @@
+package org.mm.cellfie.workbook;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The cell values of a worksheet stored column by column. Each column keeps
+ * the cell types in a byte array and allocates the arrays for the numbers,
+ * the booleans, the string indexes and the number formats only when it has
+ * a cell of that kind. The strings themselves are kept in the
+ * {@link StringPool} shared by all the sheets of the workbook. The store
+ * holds the values only, i.e., no styles, formulas or comments.
+ * <p>
+ * The store is filled by a workbook reader and is read-only afterwards,
+ * hence it can be shared by several threads.
+ */
+public class CellStore
+{
+   public static final byte BLANK = 0;
+   public static final byte NUMERIC = 1;
+   public static final byte STRING = 2;
+   public static final byte BOOLEAN = 3;
+   public static final byte ERROR = 4;
+
+   private static final int INITIAL_CAPACITY = 64;
+
+   private final String sheetName;
+   private final StringPool stringPool;
+
+   private Column[] columns = new Column[0];
+
+   private short[] firstCellNums = new short[INITIAL_CAPACITY]; // 0-based, per row
+   private short[] lastCellNums = new short[INITIAL_CAPACITY]; // 1 + index of the last cell, 0 if the row is empty
+
+   private int firstRowNum = -1;
+   private int lastRowNum = -1;
+   private int rowCount = 0;
+
+   private volatile SheetOccupancy occupancy;
+
+   public CellStore(@Nonnull String sheetName, @Nonnull StringPool stringPool)
+   {
+      this.sheetName = checkNotNull(sheetName);
+      this.stringPool = checkNotNull(stringPool);
+   }
+
+   /**
+    * Reads the store written by {@link #writeTo(DataOutput)} from a snapshot
+    * buffer. The buffer position is moved past the store.
+    */
+   /* package */ CellStore(@Nonnull String sheetName, @Nonnull StringPool stringPool, @Nonnull ByteBuffer buffer)
+   {
+      this(sheetName, stringPool);
+      firstRowNum = buffer.getInt();
+      lastRowNum = buffer.getInt();
+      rowCount = buffer.getInt();
+      firstCellNums = readShorts(buffer);
+      lastCellNums = readShorts(buffer);
+      columns = new Column[buffer.getInt()];
+      for (int i = 0; i < columns.length; i++) {
+         if (buffer.get() != 0) {
+            Column c = new Column();
+            c.types = readBytes(buffer);
+            c.numbers = readDoubles(buffer);
+            long[] booleanWords = readLongs(buffer);
+            c.booleans = (booleanWords == null) ? null : BitSet.valueOf(booleanWords);
+            c.stringIds = readInts(buffer);
+            c.formats = readShorts(buffer);
+            columns[i] = c;
+         }
+      }
+   }
+
+   public String getSheetName()
+   {
+      return sheetName;
+   }
+
+   /**
+    * Returns the 0-based index of the first row that has a value, or -1 if
+    * the sheet is empty.
+    *
+    * @return The first row index.
+    */
+   public int getFirstRowNum()
+   {
+      return firstRowNum;
+   }
+
+   /**
+    * Returns the 0-based index of the last row that has a value, or -1 if
+    * the sheet is empty.
+    *
+    * @return The last row index.
+    */
+   public int getLastRowNum()
+   {
+      return lastRowNum;
+   }
+
+   /**
+    * Returns the number of rows that have at least one value.
+    *
+    * @return The row count.
+    */
+   public int getRowCount()
+   {
+      return rowCount;
+   }
+
+   public boolean hasRow(int row)
+   {
+      return row >= 0 && row <= lastRowNum && lastCellNums[row] > 0;
+   }
+
+   /**
+    * Returns the 0-based index of the first cell in the given row, or -1 if
+    * the row is empty.
+    */
+   public short getFirstCellNum(int row)
+   {
+      return hasRow(row) ? firstCellNums[row] : -1;
+   }
+
+   /**
+    * Returns 1 plus the 0-based index of the last cell in the given row, or
+    * -1 if the row is empty. This is the same convention as
+    * {@link org.apache.poi.ss.usermodel.Row#getLastCellNum()}.
+    */
+   public short getLastCellNum(int row)
+   {
+      return hasRow(row) ? lastCellNums[row] : -1;
+   }
+
+   /**
+    * Returns the extent of the non-blank cells of the sheet. The index is
+    * computed on the first call.
+    *
+    * @return The occupancy index.
+    */
+   public SheetOccupancy getOccupancy()
+   {
+      SheetOccupancy result = occupancy;
+      if (result == null) {
+         result = new SheetOccupancy(this); // computing it twice in a race is harmless
+         occupancy = result;
+      }
+      return result;
+   }
+
+   public byte getCellType(int row, int column)
+   {
+      Column c = getColumn(column);
+      return (c == null) ? BLANK : c.getType(row);
+   }
+
+   public double getNumericValue(int row, int column)
+   {
+      return columns[column].numbers[row];
+   }
+
+   public boolean getBooleanValue(int row, int column)
+   {
+      return columns[column].booleans.get(row);
+   }
+
+   /**
+    * Returns the text of a string cell or the error code of an error cell,
+    * e.g., "#DIV/0!".
+    */
+   public String getStringValue(int row, int column)
+   {
+      return stringPool.get(columns[column].stringIds[row]);
+   }
+
+   /**
+    * Returns the index of the number format of a numeric cell.
+    */
+   public short getFormat(int row, int column)
+   {
+      short[] formats = columns[column].formats;
+      return (formats == null || row >= formats.length) ? 0 : formats[row];
+   }
+
+   /* package */ void setNumeric(int row, int column, double value, short format)
+   {
+      Column c = prepareCell(row, column, NUMERIC);
+      c.numbers = ensureCapacity(c.numbers, row);
+      c.numbers[row] = value;
+      if (format != 0) {
+         c.formats = ensureCapacity(c.formats, row);
+         c.formats[row] = format;
+      }
+   }
+
+   /* package */ void setBoolean(int row, int column, boolean value)
+   {
+      Column c = prepareCell(row, column, BOOLEAN);
+      if (c.booleans == null) {
+         c.booleans = new BitSet();
+      }
+      c.booleans.set(row, value);
+   }
+
+   /* package */ void setString(int row, int column, @Nonnull String value)
+   {
+      Column c = prepareCell(row, column, STRING);
+      c.stringIds = ensureCapacity(c.stringIds, row);
+      c.stringIds[row] = stringPool.intern(value);
+   }
+
+   /* package */ void setError(int row, int column, @Nonnull String errorCode)
+   {
+      Column c = prepareCell(row, column, ERROR);
+      c.stringIds = ensureCapacity(c.stringIds, row);
+      c.stringIds[row] = stringPool.intern(errorCode);
+   }
+
+   /**
+    * Ends the loading of the store. The arrays, which grow by half of their
+    * size while the rows are added, are trimmed to the last row.
+    */
+   /* package */ void trimToSize()
+   {
+      int length = lastRowNum + 1;
+      firstCellNums = Arrays.copyOf(firstCellNums, length);
+      lastCellNums = Arrays.copyOf(lastCellNums, length);
+      for (Column c : columns) {
+         if (c != null) {
+            c.trimToSize(length);
+         }
+      }
+   }
+
+   /**
+    * Writes the arrays of the store into a workbook snapshot. The sheet name
+    * and the string pool are written by the {@link WorkbookSnapshot}.
+    */
+   /* package */ void writeTo(DataOutput out) throws IOException
+   {
+      out.writeInt(firstRowNum);
+      out.writeInt(lastRowNum);
+      out.writeInt(rowCount);
+      writeShorts(out, firstCellNums);
+      writeShorts(out, lastCellNums);
+      out.writeInt(columns.length);
+      for (Column c : columns) {
+         out.writeBoolean(c != null);
+         if (c != null) {
+            writeBytes(out, c.types);
+            writeDoubles(out, c.numbers);
+            writeLongs(out, (c.booleans == null) ? null : c.booleans.toLongArray());
+            writeInts(out, c.stringIds);
+            writeShorts(out, c.formats);
+         }
+      }
+   }
+
+   private Column getColumn(int column)
+   {
+      return (column >= 0 && column < columns.length) ? columns[column] : null;
+   }
+
+   private Column prepareCell(int row, int column, byte type)
+   {
+      if (column >= columns.length) {
+         columns = Arrays.copyOf(columns, Math.max(column + 1, columns.length * 2));
+      }
+      Column c = columns[column];
+      if (c == null) {
+         c = new Column();
+         columns[column] = c;
+      }
+      c.types = ensureCapacity(c.types, row);
+      c.types[row] = type;
+      updateRowExtent(row, column);
+      return c;
+   }
+
+   private void updateRowExtent(int row, int column)
+   {
+      firstCellNums = ensureCapacity(firstCellNums, row);
+      lastCellNums = ensureCapacity(lastCellNums, row);
+      if (lastCellNums[row] == 0) {
+         firstCellNums[row] = (short) column;
+         rowCount++;
+      } else if (column < firstCellNums[row]) {
+         firstCellNums[row] = (short) column;
+      }
+      if (column + 1 > lastCellNums[row]) {
+         lastCellNums[row] = (short) (column + 1);
+      }
+      if (firstRowNum == -1 || row < firstRowNum) {
+         firstRowNum = row;
+      }
+      if (row > lastRowNum) {
+         lastRowNum = row;
+      }
+   }
+
+   private static byte[] ensureCapacity(byte[] array, int index)
+   {
+      if (array == null) {
+         return new byte[capacityFor(index, 0)];
+      }
+      return (index < array.length) ? array : Arrays.copyOf(array, capacityFor(index, array.length));
+   }
+
+   private static short[] ensureCapacity(short[] array, int index)
+   {
+      if (array == null) {
+         return new short[capacityFor(index, 0)];
+      }
+      return (index < array.length) ? array : Arrays.copyOf(array, capacityFor(index, array.length));
+   }
+
+   private static double[] ensureCapacity(double[] array, int index)
+   {
+      if (array == null) {
+         return new double[capacityFor(index, 0)];
+      }
+      return (index < array.length) ? array : Arrays.copyOf(array, capacityFor(index, array.length));
+   }
+
+   private static int[] ensureCapacity(int[] array, int index)
+   {
+      if (array == null) {
+         return new int[capacityFor(index, 0)];
+      }
+      return (index < array.length) ? array : Arrays.copyOf(array, capacityFor(index, array.length));
+   }
+
+   private static int capacityFor(int index, int currentLength)
+   {
+      return Math.max(index + 1, Math.max(INITIAL_CAPACITY, currentLength + (currentLength >> 1)));
+   }
+
+   /*
+    * Each array is written as its length followed by the elements, or as -1
+    * if the array is not allocated.
+    */
+   private static void writeBytes(DataOutput out, byte[] array) throws IOException
+   {
+      out.writeInt((array == null) ? -1 : array.length);
+      if (array != null) {
+         out.write(array);
+      }
+   }
+
+   private static void writeShorts(DataOutput out, short[] array) throws IOException
+   {
+      out.writeInt((array == null) ? -1 : array.length);
+      if (array != null) {
+         for (short value : array) {
+            out.writeShort(value);
+         }
+      }
+   }
+
+   private static void writeInts(DataOutput out, int[] array) throws IOException
+   {
+      out.writeInt((array == null) ? -1 : array.length);
+      if (array != null) {
+         for (int value : array) {
+            out.writeInt(value);
+         }
+      }
+   }
+
+   private static void writeLongs(DataOutput out, long[] array) throws IOException
+   {
+      out.writeInt((array == null) ? -1 : array.length);
+      if (array != null) {
+         for (long value : array) {
+            out.writeLong(value);
+         }
+      }
+   }
+
+   private static void writeDoubles(DataOutput out, double[] array) throws IOException
+   {
+      out.writeInt((array == null) ? -1 : array.length);
+      if (array != null) {
+         for (double value : array) {
+            out.writeDouble(value);
+         }
+      }
+   }
+
+   private static byte[] readBytes(ByteBuffer buffer)
+   {
+      int length = buffer.getInt();
+      if (length == -1) {
+         return null;
+      }
+      byte[] array = new byte[length];
+      buffer.get(array);
+      return array;
+   }
+
+   private static short[] readShorts(ByteBuffer buffer)
+   {
+      int length = buffer.getInt();
+      if (length == -1) {
+         return null;
+      }
+      short[] array = new short[length];
+      buffer.asShortBuffer().get(array);
+      buffer.position(buffer.position() + length * Short.BYTES);
+      return array;
+   }
+
+   private static int[] readInts(ByteBuffer buffer)
+   {
+      int length = buffer.getInt();
+      if (length == -1) {
+         return null;
+      }
+      int[] array = new int[length];
+      buffer.asIntBuffer().get(array);
+      buffer.position(buffer.position() + length * Integer.BYTES);
+      return array;
+   }
+
+   private static long[] readLongs(ByteBuffer buffer)
+   {
+      int length = buffer.getInt();
+      if (length == -1) {
+         return null;
+      }
+      long[] array = new long[length];
+      buffer.asLongBuffer().get(array);
+      buffer.position(buffer.position() + length * Long.BYTES);
+      return array;
+   }
+
+   private static double[] readDoubles(ByteBuffer buffer)
+   {
+      int length = buffer.getInt();
+      if (length == -1) {
+         return null;
+      }
+      double[] array = new double[length];
+      buffer.asDoubleBuffer().get(array);
+      buffer.position(buffer.position() + length * Double.BYTES);
+      return array;
+   }
+
+   /*
+    * The arrays of a column grow with the rows written into it. The string
+    * indexes point to both the texts and the error codes in the pool.
+    */
+   private static class Column
+   {
+      private byte[] types;
+      private double[] numbers;
+      private BitSet booleans;
+      private int[] stringIds;
+      private short[] formats;
+
+      private byte getType(int row)
+      {
+         return (row >= 0 && row < types.length) ? types[row] : BLANK;
+      }
+
+      private void trimToSize(int length)
+      {
+         types = Arrays.copyOf(types, Math.min(types.length, length));
+         if (numbers != null) {
+            numbers = Arrays.copyOf(numbers, Math.min(numbers.length, length));
+         }
+         if (stringIds != null) {
+            stringIds = Arrays.copyOf(stringIds, Math.min(stringIds.length, length));
+         }
+         if (formats != null) {
+            formats = Arrays.copyOf(formats, Math.min(formats.length, length));
+         }
+      }
+   }
+}
@@ -0,0 +1,232 @@
+package org.mm.cellfie.workbook;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+import javax.annotation.Nonnull;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+
+/**
+ * A read-only view of a cell in a {@link CellStore}. The formula cells are
+ * presented by the type of their cached result, hence a cell never has the
+ * {@link CellType#FORMULA} type. The value getters follow the POI cells and
+ * throw {@link IllegalStateException} if the cell has a different type.
+ */
+class CellStoreCell extends ReadOnlyCell
+{
+   private final CellStoreSheet sheet;
+   private final CellStore cellStore;
+   private final int rowIndex;
+   private final int columnIndex;
+
+   public CellStoreCell(@Nonnull CellStoreSheet sheet, int rowIndex, int columnIndex)
+   {
+      this.sheet = checkNotNull(sheet);
+      this.cellStore = sheet.getCellStore();
+      this.rowIndex = rowIndex;
+      this.columnIndex = columnIndex;
+   }
+
+   @Override
+   public int getColumnIndex()
+   {
+      return columnIndex;
+   }
+
+   @Override
+   public int getRowIndex()
+   {
+      return rowIndex;
+   }
+
+   @Override
+   public Sheet getSheet()
+   {
+      return sheet;
+   }
+
+   @Override
+   public Row getRow()
+   {
+      return sheet.getRow(rowIndex);
+   }
+
+   @Override
+   public CellType getCellType()
+   {
+      switch (getStoreType()) {
+         case CellStore.NUMERIC :
+            return CellType.NUMERIC;
+         case CellStore.STRING :
+            return CellType.STRING;
+         case CellStore.BOOLEAN :
+            return CellType.BOOLEAN;
+         case CellStore.ERROR :
+            return CellType.ERROR;
+         default :
+            return CellType.BLANK;
+      }
+   }
+
+   @Override
+   public CellType getCachedFormulaResultType()
+   {
+      throw new IllegalStateException("Only formula cells have cached results");
+   }
+
+   @Override
+   public String getCellFormula()
+   {
+      throw new IllegalStateException("The workbook keeps the formula results only");
+   }
+
+   @Override
+   public double getNumericCellValue()
+   {
+      switch (getStoreType()) {
+         case CellStore.NUMERIC :
+            return cellStore.getNumericValue(rowIndex, columnIndex);
+         case CellStore.BLANK :
+            return 0.0;
+         default :
+            throw typeMismatch(CellType.NUMERIC);
+      }
+   }
+
+   @Override
+   public Date getDateCellValue()
+   {
+      if (getStoreType() == CellStore.BLANK) {
+         return null;
+      }
+      return DateUtil.getJavaDate(getNumericCellValue(), sheet.getCellStoreWorkbook().isDate1904());
+   }
+
+   @Override
+   public LocalDateTime getLocalDateTimeCellValue()
+   {
+      if (getStoreType() == CellStore.BLANK) {
+         return null;
+      }
+      return DateUtil.getLocalDateTime(getNumericCellValue(), sheet.getCellStoreWorkbook().isDate1904());
+   }
+
+   @Override
+   public RichTextString getRichStringCellValue()
+   {
+      return new XSSFRichTextString(getStringCellValue());
+   }
+
+   @Override
+   public String getStringCellValue()
+   {
+      switch (getStoreType()) {
+         case CellStore.STRING :
+            return cellStore.getStringValue(rowIndex, columnIndex);
+         case CellStore.BLANK :
+            return "";
+         default :
+            throw typeMismatch(CellType.STRING);
+      }
+   }
+
+   @Override
+   public boolean getBooleanCellValue()
+   {
+      switch (getStoreType()) {
+         case CellStore.BOOLEAN :
+            return cellStore.getBooleanValue(rowIndex, columnIndex);
+         case CellStore.BLANK :
+            return false;
+         default :
+            throw typeMismatch(CellType.BOOLEAN);
+      }
+   }
+
+   @Override
+   public byte getErrorCellValue()
+   {
+      if (getStoreType() != CellStore.ERROR) {
+         throw typeMismatch(CellType.ERROR);
+      }
+      return FormulaError.forString(cellStore.getStringValue(rowIndex, columnIndex)).getCode();
+   }
+
+   @Override
+   public CellStyle getCellStyle()
+   {
+      short format = (getStoreType() == CellStore.NUMERIC) ? cellStore.getFormat(rowIndex, columnIndex) : 0;
+      return sheet.getCellStoreWorkbook().getCellStyle(format);
+   }
+
+   @Override
+   public CellAddress getAddress()
+   {
+      return new CellAddress(rowIndex, columnIndex);
+   }
+
+   @Override
+   public Comment getCellComment()
+   {
+      return null;
+   }
+
+   @Override
+   public Hyperlink getHyperlink()
+   {
+      return null;
+   }
+
+   @Override
+   public CellRangeAddress getArrayFormulaRange()
+   {
+      throw new IllegalStateException("The workbook keeps the formula results only");
+   }
+
+   @Override
+   public boolean isPartOfArrayFormulaGroup()
+   {
+      return false;
+   }
+
+   @Override
+   public String toString()
+   {
+      switch (getStoreType()) {
+         case CellStore.NUMERIC :
+            return Double.toString(cellStore.getNumericValue(rowIndex, columnIndex));
+         case CellStore.BOOLEAN :
+            return cellStore.getBooleanValue(rowIndex, columnIndex) ? "TRUE" : "FALSE";
+         case CellStore.STRING :
+         case CellStore.ERROR :
+            return cellStore.getStringValue(rowIndex, columnIndex);
+         default :
+            return "";
+      }
+   }
+
+   private byte getStoreType()
+   {
+      return cellStore.getCellType(rowIndex, columnIndex);
+   }
+
+   private IllegalStateException typeMismatch(CellType expectedType)
+   {
+      return new IllegalStateException(String.format("Cannot get a %s value from a %s cell", expectedType,
+            getCellType()));
+   }
+}
@@ -0,0 +1,41 @@
+package org.mm.cellfie.workbook;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The cell style of a {@link CellStore} cell. The style has the number
+ * format only, which is what {@link org.apache.poi.ss.usermodel.DateUtil}
+ * and {@link org.apache.poi.ss.usermodel.DataFormatter} need to present
+ * the numeric values.
+ */
+class CellStoreCellStyle extends ReadOnlyCellStyle
+{
+   private final short format;
+   private final String formatString;
+
+   public CellStoreCellStyle(short format, @Nonnull String formatString)
+   {
+      this.format = format;
+      this.formatString = checkNotNull(formatString);
+   }
+
+   @Override
+   public short getIndex()
+   {
+      return format;
+   }
+
+   @Override
+   public short getDataFormat()
+   {
+      return format;
+   }
+
+   @Override
+   public String getDataFormatString()
+   {
+      return formatString;
+   }
+}
@@ -0,0 +1,178 @@
+package org.mm.cellfie.workbook;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nonnull;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Sheet;
+
+/**
+ * A read-only view of a row in a {@link CellStore}. The blank cells do not
+ * exist unless the missing cell policy asks for them.
+ */
+class CellStoreRow extends ReadOnlyRow
+{
+   private final CellStoreSheet sheet;
+   private final CellStore cellStore;
+   private final int rowIndex;
+
+   public CellStoreRow(@Nonnull CellStoreSheet sheet, int rowIndex)
+   {
+      this.sheet = checkNotNull(sheet);
+      this.cellStore = sheet.getCellStore();
+      this.rowIndex = rowIndex;
+   }
+
+   @Override
+   public int getRowNum()
+   {
+      return rowIndex;
+   }
+
+   @Override
+   public Cell getCell(int cellnum)
+   {
+      return getCell(cellnum, sheet.getCellStoreWorkbook().getMissingCellPolicy());
+   }
+
+   @Override
+   public Cell getCell(int cellnum, MissingCellPolicy policy)
+   {
+      if (cellStore.getCellType(rowIndex, cellnum) != CellStore.BLANK
+            || policy == MissingCellPolicy.CREATE_NULL_AS_BLANK) {
+         return new CellStoreCell(sheet, rowIndex, cellnum);
+      }
+      return null;
+   }
+
+   @Override
+   public short getFirstCellNum()
+   {
+      return cellStore.getFirstCellNum(rowIndex);
+   }
+
+   @Override
+   public short getLastCellNum()
+   {
+      return cellStore.getLastCellNum(rowIndex);
+   }
+
+   @Override
+   public int getPhysicalNumberOfCells()
+   {
+      int count = 0;
+      for (int i = getFirstCellNum(); i < getLastCellNum(); i++) {
+         if (cellStore.getCellType(rowIndex, i) != CellStore.BLANK) {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   @Override
+   public boolean getZeroHeight()
+   {
+      return false;
+   }
+
+   @Override
+   public short getHeight()
+   {
+      return sheet.getDefaultRowHeight();
+   }
+
+   @Override
+   public float getHeightInPoints()
+   {
+      return sheet.getDefaultRowHeightInPoints();
+   }
+
+   @Override
+   public boolean isFormatted()
+   {
+      return false;
+   }
+
+   @Override
+   public CellStyle getRowStyle()
+   {
+      return null;
+   }
+
+   @Override
+   public Iterator<Cell> cellIterator()
+   {
+      return new CellIterator();
+   }
+
+   @Override
+   public Sheet getSheet()
+   {
+      return sheet;
+   }
+
+   @Override
+   public int getOutlineLevel()
+   {
+      return 0;
+   }
+
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (this == obj) {
+         return true;
+      }
+      if (!(obj instanceof CellStoreRow)) {
+         return false;
+      }
+      CellStoreRow other = (CellStoreRow) obj;
+      return sheet == other.sheet && rowIndex == other.rowIndex;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      return 31 * System.identityHashCode(sheet) + rowIndex;
+   }
+
+   /*
+    * Iterates over the cells that have a value.
+    */
+   private class CellIterator implements Iterator<Cell>
+   {
+      private int nextColumn = nextColumnFrom(getFirstCellNum());
+
+      @Override
+      public boolean hasNext()
+      {
+         return nextColumn != -1;
+      }
+
+      @Override
+      public Cell next()
+      {
+         if (nextColumn == -1) {
+            throw new NoSuchElementException();
+         }
+         Cell cell = new CellStoreCell(sheet, rowIndex, nextColumn);
+         nextColumn = nextColumnFrom(nextColumn + 1);
+         return cell;
+      }
+
+      private int nextColumnFrom(int column)
+      {
+         for (int i = Math.max(column, 0); i < getLastCellNum(); i++) {
+            if (cellStore.getCellType(rowIndex, i) != CellStore.BLANK) {
+               return i;
+            }
+         }
+         return -1;
+      }
+   }
+}
@@ -0,0 +1,240 @@
+package org.mm.cellfie.workbook;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nonnull;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.DataValidation;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * A read-only view of a {@link CellStore} as an Apache POI sheet. The rows
+ * are created on request and only the rows that have a value exist.
+ */
+class CellStoreSheet extends ReadOnlySheet
+{
+   private static final int DEFAULT_COLUMN_WIDTH = 8; // in characters
+   private static final short DEFAULT_ROW_HEIGHT = 300; // in twips, i.e., 15 points
+
+   private final CellStoreWorkbook workbook;
+   private final CellStore cellStore;
+
+   public CellStoreSheet(@Nonnull CellStoreWorkbook workbook, @Nonnull CellStore cellStore)
+   {
+      this.workbook = checkNotNull(workbook);
+      this.cellStore = checkNotNull(cellStore);
+   }
+
+   public CellStore getCellStore()
+   {
+      return cellStore;
+   }
+
+   /* package */ CellStoreWorkbook getCellStoreWorkbook()
+   {
+      return workbook;
+   }
+
+   @Override
+   public Row getRow(int rownum)
+   {
+      return cellStore.hasRow(rownum) ? new CellStoreRow(this, rownum) : null;
+   }
+
+   @Override
+   public int getPhysicalNumberOfRows()
+   {
+      return cellStore.getRowCount();
+   }
+
+   @Override
+   public int getFirstRowNum()
+   {
+      return cellStore.getFirstRowNum();
+   }
+
+   @Override
+   public int getLastRowNum()
+   {
+      return cellStore.getLastRowNum();
+   }
+
+   @Override
+   public boolean isColumnHidden(int columnIndex)
+   {
+      return false;
+   }
+
+   @Override
+   public boolean isRightToLeft()
+   {
+      return false;
+   }
+
+   @Override
+   public int getColumnWidth(int columnIndex)
+   {
+      return getDefaultColumnWidth() * 256;
+   }
+
+   @Override
+   public int getDefaultColumnWidth()
+   {
+      return DEFAULT_COLUMN_WIDTH;
+   }
+
+   @Override
+   public short getDefaultRowHeight()
+   {
+      return DEFAULT_ROW_HEIGHT;
+   }
+
+   @Override
+   public float getDefaultRowHeightInPoints()
+   {
+      return DEFAULT_ROW_HEIGHT / 20f;
+   }
+
+   @Override
+   public CellStyle getColumnStyle(int column)
+   {
+      return null;
+   }
+
+   @Override
+   public int getNumMergedRegions()
+   {
+      return 0;
+   }
+
+   @Override
+   public CellRangeAddress getMergedRegion(int index)
+   {
+      throw new IndexOutOfBoundsException("The sheet has no merged regions");
+   }
+
+   @Override
+   public List<CellRangeAddress> getMergedRegions()
+   {
+      return Collections.emptyList();
+   }
+
+   @Override
+   public Iterator<Row> rowIterator()
+   {
+      return new RowIterator();
+   }
+
+   @Override
+   public boolean getForceFormulaRecalculation()
+   {
+      return false;
+   }
+
+   @Override
+   public Comment getCellComment(CellAddress ref)
+   {
+      return null;
+   }
+
+   @Override
+   public Map<CellAddress, ? extends Comment> getCellComments()
+   {
+      return Collections.emptyMap();
+   }
+
+   @Override
+   public Workbook getWorkbook()
+   {
+      return workbook;
+   }
+
+   @Override
+   public String getSheetName()
+   {
+      return cellStore.getSheetName();
+   }
+
+   @Override
+   public boolean isSelected()
+   {
+      return false;
+   }
+
+   @Override
+   public List<? extends DataValidation> getDataValidations()
+   {
+      return Collections.emptyList();
+   }
+
+   @Override
+   public int getColumnOutlineLevel(int columnIndex)
+   {
+      return 0;
+   }
+
+   @Override
+   public Hyperlink getHyperlink(int row, int column)
+   {
+      return null;
+   }
+
+   @Override
+   public Hyperlink getHyperlink(CellAddress addr)
+   {
+      return null;
+   }
+
+   @Override
+   public List<? extends Hyperlink> getHyperlinkList()
+   {
+      return Collections.emptyList();
+   }
+
+   /*
+    * Iterates over the rows that have at least one value.
+    */
+   private class RowIterator implements Iterator<Row>
+   {
+      private int nextRow = nextRowFrom(0);
+
+      @Override
+      public boolean hasNext()
+      {
+         return nextRow != -1;
+      }
+
+      @Override
+      public Row next()
+      {
+         if (nextRow == -1) {
+            throw new NoSuchElementException();
+         }
+         Row row = new CellStoreRow(CellStoreSheet.this, nextRow);
+         nextRow = nextRowFrom(nextRow + 1);
+         return row;
+      }
+
+      private int nextRowFrom(int row)
+      {
+         for (int i = row; i <= cellStore.getLastRowNum(); i++) {
+            if (cellStore.hasRow(i)) {
+               return i;
+            }
+         }
+         return -1;
+      }
+   }
+}
@@ -0,0 +1,271 @@
+package org.mm.cellfie.workbook;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.CellReferenceType;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.SheetVisibility;
+
+/**
+ * A read-only Apache POI workbook backed by the {@link CellStore} of each
+ * sheet. The workbook serves the cell values to the MappingMaster data source
+ * and to the sheet views through the usual POI interfaces, without keeping
+ * the POI object model of the workbook in memory. The class and its sheet,
+ * row and cell views implement the read path only; the methods that modify
+ * the workbook, and those about features that are not kept in the store,
+ * e.g., fonts, pictures and named ranges, are left to the read-only base
+ * classes, which throw {@link UnsupportedOperationException}.
+ */
+public class CellStoreWorkbook extends ReadOnlyWorkbook
+{
+   private final List<CellStoreSheet> sheets = new ArrayList<>();
+   private final StringPool stringPool;
+   private final Map<Short, String> formatStrings;
+   private final boolean date1904;
+
+   private final Map<Short, CellStoreCellStyle> cellStyles = new ConcurrentHashMap<>();
+
+   /**
+    * Creates the workbook of the given sheet stores.
+    *
+    * @param cellStores
+    *          The cell stores in the sheet order of the workbook
+    * @param stringPool
+    *          The string pool shared by the cell stores
+    * @param formatStrings
+    *          The custom number formats by their format index. The built-in
+    *          formats are resolved by {@link BuiltinFormats}.
+    * @param date1904
+    *          True if the dates are counted from 1904 instead of 1900
+    */
+   public CellStoreWorkbook(@Nonnull List<CellStore> cellStores, @Nonnull StringPool stringPool,
+         @Nonnull Map<Short, String> formatStrings, boolean date1904)
+   {
+      for (CellStore cellStore : checkNotNull(cellStores)) {
+         sheets.add(new CellStoreSheet(this, cellStore));
+      }
+      this.stringPool = checkNotNull(stringPool);
+      this.formatStrings = checkNotNull(formatStrings);
+      this.date1904 = date1904;
+   }
+
+   public boolean isDate1904()
+   {
+      return date1904;
+   }
+
+   public StringPool getStringPool()
+   {
+      return stringPool;
+   }
+
+   /**
+    * Returns the cell store of the given sheet.
+    *
+    * @param index
+    *          The 0-based sheet index
+    * @return The cell store.
+    */
+   public CellStore getCellStore(int index)
+   {
+      return sheets.get(index).getCellStore();
+   }
+
+   /* package */ Map<Short, String> getFormatStrings()
+   {
+      return formatStrings;
+   }
+
+   /* package */ CellStyle getCellStyle(short format)
+   {
+      return cellStyles.computeIfAbsent(format, f -> new CellStoreCellStyle(f, getFormatString(f)));
+   }
+
+   /**
+    * Returns the format string of the given number format index.
+    *
+    * @param format
+    *          The number format index of a cell
+    * @return The format string, or "General" if the index is unknown.
+    */
+   public String getFormatString(short format)
+   {
+      String formatString = formatStrings.get(format);
+      if (formatString == null) {
+         formatString = BuiltinFormats.getBuiltinFormat(format);
+      }
+      return (formatString == null) ? BuiltinFormats.getBuiltinFormat(0) : formatString;
+   }
+
+   @Override
+   public int getActiveSheetIndex()
+   {
+      return 0;
+   }
+
+   @Override
+   public int getFirstVisibleTab()
+   {
+      return 0;
+   }
+
+   @Override
+   public String getSheetName(int sheet)
+   {
+      return getSheetAt(sheet).getSheetName();
+   }
+
+   @Override
+   public int getSheetIndex(String name)
+   {
+      for (int i = 0; i < sheets.size(); i++) {
+         if (sheets.get(i).getSheetName().equalsIgnoreCase(name)) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   @Override
+   public int getSheetIndex(Sheet sheet)
+   {
+      return sheets.indexOf(sheet);
+   }
+
+   @Override
+   public Iterator<Sheet> sheetIterator()
+   {
+      return Collections.<Sheet> unmodifiableList(sheets).iterator();
+   }
+
+   @Override
+   public int getNumberOfSheets()
+   {
+      return sheets.size();
+   }
+
+   @Override
+   public CellStoreSheet getSheetAt(int index)
+   {
+      return sheets.get(index);
+   }
+
+   @Override
+   public CellStoreSheet getSheet(String name)
+   {
+      int index = getSheetIndex(name);
+      return (index == -1) ? null : sheets.get(index);
+   }
+
+   @Override
+   public Font findFont(boolean bold, short color, short fontHeight, String name, boolean italic, boolean strikeout,
+         short typeOffset, byte underline)
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public int getNumCellStyles()
+   {
+      return cellStyles.size();
+   }
+
+   @Override
+   public CellStyle getCellStyleAt(int idx)
+   {
+      return getCellStyle((short) idx);
+   }
+
+   @Override
+   public void close()
+   {
+      // NO-OP: The cell stores are plain Java objects
+   }
+
+   @Override
+   public int getNumberOfNames()
+   {
+      return 0;
+   }
+
+   @Override
+   public Name getName(String name)
+   {
+      return null;
+   }
+
+   @Override
+   public List<? extends Name> getNames(String name)
+   {
+      return Collections.emptyList();
+   }
+
+   @Override
+   public List<? extends Name> getAllNames()
+   {
+      return Collections.emptyList();
+   }
+
+   @Override
+   public MissingCellPolicy getMissingCellPolicy()
+   {
+      return MissingCellPolicy.RETURN_NULL_AND_BLANK;
+   }
+
+   @Override
+   public boolean isHidden()
+   {
+      return false;
+   }
+
+   @Override
+   public boolean isSheetHidden(int sheetIx)
+   {
+      return false;
+   }
+
+   @Override
+   public boolean isSheetVeryHidden(int sheetIx)
+   {
+      return false;
+   }
+
+   @Override
+   public SheetVisibility getSheetVisibility(int sheetIx)
+   {
+      return SheetVisibility.VISIBLE;
+   }
+
+   @Override
+   public boolean getForceFormulaRecalculation()
+   {
+      return false;
+   }
+
+   @Override
+   public SpreadsheetVersion getSpreadsheetVersion()
+   {
+      return SpreadsheetVersion.EXCEL2007;
+   }
+
+   @Override
+   public CellReferenceType getCellReferenceType()
+   {
+      return CellReferenceType.A1;
+   }
+}
@@ -0,0 +1,133 @@
+package org.mm.cellfie.workbook;
+
+import static org.mm.cellfie.workbook.ReadOnlyWorkbook.readOnly;
+
+import java.time.LocalDateTime;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.RichTextString;
+
+/**
+ * The operations of a POI {@link Cell} that a cell of a
+ * {@link CellStoreWorkbook} does not support, because they modify the cell
+ * or are about features that the {@link CellStore} does not keep. They
+ * throw {@link UnsupportedOperationException}, which leaves the read path
+ * to {@link CellStoreCell}.
+ */
+abstract class ReadOnlyCell implements Cell
+{
+   @Override
+   @Deprecated
+   public void setCellType(CellType cellType)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setBlank()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellValue(double value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellValue(Date value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellValue(LocalDateTime value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellValue(Calendar value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellValue(RichTextString value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellValue(String value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellValue(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellFormula(String formula)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeFormula()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellErrorValue(byte value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellStyle(CellStyle style)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setAsActiveCell()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setCellComment(Comment comment)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeCellComment()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setHyperlink(Hyperlink link)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeHyperlink()
+   {
+      throw readOnly();
+   }
+}
@@ -0,0 +1,317 @@
+package org.mm.cellfie.workbook;
+
+import static org.mm.cellfie.workbook.ReadOnlyWorkbook.readOnly;
+import static org.mm.cellfie.workbook.ReadOnlyWorkbook.unsupported;
+
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Color;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.VerticalAlignment;
+
+/**
+ * The operations of a POI {@link CellStyle} that a cell style of a
+ * {@link CellStoreWorkbook} does not support, because they modify the style
+ * or are about features that the {@link CellStore} does not keep. They
+ * throw {@link UnsupportedOperationException}, which leaves the read path
+ * to {@link CellStoreCellStyle}.
+ */
+abstract class ReadOnlyCellStyle implements CellStyle
+{
+   @Override
+   public void setDataFormat(short fmt)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setFont(Font font)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public int getFontIndex()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   @Deprecated
+   public int getFontIndexAsInt()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setHidden(boolean hidden)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean getHidden()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setLocked(boolean locked)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean getLocked()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setQuotePrefixed(boolean quotePrefix)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean getQuotePrefixed()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setAlignment(HorizontalAlignment align)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public HorizontalAlignment getAlignment()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setWrapText(boolean wrapped)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean getWrapText()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setVerticalAlignment(VerticalAlignment align)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public VerticalAlignment getVerticalAlignment()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setRotation(short rotation)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public short getRotation()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setIndention(short indent)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public short getIndention()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setBorderLeft(BorderStyle border)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public BorderStyle getBorderLeft()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setBorderRight(BorderStyle border)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public BorderStyle getBorderRight()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setBorderTop(BorderStyle border)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public BorderStyle getBorderTop()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setBorderBottom(BorderStyle border)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public BorderStyle getBorderBottom()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setLeftBorderColor(short color)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public short getLeftBorderColor()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setRightBorderColor(short color)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public short getRightBorderColor()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setTopBorderColor(short color)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public short getTopBorderColor()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setBottomBorderColor(short color)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public short getBottomBorderColor()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setFillPattern(FillPatternType fp)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public FillPatternType getFillPattern()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setFillBackgroundColor(short bg)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setFillBackgroundColor(Color color)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public short getFillBackgroundColor()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public Color getFillBackgroundColorColor()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setFillForegroundColor(short bg)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setFillForegroundColor(Color color)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public short getFillForegroundColor()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public Color getFillForegroundColorColor()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void cloneStyleFrom(CellStyle source)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setShrinkToFit(boolean shrinkToFit)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean getShrinkToFit()
+   {
+      throw unsupported();
+   }
+}
@@ -0,0 +1,78 @@
+package org.mm.cellfie.workbook;
+
+import static org.mm.cellfie.workbook.ReadOnlyWorkbook.readOnly;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+
+/**
+ * The operations of a POI {@link Row} that a row of a
+ * {@link CellStoreWorkbook} does not support, because they modify the row
+ * or are about features that the {@link CellStore} does not keep. They
+ * throw {@link UnsupportedOperationException}, which leaves the read path
+ * to {@link CellStoreRow}.
+ */
+abstract class ReadOnlyRow implements Row
+{
+   @Override
+   public Cell createCell(int column)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public Cell createCell(int column, CellType type)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeCell(Cell cell)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setRowNum(int rowNum)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setHeight(short height)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setZeroHeight(boolean zHeight)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setHeightInPoints(float height)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setRowStyle(CellStyle style)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void shiftCellsRight(int firstShiftColumnIndex, int lastShiftColumnIndex, int step)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void shiftCellsLeft(int firstShiftColumnIndex, int lastShiftColumnIndex, int step)
+   {
+      throw readOnly();
+   }
+}
@@ -0,0 +1,608 @@
+package org.mm.cellfie.workbook;
+
+import static org.mm.cellfie.workbook.ReadOnlyWorkbook.readOnly;
+import static org.mm.cellfie.workbook.ReadOnlyWorkbook.unsupported;
+
+import java.util.Collection;
+
+import org.apache.poi.ss.usermodel.AutoFilter;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellRange;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataValidation;
+import org.apache.poi.ss.usermodel.DataValidationHelper;
+import org.apache.poi.ss.usermodel.Drawing;
+import org.apache.poi.ss.usermodel.Footer;
+import org.apache.poi.ss.usermodel.Header;
+import org.apache.poi.ss.usermodel.PageMargin;
+import org.apache.poi.ss.usermodel.PaneType;
+import org.apache.poi.ss.usermodel.PrintSetup;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.SheetConditionalFormatting;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.PaneInformation;
+
+/**
+ * The operations of a POI {@link Sheet} that a sheet of a
+ * {@link CellStoreWorkbook} does not support, because they modify the sheet
+ * or are about features that the {@link CellStore} does not keep. They
+ * throw {@link UnsupportedOperationException}, which leaves the read path
+ * to {@link CellStoreSheet}.
+ */
+abstract class ReadOnlySheet implements Sheet
+{
+   @Override
+   public Row createRow(int rownum)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeRow(Row row)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setColumnHidden(int columnIndex, boolean hidden)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setRightToLeft(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setColumnWidth(int columnIndex, int width)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public float getColumnWidthInPixels(int columnIndex)
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setDefaultColumnWidth(int width)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setDefaultRowHeight(short height)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setDefaultRowHeightInPoints(float height)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public int addMergedRegion(CellRangeAddress region)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public int addMergedRegionUnsafe(CellRangeAddress region)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void validateMergedRegions()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setVerticallyCenter(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setHorizontallyCenter(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean getHorizontallyCenter()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public boolean getVerticallyCenter()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void removeMergedRegion(int index)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeMergedRegions(Collection<Integer> indices)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setForceFormulaRecalculation(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setAutobreaks(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setDisplayGuts(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setDisplayZeros(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean isDisplayZeros()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setFitToPage(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setRowSumsBelow(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setRowSumsRight(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean getAutobreaks()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public boolean getDisplayGuts()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public boolean getFitToPage()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public boolean getRowSumsBelow()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public boolean getRowSumsRight()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public boolean isPrintGridlines()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setPrintGridlines(boolean show)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean isPrintRowAndColumnHeadings()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setPrintRowAndColumnHeadings(boolean show)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public PrintSetup getPrintSetup()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public Header getHeader()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public Footer getFooter()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setSelected(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   @Deprecated
+   public double getMargin(short margin)
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public double getMargin(PageMargin margin)
+   {
+      throw unsupported();
+   }
+
+   @Override
+   @Deprecated
+   public void setMargin(short margin, double size)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setMargin(PageMargin margin, double size)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean getProtect()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void protectSheet(String password)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean getScenarioProtect()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setZoom(int scale)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public short getTopRow()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public short getLeftCol()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void showInPane(int topRow, int leftCol)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void shiftRows(int startRow, int endRow, int n)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void shiftRows(int startRow, int endRow, int n, boolean copyRowHeight, boolean resetOriginalRowHeight)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void shiftColumns(int startColumn, int endColumn, int n)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void createFreezePane(int colSplit, int rowSplit, int leftmostColumn, int topRow)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void createFreezePane(int colSplit, int rowSplit)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   @Deprecated
+   public void createSplitPane(int xSplitPos, int ySplitPos, int leftmostColumn, int topRow, int activePane)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void createSplitPane(int xSplitPos, int ySplitPos, int leftmostColumn, int topRow, PaneType activePane)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public PaneInformation getPaneInformation()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setDisplayGridlines(boolean show)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean isDisplayGridlines()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setDisplayFormulas(boolean show)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean isDisplayFormulas()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setDisplayRowColHeadings(boolean show)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean isDisplayRowColHeadings()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setRowBreak(int row)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean isRowBroken(int row)
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void removeRowBreak(int row)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public int[] getRowBreaks()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public int[] getColumnBreaks()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setColumnBreak(int column)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public boolean isColumnBroken(int column)
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void removeColumnBreak(int column)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setColumnGroupCollapsed(int columnNumber, boolean collapsed)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void groupColumn(int fromColumn, int toColumn)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void ungroupColumn(int fromColumn, int toColumn)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void groupRow(int fromRow, int toRow)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void ungroupRow(int fromRow, int toRow)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setRowGroupCollapsed(int row, boolean collapse)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setDefaultColumnStyle(int column, CellStyle style)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void autoSizeColumn(int column)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void autoSizeColumn(int column, boolean useMergedCells)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public Drawing<?> getDrawingPatriarch()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public Drawing<?> createDrawingPatriarch()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public CellRange<? extends Cell> setArrayFormula(String formula, CellRangeAddress range)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public CellRange<? extends Cell> removeArrayFormula(Cell cell)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public DataValidationHelper getDataValidationHelper()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void addValidationData(DataValidation dataValidation)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public AutoFilter setAutoFilter(CellRangeAddress range)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public SheetConditionalFormatting getSheetConditionalFormatting()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public CellRangeAddress getRepeatingRows()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public CellRangeAddress getRepeatingColumns()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setRepeatingRows(CellRangeAddress rowRangeRef)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setRepeatingColumns(CellRangeAddress columnRangeRef)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public CellAddress getActiveCell()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setActiveCell(CellAddress address)
+   {
+      throw readOnly();
+   }
+}
@@ -0,0 +1,249 @@
+package org.mm.cellfie.workbook;
+
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.poi.ss.formula.EvaluationWorkbook;
+import org.apache.poi.ss.formula.udf.UDFFinder;
+import org.apache.poi.ss.usermodel.CellReferenceType;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.PictureData;
+import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.SheetVisibility;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * The operations of a POI {@link Workbook} that a workbook of a
+ * {@link CellStoreWorkbook} does not support, because they modify the workbook
+ * or are about features that the {@link CellStore} does not keep. They
+ * throw {@link UnsupportedOperationException}, which leaves the read path
+ * to {@link CellStoreWorkbook}.
+ */
+abstract class ReadOnlyWorkbook implements Workbook
+{
+   @Override
+   public void setActiveSheet(int sheetIndex)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setFirstVisibleTab(int sheetIndex)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setSheetOrder(String sheetname, int pos)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setSelectedTab(int index)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setSheetName(int sheet, String name)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public Sheet createSheet()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public Sheet createSheet(String sheetname)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public Sheet cloneSheet(int sheetNum)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeSheetAt(int index)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public Font createFont()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public int getNumberOfFonts()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   @Deprecated
+   public int getNumberOfFontsAsInt()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public Font getFontAt(int idx)
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public CellStyle createCellStyle()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void write(OutputStream stream)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public Name createName()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void removeName(Name name)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public int linkExternalWorkbook(String name, Workbook workbook)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setPrintArea(int sheetIndex, String reference)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setPrintArea(int sheetIndex, int startColumn, int endColumn, int startRow, int endRow)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public String getPrintArea(int sheetIndex)
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void removePrintArea(int sheetIndex)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setMissingCellPolicy(MissingCellPolicy missingCellPolicy)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public DataFormat createDataFormat()
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public int addPicture(byte[] pictureData, int format)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public List<? extends PictureData> getAllPictures()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public CreationHelper getCreationHelper()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setHidden(boolean hiddenFlag)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setSheetHidden(int sheetIx, boolean hidden)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void setSheetVisibility(int sheetIx, SheetVisibility visibility)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public void addToolPack(UDFFinder toolpack)
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setForceFormulaRecalculation(boolean value)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public int addOlePackage(byte[] oleData, String label, String fileName, String command)
+   {
+      throw readOnly();
+   }
+
+   @Override
+   public EvaluationWorkbook createEvaluationWorkbook()
+   {
+      throw unsupported();
+   }
+
+   @Override
+   public void setCellReferenceType(CellReferenceType cellReferenceType)
+   {
+      throw readOnly();
+   }
+
+   /* package */ static UnsupportedOperationException readOnly()
+   {
+      return new UnsupportedOperationException("The workbook is read-only");
+   }
+
+   /* package */ static UnsupportedOperationException unsupported()
+   {
+      return new UnsupportedOperationException("The workbook keeps the cell values only");
+   }
+}
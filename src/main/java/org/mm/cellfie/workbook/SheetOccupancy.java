@@ -0,0 +1,66 @@
+package org.mm.cellfie.workbook;
+
+/**
+ * The extent of the non-blank cells of a sheet. A cell is non-blank if it
+ * has a value other than the empty string, hence the empty strings that
+ * formulas such as =IF(A2="","",A2) leave below the data do not count. The
+ * index is computed once from the {@link CellStore} of the sheet.
+ */
+public class SheetOccupancy
+{
+   private final short[] lastCellNums; // 1 + index of the last non-blank cell, 0 if the row is blank
+   private final int lastRowNum;
+
+   /* package */ SheetOccupancy(CellStore cellStore)
+   {
+      lastCellNums = new short[cellStore.getLastRowNum() + 1];
+      int lastNonBlankRow = -1;
+      for (int row = 0; row < lastCellNums.length; row++) {
+         for (int column = cellStore.getLastCellNum(row) - 1; column >= 0; column--) {
+            if (isNonBlank(cellStore, row, column)) {
+               lastCellNums[row] = (short) (column + 1);
+               lastNonBlankRow = row;
+               break;
+            }
+         }
+      }
+      lastRowNum = lastNonBlankRow;
+   }
+
+   private static boolean isNonBlank(CellStore cellStore, int row, int column)
+   {
+      switch (cellStore.getCellType(row, column)) {
+         case CellStore.BLANK :
+            return false;
+         case CellStore.STRING :
+            return !cellStore.getStringValue(row, column).isEmpty();
+         default :
+            return true;
+      }
+   }
+
+   /**
+    * Returns the 0-based index of the last non-blank row, or -1 if the sheet
+    * is blank.
+    *
+    * @return The last row index.
+    */
+   public int getLastRowNum()
+   {
+      return lastRowNum;
+   }
+
+   /**
+    * Returns 1 plus the 0-based index of the last non-blank cell in the given
+    * row, or 0 if the row is blank.
+    */
+   public int getLastCellNum(int row)
+   {
+      return (row >= 0 && row < lastCellNums.length) ? lastCellNums[row] : 0;
+   }
+
+   public boolean isBlankRow(int row)
+   {
+      return getLastCellNum(row) == 0;
+   }
+}
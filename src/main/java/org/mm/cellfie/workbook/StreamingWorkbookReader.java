@@ -0,0 +1,329 @@
+package org.mm.cellfie.workbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads an Excel 2007+ (.xlsx) workbook with the SAX parser of the sheet XML
+ * into a {@link CellStoreWorkbook}. Unlike the POI user model, the reader
+ * never keeps the XML tree of a sheet in memory, hence the memory use is
+ * bound by the cell values only. The shared strings and the styles are read
+ * once for the whole workbook.
+ */
+public class StreamingWorkbookReader
+{
+   /**
+    * Returns true if the given file can be read by this reader.
+    *
+    * @param workbookFile
+    *          The workbook file
+    * @return True if the file is an .xlsx workbook.
+    */
+   public static boolean isSupported(@Nonnull File workbookFile)
+   {
+      return workbookFile.getName().toLowerCase().endsWith(".xlsx");
+   }
+
+   /**
+    * Reads the cell values of all the sheets in the given workbook.
+    *
+    * @param workbookFile
+    *          The .xlsx workbook file
+    * @return The workbook with the cell values.
+    * @throws IOException If the file cannot be read or is not a valid .xlsx
+    *          workbook.
+    */
+   public CellStoreWorkbook read(@Nonnull File workbookFile) throws IOException
+   {
+      return read(workbookFile, new WorkbookLoadProgress());
+   }
+
+   /**
+    * Reads the cell values of all the sheets in the given workbook and reports
+    * the sheets and the rows read to the given progress.
+    *
+    * @param workbookFile
+    *          The .xlsx workbook file
+    * @param progress
+    *          The loading progress
+    * @return The workbook with the cell values.
+    * @throws IOException If the file cannot be read or is not a valid .xlsx
+    *          workbook, or {@link java.io.InterruptedIOException} if the
+    *          loading is cancelled.
+    */
+   public CellStoreWorkbook read(@Nonnull File workbookFile, @Nonnull WorkbookLoadProgress progress)
+         throws IOException
+   {
+      OPCPackage opcPackage = open(workbookFile);
+      try {
+         XSSFReader reader = new XSSFReader(opcPackage);
+         SharedStrings sharedStrings = new ReadOnlySharedStringsTable(opcPackage);
+         StylesTable styles = reader.getStylesTable();
+         WorkbookPropertiesHandler workbookProperties = readWorkbookProperties(reader);
+         progress.setSheetCount(workbookProperties.sheetCount);
+
+         StringPool stringPool = new StringPool();
+         List<CellStore> cellStores = new ArrayList<>();
+         XSSFReader.SheetIterator sheetIterator = reader.getSheetIterator();
+         while (sheetIterator.hasNext()) {
+            try (InputStream sheetData = sheetIterator.next()) {
+               String sheetName = sheetIterator.getSheetName();
+               progress.startSheet(cellStores.size(), sheetName);
+               CellStore cellStore = new CellStore(sheetName, stringPool);
+               parse(sheetData, new SheetHandler(cellStore, sharedStrings, styles, progress));
+               cellStore.trimToSize();
+               cellStores.add(cellStore);
+            }
+         }
+         Map<Short, String> formatStrings = (styles != null) ? styles.getNumberFormats() : new HashMap<>();
+         stringPool.freeze();
+         return new CellStoreWorkbook(cellStores, stringPool, formatStrings, workbookProperties.date1904);
+      } catch (OpenXML4JException | SAXException e) {
+         progress.checkCancelled();
+         throw new IOException("Error reading workbook " + workbookFile + ": " + e.getMessage(), e);
+      } finally {
+         opcPackage.revert(); // close the package without saving
+      }
+   }
+
+   private static OPCPackage open(File workbookFile) throws IOException
+   {
+      try {
+         return OPCPackage.open(workbookFile, PackageAccess.READ);
+      } catch (OpenXML4JException e) {
+         throw new IOException("Not a valid .xlsx workbook: " + workbookFile, e);
+      }
+   }
+
+   private static WorkbookPropertiesHandler readWorkbookProperties(XSSFReader reader)
+         throws IOException, OpenXML4JException, SAXException
+   {
+      WorkbookPropertiesHandler handler = new WorkbookPropertiesHandler();
+      try (InputStream workbookData = reader.getWorkbookData()) {
+         parse(workbookData, handler);
+      }
+      return handler;
+   }
+
+   private static void parse(InputStream inputStream, DefaultHandler handler) throws IOException, SAXException
+   {
+      try {
+         XMLReader xmlReader = XMLHelper.newXMLReader();
+         xmlReader.setContentHandler(handler);
+         xmlReader.parse(new InputSource(inputStream));
+      } catch (ParserConfigurationException e) {
+         throw new SAXException("Unable to create the XML parser", e);
+      }
+   }
+
+   /*
+    * Reads the date system of the workbook from <workbookPr date1904="1"/>
+    * and counts the <sheet> elements.
+    */
+   private static class WorkbookPropertiesHandler extends DefaultHandler
+   {
+      private boolean date1904 = false;
+      private int sheetCount = 0;
+
+      @Override
+      public void startElement(String uri, String localName, String qName, Attributes attributes)
+      {
+         if ("workbookPr".equals(localName)) {
+            String value = attributes.getValue("date1904");
+            date1904 = "1".equals(value) || "true".equalsIgnoreCase(value);
+         } else if ("sheet".equals(localName)) {
+            sheetCount++;
+         }
+      }
+   }
+
+   /*
+    * Reads the <row> and <c> elements of a sheet. A cell element looks like
+    * <c r="B2" t="s" s="3"><v>12</v></c>, where the type "t" tells how to
+    * read the value "v", and the style "s" points to the number format.
+    * Inline strings are kept in <is><t>..</t></is> instead of <v>.
+    * A cell or row that cannot be read stops the parsing with an error that
+    * names the sheet and the cell, rather than loading a partial sheet.
+    */
+   private static class SheetHandler extends DefaultHandler
+   {
+      private final CellStore cellStore;
+      private final SharedStrings sharedStrings;
+      private final StylesTable styles;
+      private final WorkbookLoadProgress progress;
+
+      private final Map<Integer, Short> styleFormats = new HashMap<>();
+      private final StringBuilder text = new StringBuilder();
+
+      private int rowIndex = -1;
+      private int columnIndex = -1;
+      private String cellType;
+      private String cellStyle;
+
+      private boolean readingValue = false;
+      private boolean readingInlineText = false;
+      private boolean inPhoneticRun = false;
+
+      public SheetHandler(CellStore cellStore, SharedStrings sharedStrings, StylesTable styles,
+            WorkbookLoadProgress progress)
+      {
+         this.cellStore = cellStore;
+         this.sharedStrings = sharedStrings;
+         this.styles = styles;
+         this.progress = progress;
+      }
+
+      @Override
+      public void startElement(String uri, String localName, String qName, Attributes attributes)
+            throws SAXException
+      {
+         switch (localName) {
+            case "row" :
+               if (progress.isCancelled()) {
+                  throw new SAXException("The workbook loading was cancelled");
+               }
+               progress.addRows(1);
+               String rowNumber = attributes.getValue("r");
+               try {
+                  rowIndex = (rowNumber != null) ? Integer.parseInt(rowNumber) - 1 : rowIndex + 1;
+               } catch (NumberFormatException e) {
+                  throw new SAXException(String.format("Malformed row number '%s' in sheet '%s'", rowNumber,
+                        cellStore.getSheetName()), e);
+               }
+               columnIndex = -1;
+               break;
+            case "c" :
+               String cellReference = attributes.getValue("r");
+               columnIndex = (cellReference != null) ? getColumnIndex(cellReference) : columnIndex + 1;
+               cellType = attributes.getValue("t");
+               cellStyle = attributes.getValue("s");
+               text.setLength(0);
+               break;
+            case "v" :
+               readingValue = true;
+               break;
+            case "rPh" :
+               inPhoneticRun = true;
+               break;
+            case "t" :
+               readingInlineText = !inPhoneticRun;
+               break;
+            default :
+               break;
+         }
+      }
+
+      @Override
+      public void endElement(String uri, String localName, String qName) throws SAXException
+      {
+         switch (localName) {
+            case "c" :
+               try {
+                  storeCell();
+               } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                  throw new SAXException(String.format("Malformed cell %s in sheet '%s': %s",
+                        new CellReference(rowIndex, columnIndex).formatAsString(), cellStore.getSheetName(),
+                        e.getMessage()), e);
+               }
+               break;
+            case "v" :
+               readingValue = false;
+               break;
+            case "rPh" :
+               inPhoneticRun = false;
+               break;
+            case "t" :
+               readingInlineText = false;
+               break;
+            default :
+               break;
+         }
+      }
+
+      @Override
+      public void characters(char[] ch, int start, int length)
+      {
+         if (readingValue || readingInlineText) {
+            text.append(ch, start, length);
+         }
+      }
+
+      private void storeCell()
+      {
+         String value = text.toString();
+         if (cellType == null || "n".equals(cellType)) {
+            if (!value.isEmpty()) {
+               cellStore.setNumeric(rowIndex, columnIndex, Double.parseDouble(value), getFormat(cellStyle));
+            }
+            return;
+         }
+         switch (cellType) {
+            case "s" :
+               String sharedString = sharedStrings.getItemAt(Integer.parseInt(value)).getString();
+               cellStore.setString(rowIndex, columnIndex, sharedString);
+               break;
+            case "inlineStr" :
+            case "str" : // the result of a string formula
+            case "d" : // an ISO 8601 date, which Excel itself does not write
+               cellStore.setString(rowIndex, columnIndex, value);
+               break;
+            case "b" :
+               cellStore.setBoolean(rowIndex, columnIndex, "1".equals(value));
+               break;
+            case "e" :
+               cellStore.setError(rowIndex, columnIndex, value);
+               break;
+            default :
+               break;
+         }
+      }
+
+      private short getFormat(String styleIndex)
+      {
+         if (styleIndex == null || styles == null) {
+            return 0;
+         }
+         return styleFormats.computeIfAbsent(Integer.parseInt(styleIndex), index -> {
+            XSSFCellStyle style = styles.getStyleAt(index);
+            return (style != null) ? style.getDataFormat() : 0;
+         });
+      }
+
+      private static int getColumnIndex(String cellReference)
+      {
+         int column = 0;
+         for (int i = 0; i < cellReference.length(); i++) {
+            char ch = cellReference.charAt(i);
+            if (ch < 'A' || ch > 'Z') {
+               break;
+            }
+            column = column * 26 + (ch - 'A' + 1);
+         }
+         return column - 1;
+      }
+   }
+}
@@ -0,0 +1,87 @@
+package org.mm.cellfie.workbook;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The distinct strings of a workbook. Each string is kept once and the cell
+ * stores refer to it by its index, such that a category code repeated in a
+ * hundred thousand rows costs one string and an int per row.
+ * <p>
+ * The pool is filled while the workbook is read and frozen afterwards, which
+ * drops the lookup table used for the deduplication. A frozen pool is
+ * read-only and can be shared by several threads.
+ */
+public class StringPool
+{
+   private static final int INITIAL_CAPACITY = 256;
+
+   private Map<String, Integer> indexes = new HashMap<>();
+   private String[] strings = new String[INITIAL_CAPACITY];
+   private int size = 0;
+
+   public StringPool()
+   {
+      // NO-OP
+   }
+
+   /**
+    * Creates a frozen pool of the given strings, e.g., the strings read from
+    * a workbook snapshot.
+    */
+   /* package */ StringPool(@Nonnull String[] strings)
+   {
+      this.indexes = null;
+      this.strings = checkNotNull(strings);
+      this.size = strings.length;
+   }
+
+   /**
+    * Adds the given string to the pool, unless an equal string is already
+    * there, and returns its index.
+    *
+    * @param string
+    *          The string to add
+    * @return The index of the string in the pool.
+    */
+   public int intern(@Nonnull String string)
+   {
+      checkState(indexes != null, "The string pool is frozen");
+      Integer index = indexes.get(checkNotNull(string));
+      if (index == null) {
+         if (size == strings.length) {
+            strings = Arrays.copyOf(strings, size + (size >> 1));
+         }
+         index = size;
+         strings[size++] = string;
+         indexes.put(string, index);
+      }
+      return index;
+   }
+
+   public String get(int index)
+   {
+      return strings[index];
+   }
+
+   public int size()
+   {
+      return size;
+   }
+
+   /**
+    * Ends the loading of the pool. The lookup table is released and the
+    * string array is trimmed to the number of strings.
+    */
+   public void freeze()
+   {
+      indexes = null;
+      strings = Arrays.copyOf(strings, size);
+   }
+}
@@ -0,0 +1,142 @@
+package org.mm.cellfie.workbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Reads a workbook with the POI user model and copies its cell values into a
+ * {@link CellStoreWorkbook}. This is used for the formats that the
+ * {@link StreamingWorkbookReader} does not support, i.e., the Excel 97-2003
+ * (.xls) workbooks. The POI workbook is closed once the values are copied.
+ */
+public class UserModelWorkbookReader
+{
+   /**
+    * Reads the cell values of all the sheets in the given workbook.
+    *
+    * @param workbookFile
+    *          The workbook file
+    * @return The workbook with the cell values.
+    * @throws IOException If the file cannot be read or is not a workbook.
+    */
+   public CellStoreWorkbook read(@Nonnull File workbookFile) throws IOException
+   {
+      return read(workbookFile, new WorkbookLoadProgress());
+   }
+
+   /**
+    * Reads the cell values of all the sheets in the given workbook and reports
+    * the sheets and the rows copied to the given progress.
+    *
+    * @param workbookFile
+    *          The workbook file
+    * @param progress
+    *          The loading progress
+    * @return The workbook with the cell values.
+    * @throws IOException If the file cannot be read or is not a workbook, or
+    *          {@link java.io.InterruptedIOException} if the loading is
+    *          cancelled.
+    */
+   public CellStoreWorkbook read(@Nonnull File workbookFile, @Nonnull WorkbookLoadProgress progress)
+         throws IOException
+   {
+      try (Workbook workbook = WorkbookFactory.create(workbookFile, null, true)) {
+         return copy(workbook, progress);
+      }
+   }
+
+   /**
+    * Copies the cell values of the given workbook. The formula cells are
+    * copied by their cached result.
+    *
+    * @param workbook
+    *          The POI workbook
+    * @param progress
+    *          The loading progress
+    * @return The workbook with the cell values.
+    * @throws InterruptedIOException If the loading is cancelled.
+    */
+   public CellStoreWorkbook copy(@Nonnull Workbook workbook, @Nonnull WorkbookLoadProgress progress)
+         throws InterruptedIOException
+   {
+      StringPool stringPool = new StringPool();
+      Map<Short, String> formatStrings = new HashMap<>();
+      List<CellStore> cellStores = new ArrayList<>();
+      progress.setSheetCount(workbook.getNumberOfSheets());
+      for (Sheet sheet : workbook) {
+         progress.startSheet(cellStores.size(), sheet.getSheetName());
+         CellStore cellStore = new CellStore(sheet.getSheetName(), stringPool);
+         for (Row row : sheet) {
+            progress.checkCancelled();
+            progress.addRows(1);
+            for (Cell cell : row) {
+               copyCell(cell, cellStore, formatStrings);
+            }
+         }
+         cellStore.trimToSize();
+         cellStores.add(cellStore);
+      }
+      stringPool.freeze();
+      return new CellStoreWorkbook(cellStores, stringPool, formatStrings, isDate1904(workbook));
+   }
+
+   private static void copyCell(Cell cell, CellStore cellStore, Map<Short, String> formatStrings)
+   {
+      int row = cell.getRowIndex();
+      int column = cell.getColumnIndex();
+      CellType cellType = cell.getCellType();
+      if (cellType == CellType.FORMULA) {
+         cellType = cell.getCachedFormulaResultType();
+      }
+      switch (cellType) {
+         case NUMERIC :
+            CellStyle style = cell.getCellStyle();
+            short format = style.getDataFormat();
+            if (format != 0) {
+               formatStrings.putIfAbsent(format, style.getDataFormatString());
+            }
+            cellStore.setNumeric(row, column, cell.getNumericCellValue(), format);
+            break;
+         case STRING :
+            cellStore.setString(row, column, cell.getStringCellValue());
+            break;
+         case BOOLEAN :
+            cellStore.setBoolean(row, column, cell.getBooleanCellValue());
+            break;
+         case ERROR :
+            cellStore.setError(row, column, FormulaError.forInt(cell.getErrorCellValue()).getString());
+            break;
+         default :
+            break;
+      }
+   }
+
+   private static boolean isDate1904(Workbook workbook)
+   {
+      if (workbook instanceof HSSFWorkbook) {
+         return ((HSSFWorkbook) workbook).getInternalWorkbook().isUsing1904DateWindowing();
+      }
+      if (workbook instanceof XSSFWorkbook) {
+         return ((XSSFWorkbook) workbook).isDate1904();
+      }
+      return false;
+   }
+}
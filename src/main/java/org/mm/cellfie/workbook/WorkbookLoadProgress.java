@@ -0,0 +1,92 @@
+package org.mm.cellfie.workbook;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Keeps track of the sheet and the number of rows read while a workbook is
+ * loaded, and carries the cancellation request from the user. The progress is
+ * updated by the loading thread and read by the user interface.
+ */
+public class WorkbookLoadProgress
+{
+   private volatile int sheetCount = 0;
+   private volatile int sheetIndex = -1;
+   private volatile String sheetName = "";
+   private volatile long rowCount = 0;
+
+   private volatile boolean cancelled = false;
+
+   /**
+    * Returns the number of sheets in the workbook, or 0 if it is not known
+    * yet.
+    *
+    * @return The sheet count.
+    */
+   public int getSheetCount()
+   {
+      return sheetCount;
+   }
+
+   /**
+    * Returns the 0-based index of the sheet being read, or -1 if no sheet is
+    * read yet.
+    *
+    * @return The sheet index.
+    */
+   public int getSheetIndex()
+   {
+      return sheetIndex;
+   }
+
+   public String getSheetName()
+   {
+      return sheetName;
+   }
+
+   /**
+    * Returns the number of rows read so far from all the sheets.
+    *
+    * @return The row count.
+    */
+   public long getRowCount()
+   {
+      return rowCount;
+   }
+
+   /**
+    * Requests the loading to stop. The reader stops at the next row and the
+    * loading fails with an {@link InterruptedIOException}.
+    */
+   public void cancel()
+   {
+      cancelled = true;
+   }
+
+   public boolean isCancelled()
+   {
+      return cancelled;
+   }
+
+   /* package */ void setSheetCount(int sheetCount)
+   {
+      this.sheetCount = sheetCount;
+   }
+
+   /* package */ void startSheet(int sheetIndex, String sheetName)
+   {
+      this.sheetIndex = sheetIndex;
+      this.sheetName = sheetName;
+   }
+
+   /* package */ void addRows(int count)
+   {
+      rowCount += count; // written by the loading thread only
+   }
+
+   /* package */ void checkCancelled() throws InterruptedIOException
+   {
+      if (cancelled) {
+         throw new InterruptedIOException("The workbook loading was cancelled");
+      }
+   }
+}
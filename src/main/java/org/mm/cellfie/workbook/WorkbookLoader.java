@@ -0,0 +1,164 @@
+package org.mm.cellfie.workbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Reads a workbook into the cell stores. The .xlsx workbooks are read by the
+ * {@link StreamingWorkbookReader} and the others by the
+ * {@link UserModelWorkbookReader}. A workbook that was read before is loaded
+ * from its {@link WorkbookSnapshot} instead, as long as the workbook file has
+ * not changed since.
+ * <p>
+ * The cell stores implement the read-only part of the POI interfaces that
+ * rendering needs. A small workbook is still rendered against the POI user
+ * model, see {@link #openForRendering(File, CellStoreWorkbook)}, such that a
+ * POI method the cell stores lack cannot fail its rendering.
+ */
+public final class WorkbookLoader
+{
+   /**
+    * The size in bytes of the largest workbook file that is rendered against
+    * the POI user model instead of the cell stores.
+    */
+   public static final long USER_MODEL_RENDERING_THRESHOLD = 2 * 1024 * 1024;
+
+   private WorkbookLoader()
+   {
+      // NO-OP
+   }
+
+   /**
+    * Reads the cell values of the given workbook.
+    *
+    * @param workbookFile
+    *          The workbook file
+    * @return The workbook with the cell values.
+    * @throws IOException If the file cannot be read or is not a workbook.
+    */
+   public static CellStoreWorkbook load(@Nonnull File workbookFile) throws IOException
+   {
+      return load(workbookFile, new WorkbookLoadProgress());
+   }
+
+   /**
+    * Reads the cell values of the given workbook and reports the sheets and
+    * the rows read to the given progress.
+    *
+    * @param workbookFile
+    *          The workbook file
+    * @param progress
+    *          The loading progress
+    * @return The workbook with the cell values.
+    * @throws IOException If the file cannot be read or is not a workbook, or
+    *          {@link java.io.InterruptedIOException} if the loading is
+    *          cancelled.
+    */
+   public static CellStoreWorkbook load(@Nonnull File workbookFile, @Nonnull WorkbookLoadProgress progress)
+         throws IOException
+   {
+      return load(workbookFile, new WorkbookSnapshot(WorkbookSnapshot.getDefaultDirectory()), progress);
+   }
+
+   /**
+    * Reads the cell values of the given workbook from its snapshot, or from
+    * the workbook file if the snapshot is missing or out of date. In the
+    * latter case a new snapshot is written. The snapshot is a cache only,
+    * hence an error while reading or writing it does not fail the loading.
+    *
+    * @param workbookFile
+    *          The workbook file
+    * @param snapshot
+    *          The snapshot store
+    * @param progress
+    *          The loading progress
+    * @return The workbook with the cell values.
+    * @throws IOException If the file cannot be read or is not a workbook, or
+    *          {@link java.io.InterruptedIOException} if the loading is
+    *          cancelled.
+    */
+   public static CellStoreWorkbook load(@Nonnull File workbookFile, @Nonnull WorkbookSnapshot snapshot,
+         @Nonnull WorkbookLoadProgress progress) throws IOException
+   {
+      try {
+         CellStoreWorkbook workbook = snapshot.read(workbookFile, progress);
+         if (workbook != null) {
+            return workbook;
+         }
+      } catch (IOException e) {
+         // Fall through and read the workbook again
+      }
+      CellStoreWorkbook workbook = read(workbookFile, progress);
+      try {
+         snapshot.write(workbookFile, workbook);
+      } catch (IOException e) {
+         // Keep the workbook without a snapshot, e.g., on a read-only home directory
+      }
+      return workbook;
+   }
+
+   /**
+    * Returns the workbook to render the rules against. A workbook file
+    * smaller than {@link #USER_MODEL_RENDERING_THRESHOLD} is opened read-only
+    * with the POI user model, which fits in memory at that size. A larger
+    * workbook is rendered against the given cell stores.
+    *
+    * @param workbookFile
+    *          The workbook file
+    * @param workbook
+    *          The cell values read from the file
+    * @return The POI workbook or the given cell store workbook. The caller
+    *         closes it once the rendering is done.
+    * @throws IOException If the file cannot be read or is not a workbook.
+    */
+   public static Workbook openForRendering(@Nonnull File workbookFile, @Nonnull CellStoreWorkbook workbook)
+         throws IOException
+   {
+      if (workbookFile.length() < USER_MODEL_RENDERING_THRESHOLD) {
+         return WorkbookFactory.create(workbookFile, null, true);
+      }
+      return workbook;
+   }
+
+   private static CellStoreWorkbook read(File workbookFile, WorkbookLoadProgress progress) throws IOException
+   {
+      if (StreamingWorkbookReader.isSupported(workbookFile)) {
+         return new StreamingWorkbookReader().read(workbookFile, progress);
+      }
+      return new UserModelWorkbookReader().read(workbookFile, progress);
+   }
+
+   /**
+    * Writes a workbook that has the same sheets as the given workbook, but no
+    * cells, into a temporary file. MappingMaster always loads the workbook at
+    * the location given to {@link org.mm.app.MMApplicationFactory} with the
+    * POI user model, hence Cellfie passes this empty copy instead and keeps
+    * the cell values in its own data source.
+    *
+    * @param workbook
+    *          The workbook to copy the sheet names from
+    * @return The temporary file, which is deleted when the JVM exits.
+    * @throws IOException If the file cannot be written.
+    */
+   public static File createEmptyCopy(@Nonnull Workbook workbook) throws IOException
+   {
+      File emptyCopy = File.createTempFile("cellfie-", ".xlsx");
+      emptyCopy.deleteOnExit();
+      try (XSSFWorkbook copy = new XSSFWorkbook(); OutputStream out = new FileOutputStream(emptyCopy)) {
+         for (Sheet sheet : workbook) {
+            copy.createSheet(sheet.getSheetName());
+         }
+         copy.write(out);
+      }
+      return emptyCopy;
+   }
+}
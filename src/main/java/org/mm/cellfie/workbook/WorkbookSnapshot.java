@@ -0,0 +1,348 @@
+package org.mm.cellfie.workbook;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A binary snapshot of the cell values of a workbook, such that opening the
+ * same workbook again does not unzip and parse it. The snapshot of a workbook
+ * is kept in the snapshot directory under a name derived from the workbook
+ * path. It records the path, the size, the last-modified time and a content
+ * hash of the workbook file, and it is used only if the workbook still has
+ * the same size and either the same last-modified time or the same content.
+ * The content hash of an .xlsx workbook is taken from the checksums in its
+ * zip directory, hence checking it does not read the workbook again.
+ * <p>
+ * The snapshot is read through a memory-mapped buffer, from which the column
+ * arrays of the cell stores are copied in bulk. A snapshot written by another
+ * version of the format is ignored and replaced.
+ * <p>
+ * The snapshot directory is kept within a number of snapshots, a total size
+ * and an age. Reading a snapshot marks it as recently used, and writing a
+ * snapshot evicts the least recently used ones beyond these limits.
+ */
+public class WorkbookSnapshot
+{
+   private static final int MAGIC = 0x43454C46; // "CELF"
+   private static final int VERSION = 2;
+
+   private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+   public static final int DEFAULT_MAX_SNAPSHOT_COUNT = 50;
+   public static final long DEFAULT_MAX_TOTAL_SIZE = 2L << 30; // 2 GB
+   public static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toMillis(30);
+
+   private final File snapshotDirectory;
+   private final int maxSnapshotCount;
+   private final long maxTotalSize;
+   private final long maxAge;
+
+   /**
+    * Creates the snapshots in the given directory, which is created when the
+    * first snapshot is written, with the default limits.
+    *
+    * @param snapshotDirectory
+    *          The directory of the snapshot files
+    */
+   public WorkbookSnapshot(@Nonnull File snapshotDirectory)
+   {
+      this(snapshotDirectory, DEFAULT_MAX_SNAPSHOT_COUNT, DEFAULT_MAX_TOTAL_SIZE, DEFAULT_MAX_AGE);
+   }
+
+   /**
+    * Creates the snapshots in the given directory, which is created when the
+    * first snapshot is written.
+    *
+    * @param snapshotDirectory
+    *          The directory of the snapshot files
+    * @param maxSnapshotCount
+    *          The number of snapshots to keep
+    * @param maxTotalSize
+    *          The total size in bytes of the snapshots to keep
+    * @param maxAge
+    *          The time in milliseconds after which an unused snapshot is
+    *          deleted
+    */
+   public WorkbookSnapshot(@Nonnull File snapshotDirectory, int maxSnapshotCount, long maxTotalSize, long maxAge)
+   {
+      this.snapshotDirectory = checkNotNull(snapshotDirectory);
+      this.maxSnapshotCount = maxSnapshotCount;
+      this.maxTotalSize = maxTotalSize;
+      this.maxAge = maxAge;
+   }
+
+   /**
+    * Returns the default snapshot directory, i.e., .cellfie/snapshots in the
+    * user home directory.
+    *
+    * @return The default snapshot directory.
+    */
+   public static File getDefaultDirectory()
+   {
+      return new File(new File(System.getProperty("user.home"), ".cellfie"), "snapshots");
+   }
+
+   /**
+    * Reads the snapshot of the given workbook.
+    *
+    * @param workbookFile
+    *          The workbook file
+    * @return The workbook with the cell values, or null if there is no
+    *         snapshot of the current content of the workbook.
+    * @throws IOException If the snapshot cannot be read or is corrupted.
+    */
+   @Nullable
+   public CellStoreWorkbook read(@Nonnull File workbookFile) throws IOException
+   {
+      return read(workbookFile, new WorkbookLoadProgress());
+   }
+
+   /**
+    * Reads the snapshot of the given workbook and reports the sheets and the
+    * rows read to the given progress.
+    *
+    * @param workbookFile
+    *          The workbook file
+    * @param progress
+    *          The loading progress
+    * @return The workbook with the cell values, or null if there is no
+    *         snapshot of the current content of the workbook.
+    * @throws IOException If the snapshot cannot be read or is corrupted.
+    */
+   @Nullable
+   public CellStoreWorkbook read(@Nonnull File workbookFile, @Nonnull WorkbookLoadProgress progress)
+         throws IOException
+   {
+      File snapshotFile = getSnapshotFile(workbookFile);
+      if (!snapshotFile.isFile()) {
+         return null;
+      }
+      try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+         ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+         }
+         String path = readString(buffer);
+         long size = buffer.getLong();
+         long lastModified = buffer.getLong();
+         byte[] contentHash = readBytes(buffer);
+         if (!path.equals(workbookFile.getAbsolutePath()) || size != workbookFile.length()) {
+            return null;
+         }
+         if (lastModified != workbookFile.lastModified() && !Arrays.equals(contentHash, hash(workbookFile))) {
+            return null;
+         }
+         CellStoreWorkbook workbook = readWorkbook(buffer, progress);
+         snapshotFile.setLastModified(System.currentTimeMillis()); // mark as recently used
+         return workbook;
+      } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+         throw new IOException("Corrupted workbook snapshot " + snapshotFile, e);
+      }
+   }
+
+   /**
+    * Writes the snapshot of the given workbook, replacing the previous one,
+    * and then prunes the snapshot directory.
+    *
+    * @param workbookFile
+    *          The workbook file the cell values were read from
+    * @param workbook
+    *          The workbook with the cell values
+    * @throws IOException If the snapshot cannot be written.
+    */
+   public void write(@Nonnull File workbookFile, @Nonnull CellStoreWorkbook workbook) throws IOException
+   {
+      Files.createDirectories(snapshotDirectory.toPath());
+      File snapshotFile = getSnapshotFile(workbookFile);
+      File partFile = File.createTempFile("cellfie-", ".part", snapshotDirectory);
+      try {
+         try (DataOutputStream out = new DataOutputStream(
+               new BufferedOutputStream(new FileOutputStream(partFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, workbookFile.getAbsolutePath());
+            out.writeLong(workbookFile.length());
+            out.writeLong(workbookFile.lastModified());
+            writeBytes(out, hash(workbookFile));
+            writeWorkbook(out, workbook);
+         }
+         Files.move(partFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+         Files.deleteIfExists(partFile.toPath());
+      }
+      prune();
+   }
+
+   /**
+    * Deletes the snapshots that have not been used within the maximum age,
+    * and then the least recently used snapshots until the directory is
+    * within the maximum count and total size.
+    */
+   public void prune()
+   {
+      File[] snapshotFiles = snapshotDirectory.listFiles((dir, name) -> name.endsWith(SNAPSHOT_EXTENSION));
+      if (snapshotFiles == null) {
+         return;
+      }
+      Arrays.sort(snapshotFiles, Comparator.comparingLong(File::lastModified).reversed());
+      long oldestKept = System.currentTimeMillis() - maxAge;
+      long totalSize = 0;
+      int keptCount = 0;
+      for (File snapshotFile : snapshotFiles) {
+         long size = snapshotFile.length();
+         if (keptCount < maxSnapshotCount && totalSize + size <= maxTotalSize
+               && snapshotFile.lastModified() >= oldestKept) {
+            keptCount++;
+            totalSize += size;
+         } else {
+            snapshotFile.delete(); // a file in use by another instance is retried on the next write
+         }
+      }
+   }
+
+   private File getSnapshotFile(File workbookFile)
+   {
+      String pathHash = Hashing.murmur3_128().hashString(workbookFile.getAbsolutePath(), StandardCharsets.UTF_8)
+            .toString();
+      return new File(snapshotDirectory, pathHash + SNAPSHOT_EXTENSION);
+   }
+
+   /*
+    * The parts of an .xlsx workbook are zip entries, whose CRC-32 and size are
+    * kept in the central directory at the end of the file. Hashing these
+    * fingerprints the content while reading only the directory. The other
+    * formats, i.e., the .xls workbooks, are hashed in full.
+    */
+   private static byte[] hash(File workbookFile) throws IOException
+   {
+      if (!isZipFile(workbookFile)) {
+         return com.google.common.io.Files.asByteSource(workbookFile).hash(Hashing.murmur3_128()).asBytes();
+      }
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      try (ZipFile zipFile = new ZipFile(workbookFile)) {
+         Enumeration<? extends ZipEntry> entries = zipFile.entries();
+         while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            hasher.putString(entry.getName(), StandardCharsets.UTF_8);
+            hasher.putLong(entry.getCrc());
+            hasher.putLong(entry.getSize());
+         }
+      }
+      return hasher.hash().asBytes();
+   }
+
+   private static boolean isZipFile(File workbookFile) throws IOException
+   {
+      byte[] header = new byte[4];
+      try (InputStream in = new FileInputStream(workbookFile)) {
+         return in.read(header) == header.length
+               && header[0] == 'P' && header[1] == 'K' && header[2] == 3 && header[3] == 4;
+      }
+   }
+
+   private static void writeWorkbook(DataOutputStream out, CellStoreWorkbook workbook) throws IOException
+   {
+      out.writeBoolean(workbook.isDate1904());
+      Map<Short, String> formatStrings = workbook.getFormatStrings();
+      out.writeInt(formatStrings.size());
+      for (Map.Entry<Short, String> entry : formatStrings.entrySet()) {
+         out.writeShort(entry.getKey());
+         writeString(out, entry.getValue());
+      }
+      StringPool stringPool = workbook.getStringPool();
+      out.writeInt(stringPool.size());
+      for (int i = 0; i < stringPool.size(); i++) {
+         writeString(out, stringPool.get(i));
+      }
+      out.writeInt(workbook.getNumberOfSheets());
+      for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+         CellStore cellStore = workbook.getCellStore(i);
+         writeString(out, cellStore.getSheetName());
+         cellStore.writeTo(out);
+      }
+   }
+
+   private static CellStoreWorkbook readWorkbook(ByteBuffer buffer, WorkbookLoadProgress progress)
+   {
+      boolean date1904 = buffer.get() != 0;
+      int formatCount = buffer.getInt();
+      Map<Short, String> formatStrings = new HashMap<>();
+      for (int i = 0; i < formatCount; i++) {
+         short format = buffer.getShort();
+         formatStrings.put(format, readString(buffer));
+      }
+      String[] strings = new String[buffer.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+         strings[i] = readString(buffer);
+      }
+      StringPool stringPool = new StringPool(strings);
+      int sheetCount = buffer.getInt();
+      progress.setSheetCount(sheetCount);
+      List<CellStore> cellStores = new ArrayList<>(sheetCount);
+      for (int i = 0; i < sheetCount; i++) {
+         String sheetName = readString(buffer);
+         progress.startSheet(i, sheetName);
+         CellStore cellStore = new CellStore(sheetName, stringPool, buffer);
+         progress.addRows(cellStore.getRowCount());
+         cellStores.add(cellStore);
+      }
+      return new CellStoreWorkbook(cellStores, stringPool, formatStrings, date1904);
+   }
+
+   /*
+    * The strings are written as UTF-8 bytes after their byte count, because
+    * DataOutput.writeUTF() is limited to 64 KB and a cell can hold more.
+    */
+   private static void writeString(DataOutputStream out, String string) throws IOException
+   {
+      writeBytes(out, string.getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException
+   {
+      out.writeInt(bytes.length);
+      out.write(bytes);
+   }
+
+   private static String readString(ByteBuffer buffer)
+   {
+      return new String(readBytes(buffer), StandardCharsets.UTF_8);
+   }
+
+   private static byte[] readBytes(ByteBuffer buffer)
+   {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      return bytes;
+   }
+}
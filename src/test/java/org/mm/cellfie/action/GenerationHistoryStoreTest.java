@@ -0,0 +1,162 @@
+package org.mm.cellfie.action;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mm.cellfie.engine.AxiomSink;
+import org.mm.cellfie.engine.CellRange;
+import org.mm.cellfie.engine.CompiledRuleCache;
+import org.mm.cellfie.engine.EvaluationResult;
+import org.mm.cellfie.engine.GenerationChangeSet;
+import org.mm.cellfie.engine.GenerationHistory;
+import org.mm.cellfie.engine.GenerationProgress;
+import org.mm.cellfie.engine.InMemoryAxiomSink;
+import org.mm.cellfie.engine.IncrementalEvaluator;
+import org.mm.cellfie.engine.RuleEvaluator;
+import org.mm.core.settings.ReferenceSettings;
+import org.mm.parser.node.MMExpressionNode;
+import org.mm.renderer.Renderer;
+import org.mm.ss.SpreadSheetDataSource;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+public class GenerationHistoryStoreTest
+{
+   private static final String RULE = "Individual: @A* Types: Person";
+
+   private static final String NAMESPACE = "http://example.org/test#";
+
+   private static final OWLDataFactory dataFactory = OWLManager.getOWLDataFactory();
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private OWLOntologyManager ontologyManager;
+   private OWLOntology ontology;
+   private File workbookFile;
+   private RuleEvaluator ruleEvaluator;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      ontologyManager = OWLManager.createOWLOntologyManager();
+      ontology = ontologyManager.createOntology(IRI.create("http://example.org/test"));
+      workbookFile = temporaryFolder.newFile("data.xlsx");
+      writeWorkbook("Alice", "Bob", "Carol");
+      ruleEvaluator = new CellValueEvaluator(new CompiledRuleCache().compile(RULE, new ReferenceSettings()));
+   }
+
+   @Test
+   public void testChangedRowIsTheOnlyRowEvaluatedOnTheNextRun() throws Exception
+   {
+      GenerationHistoryStore store = new GenerationHistoryStore();
+      InMemoryAxiomSink sink = new InMemoryAxiomSink();
+      commit(store.get(ontology, workbookFile), run(store.get(ontology, workbookFile), sink), sink.getAxioms());
+      writeWorkbook("Alice", "Bart", "Carol");
+
+      File samePath = new File(new File(temporaryFolder.getRoot(), "subfolder"), "../data.xlsx");
+      GenerationChangeSet changeSet = run(store.get(ontology, samePath), new InMemoryAxiomSink());
+      assertEquals(1, changeSet.getEvaluatedRowCount());
+      assertEquals(2, changeSet.getReusedRowCount());
+      assertEquals(Collections.singleton(assertion("Bob")), changeSet.getRemovals());
+   }
+
+   @Test
+   public void testHistoriesAreKeptPerWorkbookAndOntology() throws Exception
+   {
+      GenerationHistoryStore store = new GenerationHistoryStore();
+      GenerationHistory history = store.get(ontology, workbookFile);
+      assertSame(history, store.get(ontology, workbookFile.getAbsoluteFile()));
+      assertNotSame(history, store.get(ontology, temporaryFolder.newFile("other.xlsx")));
+      OWLOntology otherOntology = ontologyManager.createOntology(IRI.create("http://example.org/other"));
+      assertNotSame(history, store.get(otherOntology, workbookFile));
+   }
+
+   /*
+    * Reads the workbook from its file, as a new Cellfie dialog does, and
+    * evaluates the rule incrementally.
+    */
+   private GenerationChangeSet run(GenerationHistory history, AxiomSink sink) throws IOException
+   {
+      CellRange range = new CellRange("Data", 1, 1, 1, 3);
+      try (InputStream in = new FileInputStream(workbookFile); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+         IncrementalEvaluator evaluator = new IncrementalEvaluator(history);
+         evaluator.evaluate(RULE, ruleEvaluator, range, new SpreadSheetDataSource(workbook), null, null,
+               sink, new EvaluationResult(), new GenerationProgress(range.getCellCount()));
+         return evaluator.getChangeSet();
+      }
+   }
+
+   private static void commit(GenerationHistory history, GenerationChangeSet changeSet, Set<OWLAxiom> addedAxioms)
+   {
+      history.removeOwnedAxioms(changeSet.getRemovals());
+      history.addOwnedAxioms(addedAxioms);
+      history.accept(changeSet);
+   }
+
+   private void writeWorkbook(String... values) throws IOException
+   {
+      try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(workbookFile)) {
+         Sheet sheet = workbook.createSheet("Data");
+         for (int i = 0; i < values.length; i++) {
+            sheet.createRow(i).createCell(0).setCellValue(values[i]);
+         }
+         workbook.write(out);
+      }
+   }
+
+   private static OWLAxiom assertion(String name)
+   {
+      return dataFactory.getOWLClassAssertionAxiom(dataFactory.getOWLClass(IRI.create(NAMESPACE + "Person")),
+            dataFactory.getOWLNamedIndividual(IRI.create(NAMESPACE + name)));
+   }
+
+   /**
+    * Asserts a person named after the value of each cell, instead of
+    * rendering the rule.
+    */
+   private static class CellValueEvaluator extends RuleEvaluator
+   {
+      public CellValueEvaluator(MMExpressionNode ruleNode)
+      {
+         super(ruleNode);
+      }
+
+      @Override
+      public void evaluate(CellRange range, SpreadSheetDataSource dataSource, Renderer renderer, Renderer logRenderer,
+            AxiomSink axiomSink, EvaluationResult result, GenerationProgress progress)
+      {
+         Sheet sheet = dataSource.getWorkbook().getSheet(range.getSheetName());
+         for (int row = range.getStartRow(); row <= range.getEndRow(); row++) {
+            Row sheetRow = sheet.getRow(row - 1);
+            Cell cell = (sheetRow != null) ? sheetRow.getCell(0) : null;
+            if (cell != null) {
+               axiomSink.add(Collections.singleton(assertion(cell.getStringCellValue())));
+            }
+         }
+         progress.addProcessedCells(range.getCellCount());
+      }
+   }
+}
@@ -0,0 +1,111 @@
+package org.mm.cellfie.action;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.protege.editor.owl.model.history.HistoryManager;
+import org.protege.editor.owl.model.history.HistoryManagerImpl;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+public class UndoGroupTest
+{
+   private OWLOntologyManager manager;
+   private OWLOntology ontology;
+   private HistoryManager historyManager;
+
+   @Before
+   public void setUp() throws OWLOntologyCreationException
+   {
+      manager = OWLManager.createOWLOntologyManager();
+      ontology = manager.createOntology(IRI.create("http://example.org/test"));
+      historyManager = new HistoryManagerImpl(manager);
+      manager.addOntologyChangeListener(historyManager::logChanges);
+   }
+
+   @Test
+   public void testChunksUndoAndRedoTogether() throws Exception
+   {
+      SwingUtilities.invokeAndWait(() -> {
+         UndoGroup undoGroup = new UndoGroup(historyManager);
+         for (int i = 0; i < 3; i++) {
+            undoGroup.beforeChunk();
+            addDeclaration("A" + i);
+            undoGroup.afterChunk();
+         }
+         undoGroup.close();
+      });
+      assertEquals(3, ontology.getAxiomCount());
+
+      SwingUtilities.invokeAndWait(historyManager::undo);
+      flushEventQueue();
+      assertEquals(0, ontology.getAxiomCount());
+
+      SwingUtilities.invokeAndWait(historyManager::redo);
+      flushEventQueue();
+      assertEquals(3, ontology.getAxiomCount());
+   }
+
+   @Test
+   public void testEditBetweenChunksIsNotUndone() throws Exception
+   {
+      SwingUtilities.invokeAndWait(() -> {
+         UndoGroup undoGroup = new UndoGroup(historyManager);
+         undoGroup.beforeChunk();
+         addDeclaration("A0");
+         undoGroup.afterChunk();
+         addDeclaration("Other");
+         for (int i = 1; i < 3; i++) {
+            undoGroup.beforeChunk();
+            addDeclaration("A" + i);
+            undoGroup.afterChunk();
+         }
+         undoGroup.close();
+      });
+      SwingUtilities.invokeAndWait(historyManager::undo);
+      flushEventQueue();
+      assertEquals(2, ontology.getAxiomCount());
+   }
+
+   @Test
+   public void testNewEditEndsTheGroup() throws Exception
+   {
+      SwingUtilities.invokeAndWait(() -> {
+         UndoGroup undoGroup = new UndoGroup(historyManager);
+         for (int i = 0; i < 2; i++) {
+            undoGroup.beforeChunk();
+            addDeclaration("A" + i);
+            undoGroup.afterChunk();
+         }
+         undoGroup.close();
+         addDeclaration("Other");
+      });
+      SwingUtilities.invokeAndWait(historyManager::undo);
+      flushEventQueue();
+      assertEquals(2, ontology.getAxiomCount());
+   }
+
+   private void addDeclaration(String name)
+   {
+      OWLDataFactory dataFactory = manager.getOWLDataFactory();
+      manager.applyChanges(Collections.singletonList(new AddAxiom(ontology,
+            dataFactory.getOWLDeclarationAxiom(dataFactory.getOWLClass(IRI.create("http://example.org/test#" + name))))));
+   }
+
+   private static void flushEventQueue() throws Exception
+   {
+      for (int i = 0; i < 10; i++) {
+         SwingUtilities.invokeAndWait(() -> {});
+      }
+   }
+}
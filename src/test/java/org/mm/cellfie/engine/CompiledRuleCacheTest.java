@@ -0,0 +1,49 @@
+package org.mm.cellfie.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.mm.core.settings.ReferenceSettings;
+import org.mm.parser.node.MMExpressionNode;
+
+public class CompiledRuleCacheTest
+{
+   private static final String RULE = "Class: @A*";
+   private static final String OTHER_RULE = "Individual: @B*";
+
+   private final ReferenceSettings referenceSettings = new ReferenceSettings();
+
+   @Test
+   public void testRuleIsParsedOnce() throws Exception
+   {
+      CompiledRuleCache cache = new CompiledRuleCache();
+      MMExpressionNode ruleNode = cache.compile(RULE, referenceSettings);
+      assertSame(ruleNode, cache.compile(RULE, referenceSettings));
+      assertEquals(1, cache.size());
+   }
+
+   @Test
+   public void testEvictedRuleIsParsedAgain() throws Exception
+   {
+      CompiledRuleCache cache = new CompiledRuleCache();
+      MMExpressionNode ruleNode = cache.compile(RULE, referenceSettings);
+      MMExpressionNode otherNode = cache.compile(OTHER_RULE, referenceSettings);
+      cache.evict(RULE);
+      assertEquals(1, cache.size());
+      assertNotSame(ruleNode, cache.compile(RULE, referenceSettings));
+      assertSame(otherNode, cache.compile(OTHER_RULE, referenceSettings));
+   }
+
+   @Test
+   public void testCacheIsBounded() throws Exception
+   {
+      CompiledRuleCache cache = new CompiledRuleCache(2);
+      for (int i = 1; i <= 10; i++) {
+         cache.compile("Class: @A" + i, referenceSettings);
+      }
+      assertTrue(cache.size() <= 2);
+   }
+}
@@ -0,0 +1,324 @@
+package org.mm.cellfie.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mm.core.settings.ReferenceSettings;
+import org.mm.parser.node.MMExpressionNode;
+import org.mm.renderer.Renderer;
+import org.mm.ss.SpreadSheetDataSource;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+
+public class IncrementalEvaluatorTest
+{
+   private static final String RULE = "Individual: @A* Types: Person";
+
+   private static final String NAMESPACE = "http://example.org/test#";
+
+   private static final OWLDataFactory dataFactory = OWLManager.getOWLDataFactory();
+
+   private XSSFWorkbook workbook;
+   private Sheet sheet;
+   private SpreadSheetDataSource dataSource;
+   private CellValueEvaluator ruleEvaluator;
+   private GenerationHistory history;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      workbook = new XSSFWorkbook();
+      sheet = workbook.createSheet("Data");
+      setValue(1, "Alice");
+      setValue(2, "Bob");
+      setValue(3, "Carol");
+      dataSource = new SpreadSheetDataSource(workbook);
+      ruleEvaluator = new CellValueEvaluator(new CompiledRuleCache().compile(RULE, new ReferenceSettings()));
+      history = new GenerationHistory();
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      workbook.close();
+   }
+
+   @Test
+   public void testFirstRunEvaluatesEveryRow()
+   {
+      InMemoryAxiomSink sink = new InMemoryAxiomSink();
+      GenerationChangeSet changeSet = run(range(1, 3), sink);
+      assertEquals(3, changeSet.getEvaluatedRowCount());
+      assertEquals(0, changeSet.getReusedRowCount());
+      assertEquals(axioms("Alice", "Bob", "Carol"), sink.getAxioms());
+      assertTrue(changeSet.getRemovals().isEmpty());
+   }
+
+   @Test
+   public void testUnchangedRowsAreReused()
+   {
+      commit(run(range(1, 3), new InMemoryAxiomSink()));
+      ruleEvaluator.evaluatedRanges.clear();
+
+      InMemoryAxiomSink sink = new InMemoryAxiomSink();
+      GenerationChangeSet changeSet = run(range(1, 3), sink);
+      assertEquals(0, changeSet.getEvaluatedRowCount());
+      assertEquals(3, changeSet.getReusedRowCount());
+      assertTrue(ruleEvaluator.evaluatedRanges.isEmpty());
+      assertTrue(sink.getAxioms().isEmpty());
+      assertTrue(changeSet.getRemovals().isEmpty());
+   }
+
+   @Test
+   public void testChangedRowIsEvaluatedAndItsOldAxiomRemoved()
+   {
+      commit(run(range(1, 3), new InMemoryAxiomSink()));
+      setValue(2, "Bart");
+
+      InMemoryAxiomSink sink = new InMemoryAxiomSink();
+      GenerationChangeSet changeSet = run(range(1, 3), sink);
+      assertEquals(1, changeSet.getEvaluatedRowCount());
+      assertEquals(2, changeSet.getReusedRowCount());
+      assertEquals(axioms("Bart"), sink.getAxioms());
+      assertEquals(axioms("Bob"), changeSet.getRemovals());
+   }
+
+   @Test
+   public void testAxiomNotAddedByCellfieIsNeverRemoved()
+   {
+      InMemoryAxiomSink sink = new InMemoryAxiomSink();
+      GenerationChangeSet changeSet = run(range(1, 3), sink);
+      sink.removeIf(axioms("Bob")::contains); // already asserted in the ontology, hence skipped by the commit
+      commit(changeSet, sink.getAxioms());
+      setValue(2, "Bart");
+
+      changeSet = run(range(1, 3), new InMemoryAxiomSink());
+      assertTrue(changeSet.getRemovals().isEmpty());
+   }
+
+   @Test
+   public void testAxiomStillProducedByAnotherRowIsKept()
+   {
+      setValue(3, "Bob");
+      commit(run(range(1, 3), new InMemoryAxiomSink()));
+      setValue(2, "Bart");
+
+      GenerationChangeSet changeSet = run(range(1, 3), new InMemoryAxiomSink());
+      assertTrue(changeSet.getRemovals().isEmpty());
+   }
+
+   @Test
+   public void testAxiomsOfRowsLeftOutOfTheRangeAreRemoved()
+   {
+      commit(run(range(1, 3), new InMemoryAxiomSink()));
+
+      GenerationChangeSet changeSet = run(range(1, 2), new InMemoryAxiomSink());
+      assertEquals(2, changeSet.getReusedRowCount());
+      assertEquals(axioms("Carol"), changeSet.getRemovals());
+   }
+
+   @Test
+   public void testCancelledRunKeepsThePreviousRecords()
+   {
+      commit(run(range(1, 3), new InMemoryAxiomSink()));
+      setValue(2, "Bart");
+
+      GenerationProgress progress = new GenerationProgress(3);
+      progress.cancel();
+      IncrementalEvaluator evaluator = new IncrementalEvaluator(history);
+      evaluator.evaluate(RULE, ruleEvaluator, range(1, 3), dataSource, null, null, new InMemoryAxiomSink(),
+            new EvaluationResult(), progress);
+      GenerationChangeSet changeSet = evaluator.getChangeSet();
+      assertTrue(changeSet.getRemovals().isEmpty());
+      RuleHistory ruleHistory = changeSet.getRuleHistories().get(GenerationHistory.getRuleKey(RULE, range(1, 3)));
+      assertEquals(axioms("Bob"), ruleHistory.getRowRecord(2).getAxioms());
+   }
+
+   @Test
+   public void testDeclarationOfDeletedRowIsRemoved()
+   {
+      commit(run(range(1, 3), new InMemoryAxiomSink(), declarations("Alice", "Bob", "Carol")));
+      sheet.removeRow(sheet.getRow(1));
+
+      GenerationChangeSet changeSet = run(range(1, 3), new InMemoryAxiomSink(), Collections.emptySet());
+      Set<OWLAxiom> expectedRemovals = axioms("Bob");
+      expectedRemovals.addAll(declarations("Bob"));
+      assertEquals(expectedRemovals, changeSet.getRemovals());
+   }
+
+   @Test
+   public void testDeclarationStillUsedByAnotherRowIsKept()
+   {
+      sheet.removeRow(sheet.getRow(2));
+      commit(run(range(1, 3), new InMemoryAxiomSink(), declarations("Alice", "Bob")));
+      setValue(3, "Bob");
+      commit(run(range(1, 3), new InMemoryAxiomSink(), Collections.emptySet())); // Bob is no longer new
+      sheet.removeRow(sheet.getRow(1));
+
+      GenerationChangeSet changeSet = run(range(1, 3), new InMemoryAxiomSink(), Collections.emptySet());
+      assertTrue(changeSet.getRemovals().isEmpty());
+   }
+
+   @Test
+   public void testNonLocalRuleIsEvaluatedOnEveryRun()
+   {
+      String rule = "Individual: @A1 Types: Person";
+      assertFalse(IncrementalEvaluator.isRowLocal(rule));
+      commit(run(rule, range(1, 3), new InMemoryAxiomSink()));
+
+      GenerationChangeSet changeSet = run(rule, range(1, 3), new InMemoryAxiomSink());
+      assertEquals(3, changeSet.getEvaluatedRowCount());
+      assertEquals(0, changeSet.getReusedRowCount());
+   }
+
+   @Test
+   public void testRowLocalRules()
+   {
+      assertTrue(IncrementalEvaluator.isRowLocal("Class: @A*"));
+      assertTrue(IncrementalEvaluator.isRowLocal("Individual: @A* Types: @B*"));
+      assertFalse(IncrementalEvaluator.isRowLocal("Class: @A1"));
+      assertFalse(IncrementalEvaluator.isRowLocal("Class: @$A$1"));
+      assertFalse(IncrementalEvaluator.isRowLocal("Class: @'Other Sheet'!A*"));
+      assertFalse(IncrementalEvaluator.isRowLocal("Class: @A*(ShiftUp)"));
+   }
+
+   private GenerationChangeSet run(CellRange range, AxiomSink sink)
+   {
+      return run(RULE, range, sink);
+   }
+
+   private GenerationChangeSet run(String rule, CellRange range, AxiomSink sink)
+   {
+      IncrementalEvaluator evaluator = new IncrementalEvaluator(history);
+      evaluator.evaluate(rule, ruleEvaluator, range, dataSource, null, null, sink, new EvaluationResult(),
+            new GenerationProgress(range.getCellCount()));
+      return evaluator.getChangeSet();
+   }
+
+   /*
+    * Runs the rule and attributes the declarations of the entities created
+    * during the run, as done by the generation worker.
+    */
+   private GenerationChangeSet run(CellRange range, AxiomSink sink, Set<OWLAxiom> newDeclarations)
+   {
+      IncrementalEvaluator evaluator = new IncrementalEvaluator(history);
+      evaluator.evaluate(RULE, ruleEvaluator, range, dataSource, null, null, sink, new EvaluationResult(),
+            new GenerationProgress(range.getCellCount()));
+      evaluator.attributeDeclarations(newDeclarations);
+      return evaluator.getChangeSet();
+   }
+
+   /*
+    * Commits all the axioms of the rows, including the attributed
+    * declarations, as done by the commit worker for an ontology that had
+    * none of them.
+    */
+   private void commit(GenerationChangeSet changeSet)
+   {
+      Set<OWLAxiom> addedAxioms = new HashSet<>();
+      for (RuleHistory ruleHistory : changeSet.getRuleHistories().values()) {
+         ruleHistory.collectAxioms(addedAxioms);
+      }
+      commit(changeSet, addedAxioms);
+   }
+
+   private void commit(GenerationChangeSet changeSet, Set<OWLAxiom> addedAxioms)
+   {
+      history.removeOwnedAxioms(changeSet.getRemovals());
+      history.addOwnedAxioms(addedAxioms);
+      history.accept(changeSet);
+   }
+
+   private void setValue(int rowNumber, String value)
+   {
+      Row row = sheet.getRow(rowNumber - 1);
+      if (row == null) {
+         row = sheet.createRow(rowNumber - 1);
+      }
+      row.createCell(0).setCellValue(value);
+   }
+
+   private static CellRange range(int startRow, int endRow)
+   {
+      return new CellRange("Data", 1, startRow, 1, endRow);
+   }
+
+   private static Set<OWLAxiom> axioms(String... names)
+   {
+      Set<OWLAxiom> axioms = new HashSet<>();
+      for (String name : names) {
+         axioms.add(assertion(name));
+      }
+      return axioms;
+   }
+
+   private static Set<OWLAxiom> declarations(String... names)
+   {
+      Set<OWLAxiom> axioms = new HashSet<>();
+      for (String name : names) {
+         axioms.add(dataFactory.getOWLDeclarationAxiom(individual(name)));
+      }
+      return axioms;
+   }
+
+   private static OWLAxiom assertion(String name)
+   {
+      return dataFactory.getOWLClassAssertionAxiom(dataFactory.getOWLClass(IRI.create(NAMESPACE + "Person")),
+            individual(name));
+   }
+
+   private static OWLNamedIndividual individual(String name)
+   {
+      return dataFactory.getOWLNamedIndividual(IRI.create(NAMESPACE + name));
+   }
+
+   /**
+    * Asserts a person named after the value of each cell, instead of
+    * rendering the rule, and remembers the ranges it was asked to evaluate.
+    */
+   private static class CellValueEvaluator extends RuleEvaluator
+   {
+      private final List<CellRange> evaluatedRanges = new ArrayList<>();
+
+      public CellValueEvaluator(MMExpressionNode ruleNode)
+      {
+         super(ruleNode);
+      }
+
+      @Override
+      public void evaluate(CellRange range, SpreadSheetDataSource dataSource, Renderer renderer, Renderer logRenderer,
+            AxiomSink axiomSink, EvaluationResult result, GenerationProgress progress)
+      {
+         evaluatedRanges.add(range);
+         Sheet sheet = dataSource.getWorkbook().getSheet(range.getSheetName());
+         for (int column = range.getStartColumn(); column <= range.getEndColumn(); column++) {
+            for (int row = range.getStartRow(); row <= range.getEndRow(); row++) {
+               Row sheetRow = sheet.getRow(row - 1);
+               Cell cell = (sheetRow != null) ? sheetRow.getCell(column - 1) : null;
+               if (cell != null) {
+                  axiomSink.add(Collections.singleton(assertion(cell.getStringCellValue())));
+               }
+            }
+         }
+         progress.addProcessedCells(range.getCellCount());
+      }
+   }
+}
@@ -0,0 +1,47 @@
+package org.mm.cellfie.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import org.semanticweb.owlapi.vocab.Namespaces;
+
+public class PrefixTableTest
+{
+   @Test
+   public void testOntologyPrefixIsExpanded()
+   {
+      DefaultPrefixManager prefixManager = new DefaultPrefixManager();
+      prefixManager.setPrefix("ex:", "http://example.org/");
+      PrefixTable prefixTable = new PrefixTable(prefixManager);
+      assertEquals(IRI.create("http://example.org/"), prefixTable.getNamespace("ex:Person").get());
+   }
+
+   @Test
+   public void testBuiltInNamespaceTakesPrecedence()
+   {
+      DefaultPrefixManager prefixManager = new DefaultPrefixManager();
+      prefixManager.setPrefix("owl:", "http://example.org/owl#");
+      PrefixTable prefixTable = new PrefixTable(prefixManager);
+      assertEquals(IRI.create(Namespaces.OWL.toString()), prefixTable.getNamespace("owl:Thing").get());
+   }
+
+   @Test
+   public void testUnknownOrMissingPrefix()
+   {
+      PrefixTable prefixTable = new PrefixTable(null);
+      assertFalse(prefixTable.getNamespace("ex:Person").isPresent());
+      assertFalse(prefixTable.getNamespace("Person").isPresent());
+      assertFalse(prefixTable.getNamespace(":Person").isPresent());
+   }
+
+   @Test
+   public void testLocalName()
+   {
+      assertEquals("Person", PrefixTable.getLocalName("ex:Person"));
+      assertEquals("Person", PrefixTable.getLocalName(":Person"));
+      assertEquals("Person", PrefixTable.getLocalName("Person"));
+   }
+}
@@ -0,0 +1,166 @@
+package org.mm.cellfie.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mm.core.settings.ReferenceSettings;
+import org.mm.parser.node.MMExpressionNode;
+import org.mm.renderer.Renderer;
+import org.mm.ss.SpreadSheetDataSource;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+
+public class RangeEvaluationTaskTest
+{
+   private static final int ROW_COUNT = 200;
+
+   private static final OWLDataFactory dataFactory = OWLManager.getOWLDataFactory();
+
+   private XSSFWorkbook workbook;
+   private ForkJoinPool forkJoinPool;
+
+   @Before
+   public void setUp()
+   {
+      workbook = new XSSFWorkbook();
+      Sheet sheet = workbook.createSheet("Data");
+      for (int row = 0; row < ROW_COUNT; row++) {
+         sheet.createRow(row).createCell(0).setCellValue("Cell" + row);
+      }
+      forkJoinPool = new ForkJoinPool(4);
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      forkJoinPool.shutdown();
+      workbook.close();
+   }
+
+   @Test
+   public void testAxiomsArriveInSerialOrder() throws Exception
+   {
+      OrderedSink sink = new OrderedSink();
+      CountingEvaluator evaluator = new CountingEvaluator(sink);
+      forkJoinPool.invoke(new RangeEvaluationTask(workbook, new NoRendererFactory(), evaluator, range(), sink,
+            new GenerationProgress(ROW_COUNT), 1, 8));
+      List<OWLAxiom> expected = new ArrayList<>();
+      for (int row = 1; row <= ROW_COUNT; row++) {
+         expected.add(axiom(row));
+      }
+      assertEquals(expected, sink.axioms);
+   }
+
+   @Test
+   public void testWaitingBlocksAreBoundedByTheWindow() throws Exception
+   {
+      OrderedSink sink = new OrderedSink();
+      CountingEvaluator evaluator = new CountingEvaluator(sink);
+      forkJoinPool.invoke(new RangeEvaluationTask(workbook, new NoRendererFactory(), evaluator, range(), sink,
+            new GenerationProgress(ROW_COUNT), 1, 8));
+      assertTrue("Blocks in flight: " + evaluator.maxBlocksInFlight, evaluator.maxBlocksInFlight <= 8);
+   }
+
+   private static CellRange range()
+   {
+      return new CellRange("Data", 1, 1, 1, ROW_COUNT);
+   }
+
+   private static OWLAxiom axiom(int row)
+   {
+      return dataFactory.getOWLDeclarationAxiom(dataFactory.getOWLClass(IRI.create("http://example.org/test#C" + row)));
+   }
+
+   private static class OrderedSink implements AxiomSink
+   {
+      private final List<OWLAxiom> axioms = Collections.synchronizedList(new ArrayList<>());
+
+      @Override
+      public void add(Collection<? extends OWLAxiom> newAxioms)
+      {
+         axioms.addAll(newAxioms);
+      }
+
+      @Override
+      public long getAxiomCount()
+      {
+         return axioms.size();
+      }
+
+      @Override
+      public void close()
+      {
+         // NO-OP
+      }
+   }
+
+   /**
+    * Adds one axiom per row and records the largest number of blocks that
+    * were started but whose axioms had not yet reached the sink. The first
+    * block of the range is slow, such that the blocks after it finish first.
+    */
+   private static class CountingEvaluator extends RuleEvaluator
+   {
+      private final OrderedSink sink;
+      private final AtomicInteger startedBlocks = new AtomicInteger();
+      private volatile int maxBlocksInFlight = 0;
+
+      public CountingEvaluator(OrderedSink sink) throws Exception
+      {
+         super(new CompiledRuleCache().compile("Class: @A*", new ReferenceSettings()));
+         this.sink = sink;
+      }
+
+      @Override
+      public void evaluate(CellRange range, SpreadSheetDataSource dataSource, Renderer renderer, Renderer logRenderer,
+            AxiomSink axiomSink, EvaluationResult result, GenerationProgress progress)
+      {
+         int blocksInFlight = startedBlocks.incrementAndGet() - (int) sink.getAxiomCount();
+         synchronized (this) {
+            maxBlocksInFlight = Math.max(maxBlocksInFlight, blocksInFlight);
+         }
+         if (range.getStartRow() == 1) {
+            try {
+               Thread.sleep(200);
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         }
+         for (int row = range.getStartRow(); row <= range.getEndRow(); row++) {
+            axiomSink.add(Collections.singleton(axiom(row)));
+         }
+         progress.addProcessedCells(range.getCellCount());
+      }
+   }
+
+   private static class NoRendererFactory implements RendererFactory
+   {
+      @Override
+      public Renderer createRenderer(SpreadSheetDataSource dataSource)
+      {
+         return node -> Optional.empty();
+      }
+
+      @Override
+      public Renderer createLogRenderer(SpreadSheetDataSource dataSource)
+      {
+         return node -> Optional.empty();
+      }
+   }
+}
@@ -0,0 +1,92 @@
+package org.mm.cellfie.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.IOException;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RowFingerprintTest
+{
+   private XSSFWorkbook workbook;
+   private Sheet sheet;
+
+   @Before
+   public void setUp()
+   {
+      workbook = new XSSFWorkbook();
+      sheet = workbook.createSheet("Data");
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      workbook.close();
+   }
+
+   @Test
+   public void testSameValuesGiveSameFingerprint()
+   {
+      Row first = sheet.createRow(0);
+      first.createCell(0).setCellValue("Alice");
+      first.createCell(1).setCellValue(42);
+      Row second = sheet.createRow(1);
+      second.createCell(0).setCellValue("Alice");
+      second.createCell(1).setCellValue(42);
+      assertEquals(RowFingerprint.of(sheet, 1), RowFingerprint.of(sheet, 2));
+   }
+
+   @Test
+   public void testChangedValueChangesFingerprint()
+   {
+      Row row = sheet.createRow(0);
+      row.createCell(0).setCellValue("Alice");
+      long before = RowFingerprint.of(sheet, 1);
+      row.getCell(0).setCellValue("Bob");
+      assertNotEquals(before, RowFingerprint.of(sheet, 1));
+   }
+
+   @Test
+   public void testValueInOtherColumnChangesFingerprint()
+   {
+      Row first = sheet.createRow(0);
+      first.createCell(0).setCellValue("Alice");
+      Row second = sheet.createRow(1);
+      second.createCell(1).setCellValue("Alice");
+      assertNotEquals(RowFingerprint.of(sheet, 1), RowFingerprint.of(sheet, 2));
+   }
+
+   @Test
+   public void testCellTypeIsPartOfFingerprint()
+   {
+      Row first = sheet.createRow(0);
+      first.createCell(0).setCellValue("1");
+      Row second = sheet.createRow(1);
+      second.createCell(0).setCellValue(1);
+      assertNotEquals(RowFingerprint.of(sheet, 1), RowFingerprint.of(sheet, 2));
+   }
+
+   @Test
+   public void testBlankCellsAreIgnored()
+   {
+      Row first = sheet.createRow(0);
+      first.createCell(0).setCellValue("Alice");
+      Row second = sheet.createRow(1);
+      second.createCell(0).setCellValue("Alice");
+      second.createCell(3); // blank
+      assertEquals(RowFingerprint.of(sheet, 1), RowFingerprint.of(sheet, 2));
+   }
+
+   @Test
+   public void testMissingRowEqualsBlankRow()
+   {
+      sheet.createRow(1).createCell(0); // blank
+      assertEquals(RowFingerprint.of(sheet, 1), RowFingerprint.of(sheet, 2));
+   }
+}
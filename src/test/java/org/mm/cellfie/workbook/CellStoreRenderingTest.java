@@ -0,0 +1,168 @@
+package org.mm.cellfie.workbook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.Optional;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mm.cellfie.engine.CellRange;
+import org.mm.cellfie.engine.CompiledRuleCache;
+import org.mm.cellfie.engine.EvaluationResult;
+import org.mm.cellfie.engine.GenerationProgress;
+import org.mm.cellfie.engine.InMemoryAxiomSink;
+import org.mm.cellfie.engine.RuleEvaluator;
+import org.mm.core.settings.ReferenceSettings;
+import org.mm.parser.node.MMExpressionNode;
+import org.mm.renderer.Renderer;
+import org.mm.rendering.Rendering;
+import org.mm.ss.SpreadSheetDataSource;
+import org.mm.ss.SpreadsheetLocation;
+
+/**
+ * Renders a rule over a workbook read into cell stores and over the same
+ * workbook opened with the POI user model, and expects the same log. The
+ * blank rows are skipped over the cell stores, hence the log leaves out the
+ * missing cells.
+ */
+public class CellStoreRenderingTest
+{
+   private static final String RULE = "Individual: @A*";
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private File workbookFile;
+   private RuleEvaluator ruleEvaluator;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      workbookFile = temporaryFolder.newFile("data.xlsx");
+      writeWorkbook(workbookFile);
+      MMExpressionNode ruleNode = new CompiledRuleCache().compile(RULE, new ReferenceSettings());
+      ruleEvaluator = new RuleEvaluator(ruleNode, ruleNode);
+   }
+
+   @Test
+   public void testCellStoreWorkbookRendersLikeTheUserModel() throws Exception
+   {
+      CellRange range = new CellRange("Data", 1, 1, 2, 8);
+      WorkbookSnapshot snapshot = new WorkbookSnapshot(temporaryFolder.newFolder("snapshots"));
+      String expected;
+      try (Workbook workbook = WorkbookFactory.create(workbookFile, null, true)) {
+         expected = render(workbook, range);
+      }
+      assertEquals(expected, render(new StreamingWorkbookReader().read(workbookFile), range));
+      assertEquals(expected, render(new UserModelWorkbookReader().read(workbookFile), range));
+      WorkbookLoader.load(workbookFile, snapshot, new WorkbookLoadProgress()); // writes the snapshot
+      assertEquals(expected, render(snapshot.read(workbookFile), range));
+   }
+
+   @Test
+   public void testSmallWorkbookIsRenderedAgainstTheUserModel() throws Exception
+   {
+      CellStoreWorkbook workbook = new StreamingWorkbookReader().read(workbookFile);
+      try (Workbook renderingWorkbook = WorkbookLoader.openForRendering(workbookFile, workbook)) {
+         assertFalse(renderingWorkbook instanceof CellStoreWorkbook);
+      }
+   }
+
+   private String render(Workbook workbook, CellRange range)
+   {
+      SpreadSheetDataSource dataSource = new SpreadSheetDataSource(workbook);
+      EvaluationResult result = new EvaluationResult();
+      ruleEvaluator.evaluate(range, dataSource, node -> Optional.empty(), new CellTextRenderer(dataSource),
+            new InMemoryAxiomSink(), result, new GenerationProgress(range.getCellCount()));
+      return result.getLogBuilder().toString();
+   }
+
+   private static void writeWorkbook(File file) throws IOException
+   {
+      try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(file)) {
+         Sheet sheet = workbook.createSheet("Data");
+         CellStyle dateStyle = workbook.createCellStyle();
+         dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+         CellStyle decimalStyle = workbook.createCellStyle();
+         decimalStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("0.00"));
+
+         sheet.createRow(0).createCell(0).setCellValue("Alice");
+         sheet.getRow(0).createCell(1).setCellValue("Person");
+         sheet.createRow(1).createCell(0).setCellValue(42);
+         Cell decimal = sheet.getRow(1).createCell(1);
+         decimal.setCellValue(3.14159);
+         decimal.setCellStyle(decimalStyle);
+         Calendar date = Calendar.getInstance();
+         date.clear();
+         date.set(2020, Calendar.FEBRUARY, 29);
+         Cell dateCell = sheet.createRow(2).createCell(0);
+         dateCell.setCellValue(date);
+         dateCell.setCellStyle(dateStyle);
+         sheet.getRow(2).createCell(1).setCellValue(true);
+         // row 4 is left blank
+         Row formulaRow = sheet.createRow(4);
+         formulaRow.createCell(0).setCellFormula("A2*2");
+         formulaRow.createCell(1).setCellFormula("CONCATENATE(A1,\"!\")");
+         sheet.createRow(5).createCell(1).setCellValue(" padded ");
+         sheet.createRow(7).createCell(0).setCellValue("Last");
+         workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+         workbook.write(out);
+      }
+   }
+
+   /**
+    * Writes the formatted value of the current cell of the data source, read
+    * through the POI interfaces in the way the MappingMaster text renderer
+    * does. A formula cell is written as its result, which is what the cell
+    * stores keep.
+    */
+   private static class CellTextRenderer implements Renderer
+   {
+      private final SpreadSheetDataSource dataSource;
+      private final DataFormatter formatter = new DataFormatter();
+
+      public CellTextRenderer(SpreadSheetDataSource dataSource)
+      {
+         this.dataSource = dataSource;
+      }
+
+      @Override
+      public Optional<? extends Rendering> render(MMExpressionNode node)
+      {
+         SpreadsheetLocation location = dataSource.getCurrentLocation().get();
+         Sheet sheet = dataSource.getWorkbook().getSheet(location.getSheetName());
+         Row row = sheet.getRow(location.getPhysicalRowNumber() - 1);
+         Cell cell = (row != null) ? row.getCell(location.getPhysicalColumnNumber() - 1) : null;
+         if (cell == null) {
+            return Optional.empty();
+         }
+         CellType cellType = cell.getCellType();
+         FormulaEvaluator evaluator = null;
+         if (cellType == CellType.FORMULA) {
+            cellType = cell.getCachedFormulaResultType();
+            evaluator = dataSource.getWorkbook().getCreationHelper().createFormulaEvaluator();
+         }
+         String text = String.format("%d:%d %s %s%n", location.getPhysicalColumnNumber(),
+               location.getPhysicalRowNumber(), cellType, formatter.formatCellValue(cell, evaluator));
+         return Optional.of(() -> text);
+      }
+   }
+}
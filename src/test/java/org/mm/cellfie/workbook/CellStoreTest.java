@@ -0,0 +1,163 @@
+package org.mm.cellfie.workbook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CellStoreTest
+{
+   private StringPool stringPool;
+   private CellStore cellStore;
+
+   @Before
+   public void setUp()
+   {
+      stringPool = new StringPool();
+      cellStore = new CellStore("Data", stringPool);
+   }
+
+   @Test
+   public void testCellValues()
+   {
+      cellStore.setString(1, 0, "Alice");
+      cellStore.setNumeric(1, 1, 42.5, (short) 14);
+      cellStore.setBoolean(2, 1, true);
+      cellStore.setError(2, 3, "#DIV/0!");
+
+      assertEquals(CellStore.STRING, cellStore.getCellType(1, 0));
+      assertEquals("Alice", cellStore.getStringValue(1, 0));
+      assertEquals(CellStore.NUMERIC, cellStore.getCellType(1, 1));
+      assertEquals(42.5, cellStore.getNumericValue(1, 1), 0.0);
+      assertEquals(14, cellStore.getFormat(1, 1));
+      assertEquals(CellStore.BOOLEAN, cellStore.getCellType(2, 1));
+      assertTrue(cellStore.getBooleanValue(2, 1));
+      assertEquals(CellStore.ERROR, cellStore.getCellType(2, 3));
+      assertEquals("#DIV/0!", cellStore.getStringValue(2, 3));
+      assertEquals(CellStore.BLANK, cellStore.getCellType(2, 2));
+      assertEquals(CellStore.BLANK, cellStore.getCellType(0, 0));
+      assertEquals(CellStore.BLANK, cellStore.getCellType(1, 10));
+   }
+
+   @Test
+   public void testRowExtent()
+   {
+      cellStore.setString(1, 2, "Alice");
+      cellStore.setString(1, 4, "Bob");
+      cellStore.setNumeric(3, 0, 1, (short) 0);
+
+      assertEquals(1, cellStore.getFirstRowNum());
+      assertEquals(3, cellStore.getLastRowNum());
+      assertEquals(2, cellStore.getRowCount());
+      assertTrue(cellStore.hasRow(1));
+      assertFalse(cellStore.hasRow(2));
+      assertEquals(2, cellStore.getFirstCellNum(1));
+      assertEquals(5, cellStore.getLastCellNum(1));
+      assertEquals(-1, cellStore.getFirstCellNum(2));
+      assertEquals(-1, cellStore.getLastCellNum(2));
+   }
+
+   @Test
+   public void testSnapshotRoundTrip() throws IOException
+   {
+      cellStore.setString(0, 0, "Name");
+      cellStore.setString(0, 1, "Age");
+      cellStore.setString(1, 0, "Alice");
+      cellStore.setNumeric(1, 1, 42, (short) 0);
+      cellStore.setBoolean(2, 2, true);
+      cellStore.setBoolean(3, 2, false);
+      cellStore.setNumeric(4, 1, 43831, (short) 14);
+      cellStore.setError(5, 4, "#N/A");
+      cellStore.setString(200, 6, "Last");
+      cellStore.trimToSize();
+
+      assertSameCells(cellStore, roundTrip(cellStore));
+   }
+
+   @Test
+   public void testSnapshotRoundTripOfUntrimmedStore() throws IOException
+   {
+      cellStore.setString(3, 1, "Alice");
+      cellStore.setNumeric(70, 0, 1.5, (short) 2);
+
+      assertSameCells(cellStore, roundTrip(cellStore));
+   }
+
+   @Test
+   public void testSnapshotRoundTripOfEmptyStore() throws IOException
+   {
+      cellStore.trimToSize();
+
+      CellStore copy = roundTrip(cellStore);
+      assertEquals(-1, copy.getFirstRowNum());
+      assertEquals(-1, copy.getLastRowNum());
+      assertEquals(0, copy.getRowCount());
+      assertFalse(copy.hasRow(0));
+   }
+
+   @Test
+   public void testSnapshotBufferIsReadToTheEndOfTheStore() throws IOException
+   {
+      cellStore.setString(1, 1, "Alice");
+      cellStore.trimToSize();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+         cellStore.writeTo(out);
+         cellStore.writeTo(out);
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+      assertSameCells(cellStore, new CellStore("Data", stringPool, buffer));
+      assertSameCells(cellStore, new CellStore("Data", stringPool, buffer));
+      assertFalse(buffer.hasRemaining());
+   }
+
+   private CellStore roundTrip(CellStore original) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+         original.writeTo(out);
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+      CellStore copy = new CellStore(original.getSheetName(), stringPool, buffer);
+      assertFalse(buffer.hasRemaining());
+      return copy;
+   }
+
+   private static void assertSameCells(CellStore expected, CellStore actual)
+   {
+      assertEquals(expected.getFirstRowNum(), actual.getFirstRowNum());
+      assertEquals(expected.getLastRowNum(), actual.getLastRowNum());
+      assertEquals(expected.getRowCount(), actual.getRowCount());
+      for (int row = 0; row <= expected.getLastRowNum(); row++) {
+         assertEquals(expected.hasRow(row), actual.hasRow(row));
+         assertEquals(expected.getFirstCellNum(row), actual.getFirstCellNum(row));
+         assertEquals(expected.getLastCellNum(row), actual.getLastCellNum(row));
+         for (int column = 0; column < expected.getLastCellNum(row); column++) {
+            byte type = expected.getCellType(row, column);
+            assertEquals(type, actual.getCellType(row, column));
+            switch (type) {
+               case CellStore.NUMERIC :
+                  assertEquals(expected.getNumericValue(row, column), actual.getNumericValue(row, column), 0.0);
+                  assertEquals(expected.getFormat(row, column), actual.getFormat(row, column));
+                  break;
+               case CellStore.BOOLEAN :
+                  assertEquals(expected.getBooleanValue(row, column), actual.getBooleanValue(row, column));
+                  break;
+               case CellStore.STRING :
+               case CellStore.ERROR :
+                  assertEquals(expected.getStringValue(row, column), actual.getStringValue(row, column));
+                  break;
+               default :
+                  break;
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,110 @@
+package org.mm.cellfie.workbook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SheetOccupancyTest
+{
+   private StringPool stringPool;
+   private CellStore cellStore;
+
+   @Before
+   public void setUp()
+   {
+      stringPool = new StringPool();
+      cellStore = new CellStore("Data", stringPool);
+   }
+
+   @Test
+   public void testEmptySheet()
+   {
+      SheetOccupancy occupancy = cellStore.getOccupancy();
+      assertEquals(-1, occupancy.getLastRowNum());
+      assertTrue(occupancy.isBlankRow(0));
+      assertEquals(0, occupancy.getLastCellNum(0));
+   }
+
+   @Test
+   public void testLastNonBlankCells()
+   {
+      cellStore.setString(0, 0, "Name");
+      cellStore.setString(0, 3, "Comment");
+      cellStore.setNumeric(2, 1, 42, (short) 0);
+      cellStore.setBoolean(4, 2, false);
+
+      SheetOccupancy occupancy = cellStore.getOccupancy();
+      assertEquals(4, occupancy.getLastRowNum());
+      assertEquals(4, occupancy.getLastCellNum(0));
+      assertTrue(occupancy.isBlankRow(1));
+      assertEquals(2, occupancy.getLastCellNum(2));
+      assertEquals(3, occupancy.getLastCellNum(4));
+      assertFalse(occupancy.isBlankRow(4));
+   }
+
+   @Test
+   public void testEmptyStringsAreBlank()
+   {
+      cellStore.setString(0, 0, "Alice");
+      cellStore.setString(0, 1, "");
+      cellStore.setString(1, 0, "");
+      cellStore.setString(2, 0, "");
+
+      SheetOccupancy occupancy = cellStore.getOccupancy();
+      assertEquals(0, occupancy.getLastRowNum());
+      assertEquals(1, occupancy.getLastCellNum(0));
+      assertTrue(occupancy.isBlankRow(1));
+      assertTrue(occupancy.isBlankRow(2));
+   }
+
+   @Test
+   public void testErrorsAreNonBlank()
+   {
+      cellStore.setError(1, 2, "#REF!");
+
+      SheetOccupancy occupancy = cellStore.getOccupancy();
+      assertEquals(1, occupancy.getLastRowNum());
+      assertEquals(3, occupancy.getLastCellNum(1));
+   }
+
+   @Test
+   public void testRowsOutsideTheSheetAreBlank()
+   {
+      cellStore.setString(0, 0, "Alice");
+
+      SheetOccupancy occupancy = cellStore.getOccupancy();
+      assertTrue(occupancy.isBlankRow(-1));
+      assertTrue(occupancy.isBlankRow(1000));
+   }
+
+   @Test
+   public void testOccupancyOfSnapshotStore() throws IOException
+   {
+      cellStore.setString(0, 0, "Alice");
+      cellStore.setString(3, 0, "");
+      cellStore.trimToSize();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+         cellStore.writeTo(out);
+      }
+      CellStore copy = new CellStore("Data", stringPool, ByteBuffer.wrap(bytes.toByteArray()));
+      assertEquals(0, copy.getOccupancy().getLastRowNum());
+      assertEquals(1, copy.getOccupancy().getLastCellNum(0));
+   }
+
+   @Test
+   public void testOccupancyIsComputedOnce()
+   {
+      cellStore.setString(0, 0, "Alice");
+      assertSame(cellStore.getOccupancy(), cellStore.getOccupancy());
+   }
+}
@@ -0,0 +1,184 @@
+package org.mm.cellfie.workbook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkbookSnapshotTest
+{
+   private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+   @Rule
+   public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+   private File snapshotDirectory;
+
+   @Before
+   public void setUp() throws IOException
+   {
+      snapshotDirectory = temporaryFolder.newFolder("snapshots");
+   }
+
+   @Test
+   public void testWrittenSnapshotIsRead() throws IOException
+   {
+      File workbookFile = newWorkbookFile("data.xlsx", "content");
+      WorkbookSnapshot snapshot = new WorkbookSnapshot(snapshotDirectory);
+      snapshot.write(workbookFile, newWorkbook("Alice"));
+
+      CellStoreWorkbook workbook = snapshot.read(workbookFile);
+      assertNotNull(workbook);
+      assertEquals("Alice", workbook.getCellStore(0).getStringValue(0, 0));
+   }
+
+   @Test
+   public void testChangedWorkbookIsNotRead() throws IOException
+   {
+      File workbookFile = newWorkbookFile("data.xlsx", "content");
+      WorkbookSnapshot snapshot = new WorkbookSnapshot(snapshotDirectory);
+      snapshot.write(workbookFile, newWorkbook("Alice"));
+
+      Files.write(workbookFile.toPath(), "changed".getBytes());
+      workbookFile.setLastModified(workbookFile.lastModified() + HOUR);
+      assertNull(snapshot.read(workbookFile));
+   }
+
+   @Test
+   public void testTouchedWorkbookIsRead() throws IOException
+   {
+      File workbookFile = newWorkbookFile("data.xls", "content");
+      WorkbookSnapshot snapshot = new WorkbookSnapshot(snapshotDirectory);
+      snapshot.write(workbookFile, newWorkbook("Alice"));
+
+      workbookFile.setLastModified(workbookFile.lastModified() + HOUR);
+      assertNotNull(snapshot.read(workbookFile));
+   }
+
+   @Test
+   public void testTouchedXlsxWorkbookIsRead() throws IOException
+   {
+      File workbookFile = temporaryFolder.newFile("data.xlsx");
+      writeXlsx(workbookFile, "Alice");
+      WorkbookSnapshot snapshot = new WorkbookSnapshot(snapshotDirectory);
+      snapshot.write(workbookFile, newWorkbook("Alice"));
+
+      workbookFile.setLastModified(workbookFile.lastModified() + HOUR);
+      assertNotNull(snapshot.read(workbookFile));
+   }
+
+   @Test
+   public void testChangedXlsxWorkbookIsNotRead() throws IOException
+   {
+      File workbookFile = temporaryFolder.newFile("data.xlsx");
+      writeXlsx(workbookFile, "Alice");
+      WorkbookSnapshot snapshot = new WorkbookSnapshot(snapshotDirectory);
+      snapshot.write(workbookFile, newWorkbook("Alice"));
+
+      writeXlsx(workbookFile, "Bob");
+      workbookFile.setLastModified(workbookFile.lastModified() + HOUR);
+      assertNull(snapshot.read(workbookFile));
+   }
+
+   @Test
+   public void testLeastRecentlyUsedSnapshotsAreEvicted() throws IOException
+   {
+      WorkbookSnapshot snapshot = new WorkbookSnapshot(snapshotDirectory, 2, Long.MAX_VALUE, Long.MAX_VALUE);
+      File first = newWorkbookFile("first.xlsx", "first");
+      File second = newWorkbookFile("second.xlsx", "second");
+      File third = newWorkbookFile("third.xlsx", "third");
+      snapshot.write(first, newWorkbook("First"));
+      snapshot.write(second, newWorkbook("Second"));
+      setSnapshotsLastModified(System.currentTimeMillis() - HOUR);
+      assertNotNull(snapshot.read(first)); // marks the first snapshot as recently used
+
+      snapshot.write(third, newWorkbook("Third"));
+      assertEquals(2, countSnapshots());
+      assertNotNull(snapshot.read(first));
+      assertNull(snapshot.read(second));
+      assertNotNull(snapshot.read(third));
+   }
+
+   @Test
+   public void testSnapshotsBeyondTheTotalSizeAreEvicted() throws IOException
+   {
+      WorkbookSnapshot snapshot = new WorkbookSnapshot(snapshotDirectory);
+      snapshot.write(newWorkbookFile("first.xlsx", "first"), newWorkbook("First"));
+      long snapshotSize = snapshotDirectory.listFiles()[0].length();
+      setSnapshotsLastModified(System.currentTimeMillis() - HOUR);
+
+      snapshot = new WorkbookSnapshot(snapshotDirectory, 10, snapshotSize + snapshotSize / 2, Long.MAX_VALUE);
+      snapshot.write(newWorkbookFile("second.xlsx", "second"), newWorkbook("Second"));
+      assertEquals(1, countSnapshots());
+   }
+
+   @Test
+   public void testUnusedSnapshotsExpire() throws IOException
+   {
+      WorkbookSnapshot snapshot = new WorkbookSnapshot(snapshotDirectory, 10, Long.MAX_VALUE, HOUR);
+      snapshot.write(newWorkbookFile("first.xlsx", "first"), newWorkbook("First"));
+      setSnapshotsLastModified(System.currentTimeMillis() - 2 * HOUR);
+
+      snapshot.prune();
+      assertEquals(0, countSnapshots());
+   }
+
+   @Test
+   public void testPruneWithoutDirectory()
+   {
+      new WorkbookSnapshot(new File(snapshotDirectory, "missing")).prune();
+      assertFalse(new File(snapshotDirectory, "missing").exists());
+   }
+
+   private File newWorkbookFile(String name, String content) throws IOException
+   {
+      File workbookFile = temporaryFolder.newFile(name);
+      Files.write(workbookFile.toPath(), content.getBytes());
+      return workbookFile;
+   }
+
+   private static void writeXlsx(File workbookFile, String value) throws IOException
+   {
+      try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(workbookFile)) {
+         workbook.createSheet("Data").createRow(0).createCell(0).setCellValue(value);
+         workbook.write(out);
+      }
+   }
+
+   private static CellStoreWorkbook newWorkbook(String value)
+   {
+      StringPool stringPool = new StringPool();
+      CellStore cellStore = new CellStore("Data", stringPool);
+      cellStore.setString(0, 0, value);
+      stringPool.freeze();
+      return new CellStoreWorkbook(Collections.singletonList(cellStore), stringPool, new HashMap<>(), false);
+   }
+
+   private void setSnapshotsLastModified(long lastModified)
+   {
+      for (File snapshotFile : snapshotDirectory.listFiles()) {
+         assertTrue(snapshotFile.setLastModified(lastModified));
+      }
+   }
+
+   private int countSnapshots()
+   {
+      return snapshotDirectory.listFiles().length;
+   }
+}